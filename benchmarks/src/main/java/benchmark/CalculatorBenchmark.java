@@ -0,0 +1,98 @@
+package benchmark;
+
+import model.FrameBuffer;
+import model.MandelbrotCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JMH benchmark comparing the iteration modes of the MandelbrotCalculator against the plain iteration loop: the
+ * interior check, the periodicity check and both, on the default view and on a view of the satellite bulbs along the
+ * real axis, where the periodicity check matters most. The calculator runs on a single thread.
+ *
+ * Before each mode is measured, the number of pixels whose value differs from the plain loop is printed, so that a
+ * faster mode which changes the image is easy to spot.
+ *
+ * mvn -B package
+ * java -jar benchmarks/target/benchmarks.jar CalculatorBenchmark
+ *
+ * The parameters can be changed on the command line, e.g. -p maxIterations=1000 -p resolution=400.
+ *
+ * @author Student id: 170024238
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class CalculatorBenchmark {
+
+    private static final double RADIUS_SQUARED = 4.0;
+
+    @Param({"default view", "real axis satellite bulbs"})
+    public String view;
+
+    @Param({"plain loop", "interior check", "periodicity check", "interior + periodicity"})
+    public String mode;
+
+    @Param({"10000"})
+    public int maxIterations;
+
+    @Param({"900"})
+    public int resolution;
+
+    private MandelbrotCalculator calculator;
+    private FrameBuffer frameBuffer;
+    // The view as {minReal, maxReal, minImaginary, maxImaginary}
+    private double[] bounds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bounds = viewBounds(view);
+        calculator = new MandelbrotCalculator();
+        calculator.setInteriorCheck(mode.equals("interior check") || mode.equals("interior + periodicity"));
+        calculator.setPeriodicityCheck(mode.equals("periodicity check") || mode.equals("interior + periodicity"));
+        frameBuffer = new FrameBuffer(resolution, resolution);
+
+        FrameBuffer plainData = new FrameBuffer(resolution, resolution);
+        new MandelbrotCalculator().calcMandelbrotSet(plainData, bounds[0], bounds[1], bounds[2], bounds[3],
+                maxIterations, RADIUS_SQUARED);
+        calculate();
+        System.out.println(mode + ", " + view + ": " + FrameBuffer.countDifferentPixels(plainData, frameBuffer)
+                + " pixels differ from the plain loop");
+    }
+
+    /**
+     * @param view the name of a view.
+     * @return the view as {minReal, maxReal, minImaginary, maxImaginary}.
+     */
+    private static double[] viewBounds(String view) {
+        switch (view) {
+            case "default view":
+                return new double[]{-2.0, 0.7, -1.25, 1.25};
+            case "real axis satellite bulbs":
+                return new double[]{-1.8, -1.2, -0.3, 0.3};
+            default:
+                throw new IllegalArgumentException("Unknown view " + view);
+        }
+    }
+
+    @Benchmark
+    public FrameBuffer calculate() {
+        calculator.calcMandelbrotSet(frameBuffer, bounds[0], bounds[1], bounds[2], bounds[3], maxIterations, RADIUS_SQUARED);
+        return frameBuffer;
+    }
+}
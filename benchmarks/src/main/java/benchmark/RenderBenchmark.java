@@ -0,0 +1,181 @@
+package benchmark;
+
+import guiDelegate.ColorPalette;
+import model.FrameBuffer;
+import model.MandelbrotCalculator;
+import model.ParallelRenderEngine;
+import model.PerturbationRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JMH benchmark suite of the two stages of showing a frame: calculating the iteration values, and colour mapping them
+ * and painting the image, the work of JPanelHelperClass.paintComponent. Each stage has its own benchmarks so that a
+ * regression in either one is visible.
+ *
+ * The calculation is run on four views, the default view, a zoom into the seahorse valley, a view inside a bulb where
+ * every pixel reaches maxIterations, and a deep zoom calculated by perturbation, each with maxIterations of 50, 1000
+ * and 10000. The calculator is set up like the model's, with the interior check on, and runs on a single thread.
+ * The colour mapping does not depend on the view, so it is run on the iteration values of the default view.
+ *
+ * Build the benchmarks jar from the root of the project and run it, with the GC profiler to report the bytes
+ * allocated per operation and the allocation rate:
+ *
+ * mvn -B package
+ * java -jar benchmarks/target/benchmarks.jar RenderBenchmark -prof gc
+ *
+ * Parameters can be narrowed on the command line, e.g. -p view="seahorse valley" -p maxIterations=1000.
+ *
+ * @author Student id: 170024238
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+    private static final double RADIUS_SQUARED = 4.0;
+
+    // The deep zoom, far beyond double precision
+    private static final String DEEP_VIEW_NAME = "deep zoom 1e-20";
+    private static final BigDecimal DEEP_CENTRE_REAL = new BigDecimal("-0.743643887037158704752191506114774");
+    private static final BigDecimal DEEP_CENTRE_IMAGINARY = new BigDecimal("0.131825904205311970493132056385139");
+    private static final double DEEP_RANGE = 1e-20;
+
+    /**
+     * The frame shared by both stages: its resolution, maxIterations and the calculator.
+     */
+    @State(Scope.Benchmark)
+    public static class FrameState {
+
+        @Param({"400"})
+        public int resolution;
+
+        @Param({"50", "1000", "10000"})
+        public int maxIterations;
+
+        MandelbrotCalculator calculator;
+        FrameBuffer frameBuffer;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            calculator = new MandelbrotCalculator();
+            calculator.setInteriorCheck(true);
+            frameBuffer = new FrameBuffer(resolution, resolution);
+        }
+    }
+
+    /**
+     * The view calculated.
+     */
+    @State(Scope.Benchmark)
+    public static class ViewState {
+
+        @Param({"default view", "seahorse valley", "all interior", DEEP_VIEW_NAME})
+        public String view;
+
+        // The view as {minReal, maxReal, minImaginary, maxImaginary}, or null for the deep zoom
+        double[] bounds;
+        PerturbationRenderer perturbationRenderer;
+
+        @Setup(Level.Trial)
+        public void setUp(FrameState frameState) {
+            if (view.equals(DEEP_VIEW_NAME)) {
+                perturbationRenderer = new PerturbationRenderer(new ParallelRenderEngine(frameState.calculator, 1));
+            } else {
+                bounds = viewBounds(view);
+            }
+        }
+    }
+
+    /**
+     * The palette and image of the colour mapping, with the iteration values of the default view.
+     */
+    @State(Scope.Benchmark)
+    public static class PaintState {
+
+        @Param({"RED", "FIRE"})
+        public String palette;
+
+        ColorPalette colorPalette;
+        BufferedImage image;
+        int[] pixels;
+        BufferedImage screen;
+
+        @Setup(Level.Trial)
+        public void setUp(FrameState frameState) {
+            double[] bounds = viewBounds("default view");
+            frameState.calculator.calcMandelbrotSet(frameState.frameBuffer, bounds[0], bounds[1], bounds[2], bounds[3],
+                    frameState.maxIterations, RADIUS_SQUARED);
+            colorPalette = palette.equals("RED") ? ColorPalette.forColor(Color.RED) : ColorPalette.forName(palette);
+            image = new BufferedImage(frameState.resolution, frameState.resolution, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            screen = new BufferedImage(frameState.resolution, frameState.resolution, BufferedImage.TYPE_INT_RGB);
+        }
+    }
+
+    /**
+     * @param view the name of a view calculated in double precision.
+     * @return the view as {minReal, maxReal, minImaginary, maxImaginary}.
+     */
+    private static double[] viewBounds(String view) {
+        switch (view) {
+            case "default view":
+                return new double[]{-2.0, 0.7, -1.25, 1.25};
+            case "seahorse valley":
+                return new double[]{-0.7445, -0.7425, 0.1304, 0.1324};
+            case "all interior":
+                // inside the period 3 bulb, which the interior check does not catch
+                return new double[]{-0.16, -0.08, 0.70, 0.78};
+            default:
+                throw new IllegalArgumentException("Unknown view " + view);
+        }
+    }
+
+    @Benchmark
+    public FrameBuffer calculate(FrameState frameState, ViewState viewState) {
+        if (viewState.bounds == null) {
+            viewState.perturbationRenderer.calcMandelbrotSet(frameState.frameBuffer, DEEP_CENTRE_REAL, DEEP_CENTRE_IMAGINARY,
+                    DEEP_RANGE, DEEP_RANGE, frameState.maxIterations, RADIUS_SQUARED);
+        } else {
+            double[] bounds = viewState.bounds;
+            frameState.calculator.calcMandelbrotSet(frameState.frameBuffer, bounds[0], bounds[1], bounds[2], bounds[3],
+                    frameState.maxIterations, RADIUS_SQUARED);
+        }
+        return frameState.frameBuffer;
+    }
+
+    @Benchmark
+    public int[] colourMap(FrameState frameState, PaintState paintState) {
+        paintState.colorPalette.colorMap(frameState.frameBuffer, frameState.maxIterations, paintState.pixels);
+        return paintState.pixels;
+    }
+
+    @Benchmark
+    public BufferedImage colourMapAndPaint(FrameState frameState, PaintState paintState) {
+        paintState.colorPalette.colorMap(frameState.frameBuffer, frameState.maxIterations, paintState.pixels);
+        // drawing the image like paintComponent, here onto an off-screen image
+        Graphics2D graphics = paintState.screen.createGraphics();
+        graphics.drawImage(paintState.image, 0, 0, null);
+        graphics.dispose();
+        return paintState.screen;
+    }
+}
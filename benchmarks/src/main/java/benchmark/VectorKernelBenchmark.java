@@ -0,0 +1,84 @@
+package benchmark;
+
+import model.FrameBuffer;
+import model.MandelbrotCalculator;
+import model.ParallelRenderEngine;
+import model.RenderStrategy;
+import model.VectorRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JMH benchmark comparing the Vector API kernel of the VectorRenderer with MandelbrotCalculator.calcMandelbrotSet
+ * on the default 900x900 view. Both run on a single thread so that only the kernels are compared.
+ *
+ * The vector kernel is not part of the build (see VectorRenderer), so it has to be compiled from vector/ and put on
+ * the class path, and the module enabled in the forked JVM:
+ *
+ * mvn -B package
+ * javac --add-modules jdk.incubator.vector -cp explorer/target/classes -d vector/target vector/model/VectorKernel.java
+ * java -cp benchmarks/target/benchmarks.jar:vector/target org.openjdk.jmh.Main VectorKernelBenchmark -jvmArgsAppend "--add-modules jdk.incubator.vector"
+ *
+ * otherwise the renderer falls back to the scalar kernel. Which kernel is used, and whether its values are the same
+ * as the scalar ones, is printed before the VectorRenderer is measured.
+ *
+ * @author Student id: 170024238
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class VectorKernelBenchmark {
+
+    private static final double RADIUS_SQUARED = 4.0;
+
+    @Param({"calcMandelbrotSet", "VectorRenderer"})
+    public String kernel;
+
+    @Param({"1000"})
+    public int maxIterations;
+
+    @Param({"900"})
+    public int resolution;
+
+    private RenderStrategy renderStrategy;
+    private FrameBuffer frameBuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MandelbrotCalculator calculator = new MandelbrotCalculator();
+        frameBuffer = new FrameBuffer(resolution, resolution);
+        if (kernel.equals("VectorRenderer")) {
+            VectorRenderer vectorRenderer = new VectorRenderer(new ParallelRenderEngine(calculator, 1));
+            renderStrategy = vectorRenderer;
+
+            FrameBuffer scalarData = new FrameBuffer(resolution, resolution);
+            calculator.calcMandelbrotSet(scalarData, -2.0, 0.7, -1.25, 1.25, maxIterations, RADIUS_SQUARED);
+            calculate();
+            System.out.println((vectorRenderer.isVectorised() ? "Vector API kernel" : "Vector API unavailable - scalar fallback")
+                    + ", results identical: " + (FrameBuffer.countDifferentPixels(scalarData, frameBuffer) == 0));
+        } else {
+            renderStrategy = calculator;
+        }
+    }
+
+    @Benchmark
+    public FrameBuffer calculate() {
+        renderStrategy.calcMandelbrotSet(frameBuffer, -2.0, 0.7, -1.25, 1.25, maxIterations, RADIUS_SQUARED);
+        return frameBuffer;
+    }
+}
@@ -0,0 +1,289 @@
+package guiDelegate;
+
+import model.FrameBuffer;
+import model.MandelbrotModel;
+
+import java.awt.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ColorPalette class maps iteration values to colours through a lookup table.
+ *
+ * For a given maxIterations the palette builds an int[maxIterations + 1] of RGB values once, index i holding the colour
+ * of the iteration value i and index maxIterations the colour of the points inside the set (black). Colour mapping a
+ * frame is then a single array load per pixel. The tables of the last few maxIterations values are kept, so switching
+ * back and forth between palettes or iteration limits does not rebuild them.
+ *
+ * There are two kinds of palettes:
+ * - the colour palettes of the RED, GREEN, BLUE and WHITE modes (ENHANCEMENT 1 and 4), mapping higher iteration values
+ *   to brighter shades of the colour, see forColor(Color)
+ * - smooth gradient palettes interpolating between a list of colours, see forName(String)
+ *
+ * Frames holding the fractions of their iteration values (see FrameBuffer.setFractional) are coloured smoothly unless
+ * smooth colouring has been turned off since they were calculated: a pixel with the value n which escaped at n - 1 + fraction gets the colour interpolated between the lookup table
+ * colours around that continuous value, so the bands of the iteration values blend into each other at any
+ * maxIterations.
+ *
+ * Frames holding supersamples of their edge pixels (see AntiAliasingRenderer) are anti-aliased: every supersampled
+ * pixel gets the mean of the colours of its samples, each coloured like a pixel of the frame.
+ *
+ * @author Student id: 170024238
+ */
+public class ColorPalette {
+
+    // Number of lookup tables (one per maxIterations value) kept by each palette
+    private static final int CACHED_TABLES = 4;
+    private static final int INSIDE_COLOR = Color.BLACK.getRGB();
+
+    // Gradient palettes by name, in the order they are offered to the user
+    private static final Map<String, ColorPalette> GRADIENTS = new LinkedHashMap<>();
+    // Colour palettes by RGB value of the model colour
+    private static final Map<Integer, ColorPalette> COLOR_PALETTES = new HashMap<>();
+
+    static {
+        addGradient("FIRE", new Color(20, 0, 0), new Color(200, 30, 0), new Color(255, 170, 0), new Color(255, 255, 200));
+        addGradient("OCEAN", new Color(0, 7, 100), new Color(32, 107, 203), new Color(237, 255, 255), new Color(255, 170, 0), new Color(0, 2, 0));
+        addGradient("RAINBOW", Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.CYAN, Color.BLUE, Color.MAGENTA);
+    }
+
+    private final Color color;
+    private final int[] gradientColors;
+    private final Map<Integer, int[]> lookupTables = new LinkedHashMap<Integer, int[]>(CACHED_TABLES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+            return size() > CACHED_TABLES;
+        }
+    };
+
+    private ColorPalette(Color color, int[] gradientColors){
+        this.color = color;
+        this.gradientColors = gradientColors;
+    }
+
+    private static void addGradient(String name, Color... colors){
+        int[] gradientColors = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            gradientColors[i] = colors[i].getRGB();
+        }
+        GRADIENTS.put(name, new ColorPalette(null, gradientColors));
+    }
+
+    /**
+     * @return the names of the gradient palettes.
+     */
+    public static Set<String> getGradientNames(){
+        return Collections.unmodifiableSet(GRADIENTS.keySet());
+    }
+
+    /**
+     * @param name the name of a gradient palette.
+     * @return the gradient palette, or null if there is none with that name.
+     */
+    public static ColorPalette forName(String name){
+        return GRADIENTS.get(name);
+    }
+
+    /**
+     * @param color the colour of the colour mode (RED, GREEN, BLUE, WHITE, or any other colour drawn as is).
+     * @return the palette of the colour mode.
+     */
+    public static synchronized ColorPalette forColor(Color color){
+        ColorPalette palette = COLOR_PALETTES.get(color.getRGB());
+        if (palette == null) {
+            palette = new ColorPalette(color, null);
+            COLOR_PALETTES.put(color.getRGB(), palette);
+        }
+        return palette;
+    }
+
+    /**
+     * @param mMandelbrotModel the model whose presentation settings are used.
+     * @return the gradient palette selected in the model, or the palette of the model colour if there is none.
+     */
+    public static ColorPalette forModel(MandelbrotModel mMandelbrotModel){
+        ColorPalette gradient = mMandelbrotModel.getGradientName() == null ? null : forName(mMandelbrotModel.getGradientName());
+        return gradient != null ? gradient : forColor(mMandelbrotModel.getColor());
+    }
+
+    /**
+     * Method to get the lookup table for a maximum number of iterations, building it if it is not cached.
+     *
+     * @param maxIterations the maximum number of iterations of the frames to colour.
+     * @return the table of RGB values, indexed by iteration value from 0 to maxIterations.
+     */
+    public synchronized int[] getLookupTable(int maxIterations){
+        int[] lookupTable = lookupTables.get(maxIterations);
+        if (lookupTable == null) {
+            lookupTable = buildLookupTable(maxIterations);
+            lookupTables.put(maxIterations, lookupTable);
+        }
+        return lookupTable;
+    }
+
+    private int[] buildLookupTable(int maxIterations){
+        int[] lookupTable = new int[maxIterations + 1];
+        for (int i = 0; i < maxIterations; i++) {
+            float colorValue = (float) i / maxIterations;
+            lookupTable[i] = gradientColors != null ? gradientColor(colorValue) : shadeColor(colorValue);
+        }
+        lookupTable[maxIterations] = INSIDE_COLOR;
+        return lookupTable;
+    }
+
+    /**
+     * The colour modes: higher iteration values are mapped to brighter shades of red, green or blue.
+     */
+    private int shadeColor(float colorValue){
+        // same rounding as new Color(float, float, float)
+        int shade = (int) (colorValue * 255 + 0.5);
+        if (color.equals(Color.RED)){
+            return 0xff000000 | shade << 16;
+        } else if (color.equals(Color.GREEN)){
+            return 0xff000000 | shade << 8;
+        } else if (color.equals(Color.BLUE)){
+            return 0xff000000 | shade;
+        } else if (color.equals(Color.WHITE)){
+            return Color.WHITE.getRGB();
+        }
+        return color.getRGB();
+    }
+
+    /**
+     * The gradients: the colour is interpolated linearly between the two gradient colours around colorValue.
+     */
+    private int gradientColor(float colorValue){
+        float position = colorValue * (gradientColors.length - 1);
+        int index = Math.min((int) position, gradientColors.length - 2);
+        float fraction = position - index;
+        int from = gradientColors[index];
+        int to = gradientColors[index + 1];
+        int red = Math.round(((from >> 16) & 0xff) * (1 - fraction) + ((to >> 16) & 0xff) * fraction);
+        int green = Math.round(((from >> 8) & 0xff) * (1 - fraction) + ((to >> 8) & 0xff) * fraction);
+        int blue = Math.round((from & 0xff) * (1 - fraction) + (to & 0xff) * fraction);
+        return 0xff000000 | red << 16 | green << 8 | blue;
+    }
+
+    /**
+     * Method to colour map a frame into an array of RGB pixels of the same width and height.
+     *
+     * @param frameBuffer the iteration values of the frame, coloured smoothly if it holds their fractions, and
+     *                    anti-aliased if it holds supersamples.
+     * @param maxIterations the maximum number of iterations the frame was calculated with.
+     * @param pixels the array receiving the RGB value of every pixel, row by row.
+     */
+    public void colorMap(FrameBuffer frameBuffer, int maxIterations, int[] pixels){
+        colorMap(frameBuffer, maxIterations, pixels, true);
+    }
+
+    /**
+     * Method to colour map a frame into an array of RGB pixels of the same width and height.
+     *
+     * @param frameBuffer the iteration values of the frame, anti-aliased if it holds supersamples.
+     * @param maxIterations the maximum number of iterations the frame was calculated with.
+     * @param pixels the array receiving the RGB value of every pixel, row by row.
+     * @param smooth whether to colour the frame smoothly, which it only is if it also holds the fractions.
+     */
+    public void colorMap(FrameBuffer frameBuffer, int maxIterations, int[] pixels, boolean smooth){
+        smooth = smooth && frameBuffer.isFractional();
+        if (smooth) {
+            colorMapSmooth(frameBuffer, maxIterations, pixels);
+        } else {
+            int[] lookupTable = getLookupTable(maxIterations);
+            int[] data = frameBuffer.getData();
+            int width = frameBuffer.getWidth();
+            for (int y = 0; y < frameBuffer.getHeight(); y++) {
+                int offset = frameBuffer.getOffset(y);
+                int pixelOffset = y * width;
+                for (int x = 0; x < width; x++) {
+                    pixels[pixelOffset + x] = lookupTable[Math.min(data[offset + x], maxIterations)];
+                }
+            }
+        }
+        if (frameBuffer.getSamplesPerPixel() > 0) {
+            colorMapSupersamples(frameBuffer, maxIterations, pixels, smooth);
+        }
+    }
+
+    /**
+     * Method to colour map a fractional frame, interpolating between the lookup table colours of the two iteration
+     * values around the continuous value of each escaped pixel. The points inside the set are coloured as usual.
+     */
+    private void colorMapSmooth(FrameBuffer frameBuffer, int maxIterations, int[] pixels){
+        int[] lookupTable = getLookupTable(maxIterations);
+        int[] data = frameBuffer.getData();
+        char[] fractions = frameBuffer.getFractions();
+        int width = frameBuffer.getWidth();
+        for (int y = 0; y < frameBuffer.getHeight(); y++) {
+            int offset = frameBuffer.getOffset(y);
+            int pixelOffset = y * width;
+            for (int x = 0; x < width; x++) {
+                pixels[pixelOffset + x] = smoothColor(lookupTable, maxIterations, data[offset + x], fractions[offset + x]);
+            }
+        }
+    }
+
+    /**
+     * Method to colour the supersampled pixels of a frame with the mean of the colours of their samples, overwriting
+     * the colours of their iteration values.
+     */
+    private void colorMapSupersamples(FrameBuffer frameBuffer, int maxIterations, int[] pixels, boolean smooth){
+        int[] lookupTable = getLookupTable(maxIterations);
+        int[] indices = frameBuffer.getSupersampledIndices();
+        int[] samples = frameBuffer.getSupersampleData();
+        char[] sampleFractions = smooth ? frameBuffer.getSupersampleFractions() : null;
+        int samplesPerPixel = frameBuffer.getSamplesPerPixel();
+        int width = frameBuffer.getWidth();
+        for (int i = 0; i < frameBuffer.getSupersampledPixels(); i++) {
+            int red = 0, green = 0, blue = 0;
+            for (int sample = i * samplesPerPixel; sample < (i + 1) * samplesPerPixel; sample++) {
+                int rgb = sampleFractions != null ? smoothColor(lookupTable, maxIterations, samples[sample], sampleFractions[sample])
+                        : lookupTable[Math.min(samples[sample], maxIterations)];
+                red += (rgb >> 16) & 0xff;
+                green += (rgb >> 8) & 0xff;
+                blue += rgb & 0xff;
+            }
+            // the pixels are packed row by row, while the frame may have a stride
+            int y = indices[i] / frameBuffer.getStride();
+            int x = indices[i] - frameBuffer.getOffset(y);
+            int half = samplesPerPixel / 2;
+            pixels[y * width + x] = 0xff000000 | (red + half) / samplesPerPixel << 16
+                    | (green + half) / samplesPerPixel << 8 | (blue + half) / samplesPerPixel;
+        }
+    }
+
+    /**
+     * @return the colour of the iteration value with the given fraction, interpolated between the lookup table colours
+     * around its continuous value n - 1 + fraction, or the inside colour if it did not escape.
+     */
+    private static int smoothColor(int[] lookupTable, int maxIterations, int value, char fraction){
+        if (value >= maxIterations) {
+            return lookupTable[maxIterations];
+        }
+        // the continuous value in whole iterations and 8 bits of the rest
+        int index = value - 1 + FrameBuffer.MIN_FRACTION + fraction / FrameBuffer.FRACTION_SCALE;
+        int weight = (fraction % FrameBuffer.FRACTION_SCALE) * 256 / FrameBuffer.FRACTION_SCALE;
+        if (index < 0) {
+            return lookupTable[0];
+        } else if (index >= maxIterations - 1) {
+            return lookupTable[maxIterations - 1];
+        }
+        return blend(lookupTable[index], lookupTable[index + 1], weight);
+    }
+
+    /**
+     * @param from the RGB value at weight 0.
+     * @param to the RGB value at weight 256.
+     * @param weight the weight of to, from 0 to 255, 8 bits being plenty for 8 bit channels.
+     * @return the RGB value interpolated linearly between from and to.
+     */
+    private static int blend(int from, int to, int weight){
+        int red = (((from >> 16) & 0xff) * (256 - weight) + ((to >> 16) & 0xff) * weight) >> 8;
+        int green = (((from >> 8) & 0xff) * (256 - weight) + ((to >> 8) & 0xff) * weight) >> 8;
+        int blue = ((from & 0xff) * (256 - weight) + (to & 0xff) * weight) >> 8;
+        return 0xff000000 | red << 16 | green << 8 | blue;
+    }
+}
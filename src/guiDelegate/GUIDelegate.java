@@ -6,7 +6,6 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import java.util.ArrayDeque;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Stack;
@@ -38,6 +37,7 @@ public class GUIDelegate implements Observer{
     private JToolBar jToolBar;
     private JButton btnChangeColor, btnUndo, btnRedo, btnReset, btnUpdate;
     private JTextField inputIterations;
+    private JCheckBox autoIterations;
     private JTextArea output_field;
     private JMenuBar jMenuBar;
     JLabel iterationsLabel;
@@ -49,8 +49,6 @@ public class GUIDelegate implements Observer{
     private MandelbrotModel mandelbrotModel;
     private JPanelHelperClass jPanelHelperClass;
 
-    private ArrayDeque<MandelbrotSetData> animationFrames;
-
     /**
      * Instantiate a new GUIDelegate object
      * @param mandelbrotModel the Model to observe, render, and update according to user events
@@ -68,13 +66,10 @@ public class GUIDelegate implements Observer{
         // Calling the initComponents() method to initialise all the GUI components.
         initComponents();
 
-        // initialising the stack used for Undo and Redo and the ArrayDeque reuired for Animations
+        // initialising the stack used for Undo and Redo
         stackUndo = mandelbrotModel.getStackUndo();
         stackRedo = mandelbrotModel.getStackRedo();
 
-        // ENHANCEMENT 3 - Animations
-        animationFrames = mandelbrotModel.getAnimationFrames();
-
         //add the delegate UI component as an observer of the model so as to detect changes in the model and update the
         //GUI view accordingly
         mandelbrotModel.addObserver(this);
@@ -146,6 +141,9 @@ public class GUIDelegate implements Observer{
             public void actionPerformed(ActionEvent actionEvent) {
                 try{
                     saveToUndoStack();
+                    // a typed maxIterations replaces the automatic one
+                    autoIterations.setSelected(false);
+                    mandelbrotModel.setAutoIterations(false);
                     mandelbrotModel.setMaximumIterations(Integer.parseInt(inputIterations.getText()));
                     mandelbrotModel.updateMandelbrot();
                     inputIterations.setText(""); // clear the input box in the GUI view
@@ -155,7 +153,8 @@ public class GUIDelegate implements Observer{
             }
         });
 
-        // Listener for the pop up when clicked on Change Color button.
+        // Listener for the pop up when clicked on Change Color button. Colour changes keep the calculated data,
+        // updateMandelbrot() only colour maps it again.
          colorPopup = new JPopupMenu();
          colorPopup.add(new JMenuItem(new AbstractAction("RED") {
              @Override
@@ -185,6 +184,18 @@ public class GUIDelegate implements Observer{
             }
         }));
 
+        // Smooth gradient palettes
+        colorPopup.addSeparator();
+        for (final String gradientName : ColorPalette.getGradientNames()){
+            colorPopup.add(new JMenuItem(new AbstractAction(gradientName) {
+                @Override
+                public void actionPerformed(ActionEvent actionEvent) {
+                    saveToUndoStack();
+                    mandelbrotModel.setGradientName(gradientName);
+                    mandelbrotModel.updateMandelbrot();
+                }
+            }));
+        }
 
 
         // Listener for Change Color button
@@ -217,6 +228,16 @@ public class GUIDelegate implements Observer{
            }
        });
 
+        // Listener for the Auto iterations check box, which picks maxIterations from the zoom depth and a sampling pass
+        autoIterations = new JCheckBox("Auto iterations");
+        autoIterations.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                mandelbrotModel.setAutoIterations(autoIterations.isSelected());
+                mandelbrotModel.updateMandelbrot();
+            }
+        });
+
         // adding all components to the toolbar
         jToolBar.add(btnChangeColor);
         jToolBar.add(btnReset);
@@ -225,6 +246,7 @@ public class GUIDelegate implements Observer{
         jToolBar.add(iterationsLabel);
         jToolBar.add(inputIterations);
         jToolBar.add(btnUpdate);
+        jToolBar.add(autoIterations);
         mainJFrame.add(jToolBar, BorderLayout.NORTH);
     }
 
@@ -232,7 +254,7 @@ public class GUIDelegate implements Observer{
      * ENHANCEMENT 2 - Save and Load - permit parameter settings and potentially the computed image to be saved and
      * loaded to/from file thereby permitting a saved image to be re-loaded and the user to continue exploring
      * the Mandelbrot set from that position onwards.
-     * Sets up File menu with Load and Save entries
+     * Sets up File menu with Load and Save entries, and View menu with the render metrics overlay, smooth colouring and anti-aliasing
      * The Load and Save actions would normally be translated to appropriate model method calls similar to the way the code does this
      * above in @see #setupToolbar().
      */
@@ -298,6 +320,37 @@ public class GUIDelegate implements Observer{
 
             }
         });
+
+        // View menu showing the metrics of the last frame over the image, blending the colour bands and smoothing
+        // their edges
+        JMenu view = new JMenu ("View");
+        final JCheckBoxMenuItem renderMetrics = new JCheckBoxMenuItem ("Render metrics");
+        final JCheckBoxMenuItem smoothColouring = new JCheckBoxMenuItem ("Smooth colouring");
+        view.add(renderMetrics);
+        final JCheckBoxMenuItem antiAliasing = new JCheckBoxMenuItem ("Anti-aliasing");
+        view.add(smoothColouring);
+        view.add(antiAliasing);
+        jMenuBar.add (view);
+        renderMetrics.addActionListener(new ActionListener(){
+            public void actionPerformed(ActionEvent e) {
+                jPanelHelperClass.setMetricsOverlay(renderMetrics.isSelected());
+            }
+        });
+        smoothColouring.addActionListener(new ActionListener(){
+            public void actionPerformed(ActionEvent e) {
+                // recalculates the frame with the fractions of its iteration values if it has none
+                mandelbrotModel.setSmoothColouring(smoothColouring.isSelected());
+                mandelbrotModel.updateMandelbrot();
+            }
+        });
+        antiAliasing.addActionListener(new ActionListener(){
+            public void actionPerformed(ActionEvent e) {
+                // supersamples the edge pixels of the frame, or drops its supersamples
+                mandelbrotModel.setAntiAliasing(antiAliasing.isSelected());
+                mandelbrotModel.updateMandelbrot();
+            }
+        });
+
         // add menubar to frame
         mainJFrame.setJMenuBar(jMenuBar);
     }
@@ -367,12 +420,15 @@ public class GUIDelegate implements Observer{
                 } else {
                     btnRedo.setEnabled(false);
                 }
+               // Both a ModelChange.GEOMETRY (new data) and a ModelChange.PRESENTATION (same data, new colours)
+               // need the image to be colour mapped again; only the former involved a recalculation. While a
+               // frame is RENDERING the previous one stays displayed, possibly with new colours, until the first
+               // PREVIEW pass of the new frame replaces it.
+               // The frames of an animation arrive the same way, played back by the panel's animation timer.
+               iterationsLabel.setText(mandelbrotModel.isAutoIterations()
+                       ? "Number of Iterations (auto " + mandelbrotModel.getMaximumIterations() + "): " : "Number of Iterations: ");
+               jPanelHelperClass.refreshImage();
                jPanelHelperClass.repaint();
-
-                // updates the mandelbrot set according to the ANIMATION frame size.
-                if (animationFrames.size() > 0){
-                    mandelbrotModel.updateMandelbrot(animationFrames.remove());
-                }
             }
         });
     }
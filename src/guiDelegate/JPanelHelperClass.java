@@ -1,13 +1,25 @@
 package guiDelegate;
 
+import model.FrameBuffer;
+import model.FrameGeometry;
 import model.MandelbrotModel;
+import model.RenderMetrics;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 /**
@@ -15,27 +27,55 @@ import java.util.Stack;
  * such as any Mouse click or Mouse Listener events ( Painting Components, Zoom, Dragging boundary while zooming,
  * implement animation functionality)
  *
+ * The view is panned by dragging with the right mouse button or with the arrow keys.
+ *
+ * The metrics of the last frame calculated can be drawn over the image, see setMetricsOverlay.
+ *
  * @author Student Id: 170024238
  *
  */
-public class JPanelHelperClass extends JPanel implements MouseListener, MouseMotionListener{
+public class JPanelHelperClass extends JPanel implements MouseListener, MouseMotionListener, KeyListener{
+
+    private static final long serialVersionUID = 1L;
 
     private MandelbrotModel mMandelbrotModel;
-    int[][] mandelbrotInfo;
+    FrameBuffer mandelbrotInfo;
     int maximumIterations;
     public int coordinateX1, coordinateX2, coordinateY1, coordinateY2;
 
+    // The colour mapped Mandelbrot data, drawn on every repaint and only rebuilt when the model has changed
+    private BufferedImage mandelbrotImage;
+    private boolean mandelbrotImageStale = true;
+
     private Stack<MandelbrotSetData> stackUndo;
     private Stack<MandelbrotSetData> stackRedo;
 
     // simple boolean value used in the implementation of zoom feature.
     private boolean selectionToZoom;
 
+    // true while the view is dragged with the right mouse button, whether the drag has moved the view yet, and the
+    // last mouse position of the drag
+    private boolean panning;
+    private boolean panned;
+    private int panX, panY;
+
     private ArrayDeque<MandelbrotSetData> animationFrames;
 
     //Default animation frames value
     private static int DEFAULT_ANIMATION_FRAMES = 15;
 
+    // Frame rate the animations are played back at, and the timer showing their frames
+    private static final int ANIMATION_FRAMES_PER_SECOND = 25;
+    private Timer animationTimer;
+
+    // Number of pixels an arrow key pans the view by
+    private static final int KEY_PAN_PIXELS = 45;
+
+    // Whether the metrics of the last frame are drawn over the image, and the size of the overlay
+    private boolean metricsOverlay;
+    private static final int METRICS_OVERLAY_WIDTH = 520;
+    private static final int METRICS_OVERLAY_MARGIN = 8;
+
     /**
      * Instantiate a new JPanelHelperClass object
      *
@@ -44,6 +84,8 @@ public class JPanelHelperClass extends JPanel implements MouseListener, MouseMot
     public JPanelHelperClass(MandelbrotModel mMandelbrotModel){
         super.addMouseListener(this);
         super.addMouseMotionListener(this);
+        super.addKeyListener(this);
+        setFocusable(true);
         this.mMandelbrotModel = mMandelbrotModel;
         // setting initial boolean value to false
         selectionToZoom = false;
@@ -52,51 +94,169 @@ public class JPanelHelperClass extends JPanel implements MouseListener, MouseMot
         stackRedo = mMandelbrotModel.getStackRedo();
 
         animationFrames = mMandelbrotModel.getAnimationFrames();
+
+        animationTimer = new Timer(1000 / ANIMATION_FRAMES_PER_SECOND, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                if (!JPanelHelperClass.this.mMandelbrotModel.advanceAnimation()){
+                    animationTimer.stop();
+                }
+            }
+        });
     }
 
     /**
-     * The following method performs ENHANCEMENT 1 and ENHANCEMENT 4.
-     * Different color mappings to map the iteration values to different shades of a colour, where higher iteration
-     * numbers are mapped to brighter/whiter shades of blue and red until the iteration limit is reached.
+     * Method to mark the cached image as out of date, so that the next repaint colour maps the model's data again.
+     * Called whenever the model has changed; repaints caused by the zoom selection only draw the cached image.
+     */
+    public void refreshImage(){
+        mandelbrotImageStale = true;
+    }
+
+    /**
+     * Draws the cached Mandelbrot image, colour mapping it first if the model has changed since, and the zoom
+     * selection on top of it.
      *
-     * Permits the user to switch between colour maps at the touch of a button.
      * @param graphics
      */
     @Override
     protected void paintComponent(Graphics graphics){
         super.paintComponent(graphics);
 
-         mandelbrotInfo = mMandelbrotModel.getMandelbrotInfo();
-         maximumIterations = mMandelbrotModel.getMaximumIterations();
+        mandelbrotInfo = mMandelbrotModel.getMandelbrotInfo();
+        // the times are only recorded for the frame the metrics are about, not for previews of the next one
+        RenderMetrics renderMetrics = mMandelbrotModel.getRenderMetrics();
+        boolean recordMetrics = renderMetrics != null && mMandelbrotModel.isMandelbrotInfoComplete()
+                && renderMetrics.getFrameGeometry() == mMandelbrotModel.getMandelbrotInfoGeometry();
+        if (mandelbrotImageStale || mandelbrotImage == null
+                || mandelbrotImage.getWidth() != mandelbrotInfo.getWidth()
+                || mandelbrotImage.getHeight() != mandelbrotInfo.getHeight()){
+            long colorMapStart = System.nanoTime();
+            colorMapImage();
+            if (recordMetrics){
+                renderMetrics.recordColorMap(System.nanoTime() - colorMapStart);
+            }
+        }
+        long paintStart = System.nanoTime();
+        graphics.drawImage(mandelbrotImage, 0, 0, null);
+        if (recordMetrics){
+            renderMetrics.recordPaint(System.nanoTime() - paintStart);
+        }
 
-        for (int i = 0; i < mandelbrotInfo.length ; i++){
-            for (int j = 0; j < mandelbrotInfo[i].length; j++){
-                if (mandelbrotInfo[i][j] >= maximumIterations){
-                    graphics.setColor(Color.BLACK);
-                    graphics.drawLine(j, i, j, i);
-                } else {
-                    float colorValue = (float) mandelbrotInfo[i][j] / mMandelbrotModel.getMaximumIterations();
-
-                    if (mMandelbrotModel.getColor().equals(Color.RED)){
-                        graphics.setColor(new Color(colorValue, 0, 0));
-                    } else if (mMandelbrotModel.getColor().equals(Color.GREEN)){
-                        graphics.setColor(new Color(0, colorValue, 0));
-                    } else if (mMandelbrotModel.getColor().equals(Color.BLUE)){
-                        graphics.setColor(new Color(0, 0, colorValue));
-                    } else if (mMandelbrotModel.getColor().equals(Color.WHITE)){
-                        graphics.setColor(Color.WHITE);
-                    } else {
-                        graphics.setColor(mMandelbrotModel.getColor());
-                    }
-                    graphics.drawLine(j, i, j, i);
-                }
+        // calling the method below to draw the boundary line while selecting area to zoom.
+        drawZoomSelectionBoundary(graphics);
+
+        if (metricsOverlay && renderMetrics != null){
+            drawMetricsOverlay(graphics, renderMetrics);
+        }
+    }
+
+    public boolean isMetricsOverlay() {
+        return metricsOverlay;
+    }
+
+    /**
+     * @param metricsOverlay true to show the metrics of the last frame calculated over the image.
+     */
+    public void setMetricsOverlay(boolean metricsOverlay) {
+        this.metricsOverlay = metricsOverlay;
+        repaint();
+    }
+
+    /**
+     * Method to draw the metrics of the last frame calculated in the top left corner: the time of each stage, the
+     * iteration values, the heap allocated, the time each thread spent on rows and a histogram of the row times.
+     *
+     * @param graphics graphics object used to draw the overlay.
+     * @param renderMetrics the metrics of the last frame calculated.
+     */
+    private void drawMetricsOverlay(Graphics graphics, RenderMetrics renderMetrics){
+        FrameGeometry frameGeometry = renderMetrics.getFrameGeometry();
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("frame %d  %dx%d  maxIterations %d  %s", mMandelbrotModel.getRenderCount(),
+                frameGeometry.getXResolution(), frameGeometry.getYResolution(), frameGeometry.getMaxIterations(),
+                renderMetrics.getRenderPath()));
+        lines.add(String.format("compute %.1f ms  colour map %.1f ms  paint %.1f ms", renderMetrics.getComputeNanos() / 1e6,
+                renderMetrics.getColorMapNanos() / 1e6, renderMetrics.getPaintNanos() / 1e6));
+        lines.add(String.format("iterations %,d  mean %.1f per pixel", renderMetrics.getTotalIterations(),
+                renderMetrics.getMeanIterations()));
+        lines.add(String.format("escaped %,d  interior %,d  short-circuited %,d  periodic %,d", renderMetrics.getEscapedPixels(),
+                renderMetrics.getInteriorPixels(), renderMetrics.getShortCircuitedPixels(), renderMetrics.getPeriodicPixels()));
+        lines.add(renderMetrics.getAllocatedBytes() < 0 ? "allocated n/a"
+                : String.format("allocated %.1f MB", renderMetrics.getAllocatedBytes() / 1e6));
+        for (Map.Entry<String, Long> entry : renderMetrics.getThreadNanos().entrySet()) {
+            lines.add(String.format("  %s %.1f ms", entry.getKey(), entry.getValue() / 1e6));
+        }
+
+        long[] rowTimeHistogram = renderMetrics.getRowTimeHistogram();
+        int firstBucket = rowTimeHistogram.length, lastBucket = -1;
+        long largestBucket = 0;
+        for (int i = 0; i < rowTimeHistogram.length; i++) {
+            if (rowTimeHistogram[i] > 0){
+                firstBucket = Math.min(firstBucket, i);
+                lastBucket = i;
+                largestBucket = Math.max(largestBucket, rowTimeHistogram[i]);
             }
+        }
+        if (lastBucket >= 0){
+            lines.add("row times:");
+        }
 
-            // calling the method below to draw the boundary line while selecting area to zoom.
-            drawZoomSelectionBoundary(graphics);
+        graphics.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        FontMetrics fontMetrics = graphics.getFontMetrics();
+        int lineHeight = fontMetrics.getHeight();
+        int histogramRows = lastBucket >= 0 ? lastBucket - firstBucket + 1 : 0;
+        int width = METRICS_OVERLAY_WIDTH;
+        int height = (lines.size() + histogramRows) * lineHeight + 2 * METRICS_OVERLAY_MARGIN;
+        graphics.setColor(new Color(0, 0, 0, 180));
+        graphics.fillRect(0, 0, width, height);
+
+        graphics.setColor(Color.WHITE);
+        int y = METRICS_OVERLAY_MARGIN + fontMetrics.getAscent();
+        for (String line : lines) {
+            graphics.drawString(line, METRICS_OVERLAY_MARGIN, y);
+            y += lineHeight;
+        }
+        // one bar per bucket, e.g. "< 512 us" counting the rows which took 256 to 512 microseconds
+        int barX = METRICS_OVERLAY_MARGIN + fontMetrics.stringWidth("< 8388608 us 000000 ");
+        int barWidth = width - barX - METRICS_OVERLAY_MARGIN;
+        for (int i = firstBucket; i <= lastBucket; i++) {
+            long limit = RenderMetrics.getRowTimeBucketLimit(i);
+            String label = limit == Long.MAX_VALUE ? String.format(">= %d us %d", RenderMetrics.getRowTimeBucketLimit(i - 1), rowTimeHistogram[i])
+                    : String.format("< %d us %d", limit, rowTimeHistogram[i]);
+            graphics.drawString(label, METRICS_OVERLAY_MARGIN, y);
+            graphics.fillRect(barX, y - fontMetrics.getAscent() + 2, (int) (barWidth * rowTimeHistogram[i] / largestBucket),
+                    fontMetrics.getAscent() - 2);
+            y += lineHeight;
         }
     }
 
+    /**
+     * The following method performs ENHANCEMENT 1 and ENHANCEMENT 4.
+     * Different color mappings to map the iteration values to different shades of a colour, where higher iteration
+     * numbers are mapped to brighter/whiter shades of blue and red until the iteration limit is reached.
+     *
+     * Permits the user to switch between colour maps at the touch of a button.
+     *
+     * The colours are looked up in the palette's table and written straight into the pixels of the cached image.
+     */
+    private void colorMapImage(){
+        int width = mandelbrotInfo.getWidth();
+        int height = mandelbrotInfo.getHeight();
+        if (mandelbrotImage == null || mandelbrotImage.getWidth() != width || mandelbrotImage.getHeight() != height){
+            mandelbrotImage = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_RGB);
+        }
+        int[] pixels = ((DataBufferInt) mandelbrotImage.getRaster().getDataBuffer()).getData();
+
+        // the displayed frame may still be the previous one while a new frame is being calculated
+        FrameGeometry frameGeometry = mMandelbrotModel.getMandelbrotInfoGeometry();
+        maximumIterations = frameGeometry != null ? frameGeometry.getMaxIterations() : mMandelbrotModel.getMaximumIterations();
+        // a frame calculated with fractions is coloured in bands again once smooth colouring is turned off
+        ColorPalette.forModel(mMandelbrotModel).colorMap(mandelbrotInfo, maximumIterations, pixels,
+                mMandelbrotModel.isSmoothColouring());
+        mandelbrotImageStale = false;
+    }
+
     /**
      * Method to draw a boundary while selecting an area to zoom.
      *
@@ -134,11 +294,28 @@ public class JPanelHelperClass extends JPanel implements MouseListener, MouseMot
 
     @Override
     public void mousePressed(MouseEvent mouseEvent) {
+        requestFocusInWindow();
+        if (SwingUtilities.isRightMouseButton(mouseEvent)){
+            panning = true;
+            panned = false;
+            panX = mouseEvent.getX();
+            panY = mouseEvent.getY();
+            return;
+        }
         coordinateX1 = mouseEvent.getX();
         coordinateY1 = mouseEvent.getY();
         selectionToZoom = false;
     }
 
+    /**
+     * Method to save the current view to the undo stack before it is changed, and stop any zoom animation.
+     */
+    private void pushUndo(){
+        stackUndo.push(new MandelbrotSetData(mMandelbrotModel));
+        stackRedo.clear();
+        animationFrames.clear();
+    }
+
     /**
      * Override method performs the functionality for what happens when mouse pointer is released.
      * Tasks implemented below:
@@ -153,6 +330,10 @@ public class JPanelHelperClass extends JPanel implements MouseListener, MouseMot
      */
     @Override
     public void mouseReleased(MouseEvent mouseEvent) {
+        if (panning){
+            panning = false;
+            return;
+        }
 
         /**
          * The below lines of code is used to force the boundary of the coordinates retrieved to be a square, if it is
@@ -186,27 +367,27 @@ public class JPanelHelperClass extends JPanel implements MouseListener, MouseMot
             MandelbrotSetData mandelbrotSetData = new MandelbrotSetData(stackUndo.peek());
 
 
-            double realRange = mMandelbrotModel.getMaximumReal() - mMandelbrotModel.getMinumumReal();
-            double imaginaryRange = mMandelbrotModel.getMaximumImaginary() - mMandelbrotModel.getMinimumImaginary();
+            double realRange = mMandelbrotModel.getRealRange();
+            double imaginaryRange = mMandelbrotModel.getImaginaryRange();
 
             double animationRatioAspect = (double) (i+1) / DEFAULT_ANIMATION_FRAMES;
 
-
-            mandelbrotSetData.setMinumumReal(mMandelbrotModel.getMinumumReal() + ((double) coordinateX1 / mMandelbrotModel.getX_resolution()) * realRange * animationRatioAspect);
-
-            mandelbrotSetData.setMaximumImaginary(mMandelbrotModel.getMaximumImaginary() - ((double) (mMandelbrotModel.getY_resolution() - coordinateY2) / mMandelbrotModel.getY_resolution()) * imaginaryRange * animationRatioAspect);
-
-            mandelbrotSetData.setMaximumReal(mMandelbrotModel.getMaximumReal() - ((double) (mMandelbrotModel.getX_resolution() - coordinateX2) / mMandelbrotModel.getX_resolution()) * realRange * animationRatioAspect);
-
-            mandelbrotSetData.setMinimumImaginary(mMandelbrotModel.getMinimumImaginary() + ((double) coordinateY1 / mMandelbrotModel.getY_resolution()) * imaginaryRange * animationRatioAspect);
+            // the bounds are moved through the arbitrary precision centre so that deep zooms keep their precision
+            mandelbrotSetData.shrinkBounds(
+                    ((double) coordinateX1 / mMandelbrotModel.getX_resolution()) * realRange * animationRatioAspect,
+                    ((double) (mMandelbrotModel.getX_resolution() - coordinateX2) / mMandelbrotModel.getX_resolution()) * realRange * animationRatioAspect,
+                    ((double) coordinateY1 / mMandelbrotModel.getY_resolution()) * imaginaryRange * animationRatioAspect,
+                    ((double) (mMandelbrotModel.getY_resolution() - coordinateY2) / mMandelbrotModel.getY_resolution()) * imaginaryRange * animationRatioAspect);
 
             animationFrames.add(mandelbrotSetData);
         }
 
         selectionToZoom = true;
 
+        // the frames are calculated ahead in parallel and shown at a fixed frame rate by the animation timer
         if (animationFrames.size() > 0){
-            mMandelbrotModel.updateMandelbrot(animationFrames.remove());
+            mMandelbrotModel.startAnimation();
+            animationTimer.start();
         }
 
         System.out.println(coordinateX1 + " " + coordinateY1 + " " + coordinateX2 + " " + coordinateY2 );
@@ -224,6 +405,22 @@ public class JPanelHelperClass extends JPanel implements MouseListener, MouseMot
 
     @Override
     public void mouseDragged(MouseEvent mouseEvent) {
+        if (panning){
+            // the view follows the mouse, so it moves the opposite way to the pointer
+            int shiftX = panX - mouseEvent.getX();
+            int shiftY = panY - mouseEvent.getY();
+            panX = mouseEvent.getX();
+            panY = mouseEvent.getY();
+            if (shiftX != 0 || shiftY != 0){
+                // the whole drag is undone at once, and a right click which does not move the view is not undone
+                if (!panned){
+                    pushUndo();
+                    panned = true;
+                }
+                mMandelbrotModel.panMandelbrot(shiftX, shiftY);
+            }
+            return;
+        }
         // get x2, y2 coordinates
         coordinateX2 = mouseEvent.getX();
         coordinateY2 = mouseEvent.getY();
@@ -234,4 +431,42 @@ public class JPanelHelperClass extends JPanel implements MouseListener, MouseMot
     public void mouseMoved(MouseEvent mouseEvent) {
 
     }
+
+    /**
+     * Override method panning the view by KEY_PAN_PIXELS with the arrow keys.
+     *
+     * @param keyEvent key event object used to retrieve the key pressed
+     */
+    @Override
+    public void keyPressed(KeyEvent keyEvent) {
+        int shiftX = 0, shiftY = 0;
+        switch (keyEvent.getKeyCode()){
+            case KeyEvent.VK_LEFT:
+                shiftX = -KEY_PAN_PIXELS;
+                break;
+            case KeyEvent.VK_RIGHT:
+                shiftX = KEY_PAN_PIXELS;
+                break;
+            case KeyEvent.VK_UP:
+                shiftY = -KEY_PAN_PIXELS;
+                break;
+            case KeyEvent.VK_DOWN:
+                shiftY = KEY_PAN_PIXELS;
+                break;
+            default:
+                return;
+        }
+        pushUndo();
+        mMandelbrotModel.panMandelbrot(shiftX, shiftY);
+    }
+
+    @Override
+    public void keyTyped(KeyEvent keyEvent) {
+
+    }
+
+    @Override
+    public void keyReleased(KeyEvent keyEvent) {
+
+    }
 }
@@ -3,7 +3,10 @@ package guiDelegate;
 import model.MandelbrotModel;
 
 import java.awt.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.math.BigDecimal;
 
 /**
  *  This is the simple class whose purpose is to only store and get all the Mandelbrot Set Data.
@@ -16,9 +19,15 @@ import java.io.Serializable;
  */
 public class MandelbrotSetData implements Serializable{
 
+    // Kept at the value of the original class so that files saved before the deep zoom fields were added still load
+    private static final long serialVersionUID = -8956802018731278936L;
+
     private int x_resolution, y_resolution;
     private int maximumIterations;
     private double minumumReal, maximumReal, minimumImaginary, maximumImaginary, defaultRadiusSquared;
+    // The view in arbitrary precision, needed once the bounds above can no longer tell the pixels apart
+    private BigDecimal centreReal, centreImaginary;
+    private double realRange, imaginaryRange;
 
     public Color getColor() {
         return color;
@@ -29,6 +38,8 @@ public class MandelbrotSetData implements Serializable{
     }
 
     private Color color;
+    // Name of the gradient palette used instead of the colour, or null
+    private String gradientName;
 
     /**
      * Constructor that gets all the data from the Model class
@@ -46,7 +57,12 @@ public class MandelbrotSetData implements Serializable{
         minimumImaginary = mMandelbrotModel.getMinimumImaginary();
         maximumImaginary = mMandelbrotModel.getMaximumImaginary();
         defaultRadiusSquared = mMandelbrotModel.getDefaultRadiusSquared();
+        centreReal = mMandelbrotModel.getCentreReal();
+        centreImaginary = mMandelbrotModel.getCentreImaginary();
+        realRange = mMandelbrotModel.getRealRange();
+        imaginaryRange = mMandelbrotModel.getImaginaryRange();
         color = mMandelbrotModel.getColor();
+        gradientName = mMandelbrotModel.getGradientName();
     }
 
     /**
@@ -65,7 +81,12 @@ public class MandelbrotSetData implements Serializable{
         minimumImaginary = mandelbrotSetData.getMinimumImaginary();
         maximumImaginary = mandelbrotSetData.getMaximumImaginary();
         defaultRadiusSquared = mandelbrotSetData.getDefaultRadiusSquared();
+        centreReal = mandelbrotSetData.getCentreReal();
+        centreImaginary = mandelbrotSetData.getCentreImaginary();
+        realRange = mandelbrotSetData.getRealRange();
+        imaginaryRange = mandelbrotSetData.getImaginaryRange();
         color = mandelbrotSetData.getColor();
+        gradientName = mandelbrotSetData.getGradientName();
     }
 
     public int getX_resolution() {
@@ -98,6 +119,7 @@ public class MandelbrotSetData implements Serializable{
 
     public void setMinumumReal(double minumumReal) {
         this.minumumReal = minumumReal;
+        setCentreFromBounds();
     }
 
     public double getMaximumReal() {
@@ -106,6 +128,7 @@ public class MandelbrotSetData implements Serializable{
 
     public void setMaximumReal(double maximumReal) {
         this.maximumReal = maximumReal;
+        setCentreFromBounds();
     }
 
     public double getMinimumImaginary() {
@@ -114,6 +137,7 @@ public class MandelbrotSetData implements Serializable{
 
     public void setMinimumImaginary(double minimumImaginary) {
         this.minimumImaginary = minimumImaginary;
+        setCentreFromBounds();
     }
 
     public double getMaximumImaginary() {
@@ -122,6 +146,7 @@ public class MandelbrotSetData implements Serializable{
 
     public void setMaximumImaginary(double maximumImaginary) {
         this.maximumImaginary = maximumImaginary;
+        setCentreFromBounds();
     }
 
     public double getDefaultRadiusSquared() {
@@ -132,5 +157,69 @@ public class MandelbrotSetData implements Serializable{
         this.defaultRadiusSquared = defaultRadiusSquared;
     }
 
+    public String getGradientName() {
+        return gradientName;
+    }
+
+    public void setGradientName(String gradientName) {
+        this.gradientName = gradientName;
+    }
 
+    public BigDecimal getCentreReal() {
+        return centreReal;
+    }
+
+    public BigDecimal getCentreImaginary() {
+        return centreImaginary;
+    }
+
+    public double getRealRange() {
+        return realRange;
+    }
+
+    public double getImaginaryRange() {
+        return imaginaryRange;
+    }
+
+    /**
+     * Method to shrink the view by moving each of its bounds inwards, e.g. to zoom in on a selected area.
+     * The centre is moved in arbitrary precision, so zooming keeps working after the bounds themselves have run out
+     * of double precision.
+     *
+     * @param minimumRealShift the distance the lower real bound moves up.
+     * @param maximumRealShift the distance the upper real bound moves down.
+     * @param minimumImaginaryShift the distance the lower imaginary bound moves up.
+     * @param maximumImaginaryShift the distance the upper imaginary bound moves down.
+     */
+    public void shrinkBounds(double minimumRealShift, double maximumRealShift, double minimumImaginaryShift, double maximumImaginaryShift){
+        centreReal = centreReal.add(new BigDecimal((minimumRealShift - maximumRealShift) / 2));
+        centreImaginary = centreImaginary.add(new BigDecimal((minimumImaginaryShift - maximumImaginaryShift) / 2));
+        realRange = realRange - minimumRealShift - maximumRealShift;
+        imaginaryRange = imaginaryRange - minimumImaginaryShift - maximumImaginaryShift;
+
+        minumumReal = minumumReal + minimumRealShift;
+        maximumReal = maximumReal - maximumRealShift;
+        minimumImaginary = minimumImaginary + minimumImaginaryShift;
+        maximumImaginary = maximumImaginary - maximumImaginaryShift;
+    }
+
+    /**
+     * Method to work out the arbitrary precision centre and the range of the view from its double bounds.
+     */
+    private void setCentreFromBounds(){
+        centreReal = new BigDecimal(minumumReal).add(new BigDecimal(maximumReal)).divide(BigDecimal.valueOf(2));
+        centreImaginary = new BigDecimal(minimumImaginary).add(new BigDecimal(maximumImaginary)).divide(BigDecimal.valueOf(2));
+        realRange = maximumReal - minumumReal;
+        imaginaryRange = maximumImaginary - minimumImaginary;
+    }
+
+    /**
+     * Files saved before the centre was stored only contain the bounds, so the centre is worked out from them.
+     */
+    private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        objectInputStream.defaultReadObject();
+        if (centreReal == null || centreImaginary == null){
+            setCentreFromBounds();
+        }
+    }
 }
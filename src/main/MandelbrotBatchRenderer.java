@@ -0,0 +1,324 @@
+package main;
+
+import guiDelegate.ColorPalette;
+import guiDelegate.MandelbrotSetData;
+import model.BandRenderer;
+import model.FrameBuffer;
+import model.FrameGeometry;
+import model.MandelbrotCalculator;
+import model.MappedFrameRenderer;
+import model.ParallelRenderEngine;
+import model.PerturbationRenderer;
+
+import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  This is the main class that renders Mandelbrot Set images without the GUI, e.g. on servers without a display.
+ *
+ *  Every view is calculated band by band on the ParallelRenderEngine (see BandRenderer) and written out as it is
+ *  calculated, so that the size of the images is only limited by the disk: a band takes no more than
+ *  MappedFrameRenderer.DEFAULT_BAND_BYTES of memory whatever the width. The images are written either as PNG files
+ *  coloured with a palette of the GUI, or as raw files holding the iteration value of every pixel as a big-endian 32
+ *  bit int, row by row. Raw files are written through memory-mapped buffers by a MappedFrameRenderer, so a render
+ *  that was stopped is resumed by running the same command again.
+ *
+ *  Usage: java main.MandelbrotBatchRenderer [options] [file ...]
+ *
+ *  With files saved by the GUI (File > Save), each file is rendered to the output directory, named after the file.
+ *  Without files, the view given by the options is rendered to the output file.
+ *
+ *  Options:
+ *    --size WIDTHxHEIGHT      resolution of the images, by default that of the file or 900x900
+ *    --view MINRE,MAXRE,MINIM,MAXIM
+ *                             bounds of the view, by default those of the GUI's initial view
+ *    --centre RE,IM           centre of the view, in any precision, for deep zooms
+ *    --range WIDTH            width of the view on the real axis, with --centre; the height keeps the pixels square
+ *    --iterations N           maximum number of iterations, by default that of the file or 50
+ *    --palette NAME           RED, GREEN, BLUE, WHITE or a gradient (FIRE, OCEAN, RAINBOW), by default that of the file
+ *    --format png|raw         image format, by default png
+ *    --output PATH            output file for a view, or output directory for files, by default mandelbrot.png or .
+ *    --threads N              number of render threads, by default one per core
+ *    --band-rows N            maximum number of rows calculated at a time
+ *
+ *  @author Student id: 170024238
+ */
+public class MandelbrotBatchRenderer {
+
+    private static final int DEFAULT_RESOLUTION = 900;
+    private static final int DEFAULT_MAX_ITERATIONS = 50;
+    private static final double RADIUS_SQUARED = 4.0;
+    // The GUI's initial view as {minReal, maxReal, minImaginary, maxImaginary}
+    private static final double[] DEFAULT_VIEW = {-2.0, 0.7, -1.25, 1.25};
+
+    private final ParallelRenderEngine mParallelRenderEngine;
+    private final BandRenderer mBandRenderer;
+    private final MappedFrameRenderer mMappedFrameRenderer;
+    private int bandRows = BandRenderer.DEFAULT_BAND_ROWS;
+
+    /**
+     * Constructs a new MandelbrotBatchRenderer.
+     *
+     * @param threadCount the number of render threads.
+     */
+    public MandelbrotBatchRenderer(int threadCount){
+        MandelbrotCalculator mandelbrotCalculator = new MandelbrotCalculator();
+        mandelbrotCalculator.setInteriorCheck(true);
+        mParallelRenderEngine = new ParallelRenderEngine(mandelbrotCalculator, threadCount);
+        mBandRenderer = new BandRenderer(mParallelRenderEngine, new PerturbationRenderer(mParallelRenderEngine));
+        mMappedFrameRenderer = new MappedFrameRenderer(mBandRenderer);
+    }
+
+    public int getBandRows() {
+        return bandRows;
+    }
+
+    public void setBandRows(int bandRows) {
+        if (bandRows < 1){
+            throw new IllegalArgumentException("Band rows must be at least 1 but was " + bandRows);
+        }
+        this.bandRows = bandRows;
+    }
+
+    public static void main(String[] args) {
+        // nothing is displayed, so AWT must not look for a display
+        System.setProperty("java.awt.headless", "true");
+        try {
+            run(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java main.MandelbrotBatchRenderer [--size WxH] [--view minRe,maxRe,minIm,maxIm]"
+                    + " [--centre re,im --range width] [--iterations n] [--palette name] [--format png|raw]"
+                    + " [--output path] [--threads n] [--band-rows n] [file ...]");
+            System.exit(2);
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void run(String[] args) throws IOException, ClassNotFoundException {
+        int width = 0, height = 0, maxIterations = 0;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        int bandRows = BandRenderer.DEFAULT_BAND_ROWS;
+        double[] view = null;
+        BigDecimal[] centre = null;
+        double range = 0;
+        String palette = null, format = "png", output = null;
+        List<File> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                files.add(new File(arg));
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value of " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--size":
+                    String[] size = value.toLowerCase().split("x");
+                    if (size.length != 2) {
+                        throw new IllegalArgumentException("Size must be WIDTHxHEIGHT but was " + value);
+                    }
+                    width = parsePositive(arg, size[0]);
+                    height = parsePositive(arg, size[1]);
+                    break;
+                case "--view":
+                    String[] bounds = value.split(",");
+                    if (bounds.length != 4) {
+                        throw new IllegalArgumentException("View must be minRe,maxRe,minIm,maxIm but was " + value);
+                    }
+                    view = new double[4];
+                    for (int b = 0; b < 4; b++) {
+                        view[b] = Double.parseDouble(bounds[b]);
+                    }
+                    break;
+                case "--centre":
+                    String[] point = value.split(",");
+                    if (point.length != 2) {
+                        throw new IllegalArgumentException("Centre must be re,im but was " + value);
+                    }
+                    centre = new BigDecimal[]{new BigDecimal(point[0]), new BigDecimal(point[1])};
+                    break;
+                case "--range":
+                    range = Double.parseDouble(value);
+                    break;
+                case "--iterations":
+                    maxIterations = parsePositive(arg, value);
+                    break;
+                case "--palette":
+                    palette = value.toUpperCase();
+                    break;
+                case "--format":
+                    format = value.toLowerCase();
+                    if (!format.equals("png") && !format.equals("raw")) {
+                        throw new IllegalArgumentException("Format must be png or raw but was " + value);
+                    }
+                    break;
+                case "--output":
+                    output = value;
+                    break;
+                case "--threads":
+                    threadCount = parsePositive(arg, value);
+                    break;
+                case "--band-rows":
+                    bandRows = parsePositive(arg, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if ((centre == null) != (range <= 0)) {
+            throw new IllegalArgumentException("--centre and --range must be given together");
+        }
+        if (palette != null && getPalette(palette, null) == null) {
+            throw new IllegalArgumentException("Unknown palette " + palette + ", the palettes are RED, GREEN, BLUE, WHITE and "
+                    + ColorPalette.getGradientNames());
+        }
+
+        MandelbrotBatchRenderer batchRenderer = new MandelbrotBatchRenderer(threadCount);
+        batchRenderer.setBandRows(bandRows);
+
+        if (files.isEmpty()) {
+            int frameWidth = width > 0 ? width : DEFAULT_RESOLUTION;
+            int frameHeight = height > 0 ? height : DEFAULT_RESOLUTION;
+            FrameGeometry frameGeometry;
+            if (centre != null) {
+                frameGeometry = geometryOf(frameWidth, frameHeight, centre[0], centre[1], range,
+                        range * frameHeight / frameWidth, maxIterations);
+            } else {
+                frameGeometry = geometryOf(frameWidth, frameHeight, view != null ? view : DEFAULT_VIEW, maxIterations);
+            }
+            File outputFile = new File(output != null ? output : "mandelbrot." + format);
+            batchRenderer.render(frameGeometry, palette != null ? getPalette(palette, null) : ColorPalette.forColor(Color.WHITE),
+                    format, outputFile);
+            return;
+        }
+
+        if (view != null || centre != null) {
+            throw new IllegalArgumentException("The view is taken from the files, --view and --centre cannot be used with files");
+        }
+        File outputDirectory = new File(output != null ? output : ".");
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Could not create the output directory " + outputDirectory);
+        }
+        for (File file : files) {
+            MandelbrotSetData mandelbrotSetData;
+            try (ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(file))) {
+                mandelbrotSetData = (MandelbrotSetData) objectInputStream.readObject();
+            }
+            int frameWidth = width > 0 ? width : mandelbrotSetData.getX_resolution();
+            int frameHeight = height > 0 ? height : mandelbrotSetData.getY_resolution();
+            FrameGeometry frameGeometry = geometryOf(frameWidth, frameHeight, mandelbrotSetData.getCentreReal(),
+                    mandelbrotSetData.getCentreImaginary(), mandelbrotSetData.getRealRange(),
+                    mandelbrotSetData.getImaginaryRange(),
+                    maxIterations > 0 ? maxIterations : mandelbrotSetData.getMaximumIterations());
+            ColorPalette colorPalette = palette != null ? getPalette(palette, null)
+                    : getPalette(mandelbrotSetData.getGradientName(), mandelbrotSetData.getColor());
+
+            String name = file.getName();
+            int extension = name.lastIndexOf('.');
+            File outputFile = new File(outputDirectory, (extension > 0 ? name.substring(0, extension) : name) + "." + format);
+            batchRenderer.render(frameGeometry, colorPalette, format, outputFile);
+        }
+    }
+
+    private static int parsePositive(String option, String value){
+        int number = Integer.parseInt(value.trim());
+        if (number < 1) {
+            throw new IllegalArgumentException(option + " must be at least 1 but was " + value);
+        }
+        return number;
+    }
+
+    /**
+     * @return the palette of the name, else of the colour, or null if there is none.
+     */
+    static ColorPalette getPalette(String name, Color color){
+        if (name != null) {
+            switch (name) {
+                case "RED":
+                    return ColorPalette.forColor(Color.RED);
+                case "GREEN":
+                    return ColorPalette.forColor(Color.GREEN);
+                case "BLUE":
+                    return ColorPalette.forColor(Color.BLUE);
+                case "WHITE":
+                    return ColorPalette.forColor(Color.WHITE);
+                default:
+                    ColorPalette gradient = ColorPalette.forName(name);
+                    if (gradient != null) {
+                        return gradient;
+                    }
+            }
+        }
+        return color != null ? ColorPalette.forColor(color) : null;
+    }
+
+    private static FrameGeometry geometryOf(int width, int height, double[] view, int maxIterations){
+        BigDecimal centreReal = new BigDecimal(view[0]).add(new BigDecimal(view[1])).divide(BigDecimal.valueOf(2));
+        BigDecimal centreImaginary = new BigDecimal(view[2]).add(new BigDecimal(view[3])).divide(BigDecimal.valueOf(2));
+        return new FrameGeometry(width, height, view[0], view[1], view[2], view[3], centreReal, centreImaginary,
+                view[1] - view[0], view[3] - view[2], maxIterations > 0 ? maxIterations : DEFAULT_MAX_ITERATIONS, RADIUS_SQUARED);
+    }
+
+    private static FrameGeometry geometryOf(int width, int height, BigDecimal centreReal, BigDecimal centreImaginary,
+                                            double realRange, double imaginaryRange, int maxIterations){
+        double realCentre = centreReal.doubleValue();
+        double imaginaryCentre = centreImaginary.doubleValue();
+        return new FrameGeometry(width, height, realCentre - realRange / 2, realCentre + realRange / 2,
+                imaginaryCentre - imaginaryRange / 2, imaginaryCentre + imaginaryRange / 2, centreReal, centreImaginary,
+                realRange, imaginaryRange, maxIterations > 0 ? maxIterations : DEFAULT_MAX_ITERATIONS, RADIUS_SQUARED);
+    }
+
+    /**
+     * Method to render one view to a file.
+     *
+     * @param frameGeometry the view and resolution of the image.
+     * @param colorPalette the palette of PNG images.
+     * @param format png or raw.
+     * @param outputFile the file written.
+     * @throws IOException if the file could not be written.
+     */
+    public void render(FrameGeometry frameGeometry, final ColorPalette colorPalette, String format, File outputFile) throws IOException {
+        long start = System.nanoTime();
+        final int maxIterations = frameGeometry.getMaxIterations();
+        final int width = frameGeometry.getXResolution();
+        // wide images get fewer rows per band, so that a band fits in the same memory whatever the width
+        int rows = Math.min(bandRows, MappedFrameRenderer.getBandRows(width, MappedFrameRenderer.DEFAULT_BAND_BYTES));
+        String resumed = "";
+        if (format.equals("png")) {
+            final int[] pixels = new int[width * Math.min(rows, frameGeometry.getYResolution())];
+            try (final PngWriter pngWriter = new PngWriter(new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16),
+                    width, frameGeometry.getYResolution())) {
+                mBandRenderer.calcBands(frameGeometry, rows, new BandRenderer.BandConsumer() {
+                    @Override
+                    public void consumeBand(FrameBuffer band, int fromRow) throws IOException {
+                        colorPalette.colorMap(band, maxIterations, pixels);
+                        pngWriter.writeRows(pixels, 0, band.getHeight());
+                    }
+                });
+            }
+        } else {
+            mMappedFrameRenderer.setBandBytes(4L * width * rows);
+            mMappedFrameRenderer.calcMandelbrotSet(frameGeometry, outputFile);
+            if (mMappedFrameRenderer.getLastResumedBands() > 0) {
+                resumed = String.format(", resumed after %d of %d bands", mMappedFrameRenderer.getLastResumedBands(),
+                        mMappedFrameRenderer.getLastBands());
+            }
+        }
+        System.out.printf("%s: %dx%d, maxIterations %d, %.1f s%s%n", outputFile.getPath(), width,
+                frameGeometry.getYResolution(), maxIterations, (System.nanoTime() - start) / 1e9, resumed);
+    }
+}
@@ -2,6 +2,9 @@ package main;
 
 import guiDelegate.GUIDelegate;
 import model.MandelbrotModel;
+import model.RenderMetricsMonitor;
+
+import javax.management.JMException;
 
 /**
  *  This is the main class that runs the Model-Delegate example as a stand-alone GUI Application.
@@ -13,7 +16,14 @@ import model.MandelbrotModel;
 public class MandelbrotMain {
 
     public static void main(String[] args) {
+        MandelbrotModel mandelbrotModel = new MandelbrotModel();
+        // the metrics of the frames can be watched with JConsole or VisualVM, the GUI works without them
+        try {
+            RenderMetricsMonitor.register(mandelbrotModel);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
         // Passing the model to the delegate, so that it can observe, display and change the model
-        new GUIDelegate(new MandelbrotModel());
+        new GUIDelegate(mandelbrotModel);
     }
 }
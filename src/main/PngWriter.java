@@ -0,0 +1,159 @@
+package main;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * The PngWriter class writes an 8 bit RGB PNG image row by row, so that images of any size can be written without
+ * holding them in memory, and without the AWT image classes.
+ *
+ * The rows are compressed as they are written and split into IDAT chunks of IDAT_CHUNK_SIZE bytes.
+ *
+ * @author Student id: 170024238
+ */
+public class PngWriter implements Closeable {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int IDAT_CHUNK_SIZE = 1 << 16;
+
+    private final DataOutputStream outputStream;
+    private final int width, height;
+    private final Deflater deflater;
+    private final DeflaterOutputStream imageData;
+    private final byte[] row;
+    private int rowsWritten;
+
+    /**
+     * Constructs a new PngWriter, writing the header of the image straight away.
+     *
+     * @param outputStream the stream the image is written to, closed with the writer.
+     * @param width the number of pixels of the image on the x-axis.
+     * @param height the number of pixels of the image on the y-axis.
+     * @throws IOException if the header could not be written.
+     */
+    public PngWriter(OutputStream outputStream, int width, int height) throws IOException {
+        if (width < 1 || height < 1){
+            throw new IllegalArgumentException("Image size must be at least 1x1 but was " + width + "x" + height);
+        }
+        this.outputStream = new DataOutputStream(outputStream);
+        this.width = width;
+        this.height = height;
+        this.row = new byte[1 + 3 * width];
+
+        this.outputStream.write(SIGNATURE);
+        // 8 bits per channel, RGB, deflate compression, standard filter types, no interlace
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(width).putInt(height).put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 0);
+        writeChunk("IHDR", header.array(), header.capacity());
+
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        imageData = new DeflaterOutputStream(new IdatOutputStream(), deflater, IDAT_CHUNK_SIZE);
+    }
+
+    /**
+     * Method to write the next rows of the image.
+     *
+     * @param pixels the RGB value of every pixel of the rows, row by row; the alpha channel is ignored.
+     * @param offset the index in pixels of the first pixel of the first row.
+     * @param rows the number of rows to write.
+     * @throws IOException if the rows could not be written.
+     */
+    public void writeRows(int[] pixels, int offset, int rows) throws IOException {
+        if (rowsWritten + rows > height){
+            throw new IllegalStateException("Image has " + height + " rows but " + (rowsWritten + rows) + " were written");
+        }
+        for (int y = 0; y < rows; y++) {
+            // filter type 0, the rows being written as they are
+            row[0] = 0;
+            int pixelOffset = offset + y * width;
+            for (int x = 0; x < width; x++) {
+                int rgb = pixels[pixelOffset + x];
+                row[1 + 3 * x] = (byte) (rgb >> 16);
+                row[2 + 3 * x] = (byte) (rgb >> 8);
+                row[3 + 3 * x] = (byte) rgb;
+            }
+            imageData.write(row);
+        }
+        rowsWritten += rows;
+    }
+
+    /**
+     * Method to finish the image and close the stream.
+     *
+     * @throws IOException if the image could not be finished, or not all of its rows were written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rowsWritten != height){
+                throw new IOException("Image has " + height + " rows but only " + rowsWritten + " were written");
+            }
+            imageData.close();
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            deflater.end();
+            outputStream.close();
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        outputStream.writeInt(length);
+        outputStream.write(typeBytes);
+        outputStream.write(data, 0, length);
+        outputStream.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Stream of the compressed image data, written out as an IDAT chunk every IDAT_CHUNK_SIZE bytes.
+     */
+    private class IdatOutputStream extends OutputStream {
+
+        private final byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+        private int count;
+
+        @Override
+        public void write(int b) throws IOException {
+            buffer[count++] = (byte) b;
+            if (count == buffer.length) {
+                flushChunk();
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                int copied = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, copied);
+                count += copied;
+                offset += copied;
+                length -= copied;
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0) {
+                writeChunk("IDAT", buffer, count);
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package main;
+
+import guiDelegate.ColorPalette;
+import model.FrameBuffer;
+import model.MandelbrotCalculator;
+import model.TilePyramidRenderer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ *  This is the main class that renders a tile pyramid of the Mandelbrot Set for zoomable web maps, without the GUI.
+ *
+ *  The tiles are written as OUTPUT/z/x/y.png, TilePyramidRenderer.TILE_SIZE pixels wide, the usual layout of
+ *  slippy map tile servers. Level 0 is a single tile covering a square view around the GUI's initial view. Tiles which
+ *  already exist are skipped, so running the generator again after it was stopped, or with more levels, only renders
+ *  the missing tiles. Each tile is written to a temporary file first and then renamed, so a tile that exists is
+ *  always complete.
+ *
+ *  Usage: java main.TilePyramidGenerator [options]
+ *
+ *  Options:
+ *    --levels N               deepest level, by default 5
+ *    --view MINRE,MINIM,SIZE  lower bounds and size of the square view of level 0
+ *    --iterations N           maximum number of iterations of level 0, by default 100
+ *    --level-iterations N     iterations added at every level, by default 50
+ *    --palette NAME           RED, GREEN, BLUE, WHITE or a gradient (FIRE, OCEAN, RAINBOW), by default FIRE
+ *    --output DIR             output directory, by default tiles
+ *    --threads N              number of render threads, by default one per core
+ *
+ *  @author Student id: 170024238
+ */
+public class TilePyramidGenerator {
+
+    private static final int DEFAULT_LEVELS = 5;
+    private static final int DEFAULT_MAX_ITERATIONS = 100;
+    private static final int DEFAULT_LEVEL_ITERATIONS = 50;
+    private static final double RADIUS_SQUARED = 4.0;
+    // The square around the GUI's initial view (-2.0 to 0.7, -1.25 to 1.25) as {minReal, minImaginary, size}
+    private static final double[] DEFAULT_VIEW = {-2.0, -1.35, 2.7};
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int levels = DEFAULT_LEVELS, maxIterations = DEFAULT_MAX_ITERATIONS, levelIterations = DEFAULT_LEVEL_ITERATIONS;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        double[] view = DEFAULT_VIEW;
+        String palette = "FIRE", output = "tiles";
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value of " + args[i]);
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--levels":
+                        levels = Integer.parseInt(value);
+                        break;
+                    case "--view":
+                        String[] bounds = value.split(",");
+                        if (bounds.length != 3) {
+                            throw new IllegalArgumentException("View must be minRe,minIm,size but was " + value);
+                        }
+                        view = new double[]{Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1]), Double.parseDouble(bounds[2])};
+                        break;
+                    case "--iterations":
+                        maxIterations = Integer.parseInt(value);
+                        break;
+                    case "--level-iterations":
+                        levelIterations = Integer.parseInt(value);
+                        break;
+                    case "--palette":
+                        palette = value.toUpperCase();
+                        break;
+                    case "--output":
+                        output = value;
+                        break;
+                    case "--threads":
+                        threadCount = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            ColorPalette colorPalette = MandelbrotBatchRenderer.getPalette(palette, null);
+            if (colorPalette == null) {
+                throw new IllegalArgumentException("Unknown palette " + palette + ", the palettes are RED, GREEN, BLUE, WHITE and "
+                        + ColorPalette.getGradientNames());
+            }
+            if (maxIterations < 1 || levelIterations < 0) {
+                throw new IllegalArgumentException("Iterations must be at least 1 and level iterations at least 0");
+            }
+
+            long start = System.nanoTime();
+            MandelbrotCalculator mandelbrotCalculator = new MandelbrotCalculator();
+            mandelbrotCalculator.setInteriorCheck(true);
+            TilePyramidRenderer tilePyramidRenderer = new TilePyramidRenderer(mandelbrotCalculator, threadCount);
+            tilePyramidRenderer.calcPyramid(view[0], view[1], view[2], levels, maxIterations, levelIterations,
+                    RADIUS_SQUARED, new PngTileStore(new File(output), colorPalette));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s: levels 0 to %d, %d tiles rendered (%.0f tiles/s), %d existing tiles skipped,"
+                            + " %d pixels reused from parent tiles%n", output, levels, tilePyramidRenderer.getCalculatedTiles(),
+                    tilePyramidRenderer.getCalculatedTiles() / seconds, tilePyramidRenderer.getSkippedTiles(),
+                    tilePyramidRenderer.getReusedPixels());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java main.TilePyramidGenerator [--levels n] [--view minRe,minIm,size] [--iterations n]"
+                    + " [--level-iterations n] [--palette name] [--output dir] [--threads n]");
+            System.exit(2);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Store writing every tile as a PNG file DIR/z/x/y.png.
+     */
+    private static class PngTileStore implements TilePyramidRenderer.TileStore {
+
+        private final File directory;
+        private final ColorPalette colorPalette;
+        // RGB pixels of the tile being written by each thread
+        private final ThreadLocal<int[]> pixels = new ThreadLocal<int[]>() {
+            @Override
+            protected int[] initialValue() {
+                return new int[TilePyramidRenderer.TILE_SIZE * TilePyramidRenderer.TILE_SIZE];
+            }
+        };
+
+        PngTileStore(File directory, ColorPalette colorPalette){
+            this.directory = directory;
+            this.colorPalette = colorPalette;
+        }
+
+        private File tileFile(int level, int x, int y){
+            return new File(directory, level + File.separator + x + File.separator + y + ".png");
+        }
+
+        @Override
+        public boolean containsTile(int level, int x, int y) {
+            return tileFile(level, x, y).isFile();
+        }
+
+        @Override
+        public void storeTile(int level, int x, int y, FrameBuffer tile, int maxIterations) throws IOException {
+            File file = tileFile(level, x, y);
+            File columnDirectory = file.getParentFile();
+            if (!columnDirectory.isDirectory() && !columnDirectory.mkdirs() && !columnDirectory.isDirectory()) {
+                throw new IOException("Could not create the directory " + columnDirectory);
+            }
+            int[] tilePixels = pixels.get();
+            colorPalette.colorMap(tile, maxIterations, tilePixels);
+            File temporaryFile = new File(columnDirectory, y + ".png.tmp");
+            try (PngWriter pngWriter = new PngWriter(new BufferedOutputStream(new FileOutputStream(temporaryFile)),
+                    tile.getWidth(), tile.getHeight())) {
+                pngWriter.writeRows(tilePixels, 0, tile.getHeight());
+            }
+            try {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package model;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The AnimationPipeline class calculates the frames of an animation ahead of their playback, several frames at a time,
+ * into a bounded ring buffer of frame buffers.
+ *
+ * Every worker calculates whole frames on its own single threaded ParallelRenderEngine (and PerturbationRenderer for
+ * deep zooms), taking the frames in order. Frame i is calculated into slot i % capacity, so a worker only starts a
+ * frame once the playback is done with the frame capacity places before it; the memory used is capacity frames
+ * whatever the length of the animation. The playback takes the frames in order with pollFrame, which never blocks.
+ *
+ * Starting a new animation cancels the frames still being calculated for the previous one. The slots get new frame
+ * buffers, as a cancelled worker may still be finishing the row it was calculating.
+ *
+ * @author Student id: 170024238
+ */
+public class AnimationPipeline {
+
+    // Default number of frames calculated ahead of the playback
+    public static final int DEFAULT_CAPACITY = 8;
+
+    private final ParallelRenderEngine[] mParallelRenderEngines;
+    private final PerturbationRenderer[] mPerturbationRenderers;
+    private final ExecutorService workers;
+
+    // Slots of the ring buffer, and the index of the frame each one holds once calculated, -1 if none
+    private final FrameBuffer[] slots;
+    private final int[] slotFrames;
+
+    // Frames of the current animation and the animation's number, which cancels the workers of older ones
+    private List<FrameGeometry> frameGeometries;
+    private long generation;
+    // Next frame a worker will calculate, next frame the playback will take, and number of frames whose slot is free
+    private int nextFrameToCalculate;
+    private int nextFrameToPlay;
+    private int releasedFrames;
+
+    /**
+     * Constructs a new AnimationPipeline with one worker per available core.
+     *
+     * @param mMandelbrotCalculator the calculator used to work out the iteration values.
+     * @param capacity the number of frames calculated ahead of the playback, at least 1.
+     */
+    public AnimationPipeline(MandelbrotCalculator mMandelbrotCalculator, int capacity){
+        this(mMandelbrotCalculator, Runtime.getRuntime().availableProcessors(), capacity);
+    }
+
+    /**
+     * Constructs a new AnimationPipeline.
+     *
+     * @param mMandelbrotCalculator the calculator used to work out the iteration values.
+     * @param workerCount the number of frames calculated at the same time, at least 1.
+     * @param capacity the number of frames calculated ahead of the playback, at least 1.
+     */
+    public AnimationPipeline(MandelbrotCalculator mMandelbrotCalculator, int workerCount, int capacity){
+        if (workerCount < 1){
+            throw new IllegalArgumentException("Worker count must be at least 1 but was " + workerCount);
+        }
+        if (capacity < 1){
+            throw new IllegalArgumentException("Capacity must be at least 1 but was " + capacity);
+        }
+        mParallelRenderEngines = new ParallelRenderEngine[workerCount];
+        mPerturbationRenderers = new PerturbationRenderer[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            mParallelRenderEngines[i] = new ParallelRenderEngine(mMandelbrotCalculator, 1);
+            mPerturbationRenderers[i] = new PerturbationRenderer(mParallelRenderEngines[i]);
+        }
+        workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Animation worker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        slots = new FrameBuffer[capacity];
+        slotFrames = new int[capacity];
+        cancel();
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public int getWorkerCount() {
+        return mParallelRenderEngines.length;
+    }
+
+    /**
+     * @return the number of frames of the current animation, 0 if there is none.
+     */
+    public synchronized int getFrameCount() {
+        return frameGeometries == null ? 0 : frameGeometries.size();
+    }
+
+    /**
+     * @return the index of the next frame pollFrame returns.
+     */
+    public synchronized int getNextFrameToPlay() {
+        return nextFrameToPlay;
+    }
+
+    /**
+     * @return true if every frame of the current animation has been taken by the playback, or there is none.
+     */
+    public synchronized boolean isFinished() {
+        return nextFrameToPlay >= getFrameCount();
+    }
+
+    /**
+     * @param index the index of a frame of the current animation.
+     * @return the geometry of the frame.
+     */
+    public synchronized FrameGeometry getFrameGeometry(int index) {
+        return frameGeometries.get(index);
+    }
+
+    /**
+     * Method to start calculating the frames of a new animation, cancelling the previous one.
+     *
+     * @param frameGeometries the geometries of the frames in playback order.
+     */
+    public synchronized void start(List<FrameGeometry> frameGeometries){
+        cancel();
+        this.frameGeometries = frameGeometries;
+        for (int i = 0; i < mParallelRenderEngines.length; i++) {
+            final int worker = i;
+            final long workerGeneration = generation;
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    calculateFrames(worker, workerGeneration);
+                }
+            });
+        }
+    }
+
+    /**
+     * Method to cancel the current animation, whose frames are no longer calculated nor returned by pollFrame.
+     */
+    public synchronized void cancel(){
+        generation++;
+        frameGeometries = null;
+        nextFrameToCalculate = 0;
+        nextFrameToPlay = 0;
+        releasedFrames = 0;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new FrameBuffer(0, 0);
+            slotFrames[i] = -1;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Method to take the next frame of the animation if it has been calculated. The frame buffer returned belongs to
+     * the pipeline and is only valid until the next call; its slot is then used for a later frame.
+     *
+     * @return the next frame, or null if it is still being calculated or the animation is finished.
+     */
+    public synchronized FrameBuffer pollFrame(){
+        if (isFinished()) {
+            return null;
+        }
+        // the slot of the frame returned last time can now take a later frame
+        if (releasedFrames < nextFrameToPlay) {
+            releasedFrames = nextFrameToPlay;
+            notifyAll();
+        }
+        int slot = nextFrameToPlay % slots.length;
+        if (slotFrames[slot] != nextFrameToPlay) {
+            return null;
+        }
+        nextFrameToPlay++;
+        return slots[slot];
+    }
+
+    /**
+     * Method to stop the workers, after which no animation can be started.
+     */
+    public void shutdown(){
+        cancel();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Loop of a worker, calculating the next frame of the animation whenever its slot is free, until the animation
+     * is complete or cancelled.
+     */
+    private void calculateFrames(int worker, final long workerGeneration){
+        ParallelRenderEngine engine = mParallelRenderEngines[worker];
+        // a worker of the previous animation may still be using the engine until it notices it was cancelled
+        synchronized (engine) {
+            engine.setRenderCancellation(new RenderCancellation() {
+                @Override
+                public boolean isCancelled() {
+                    return isOutdated(workerGeneration);
+                }
+            });
+            try {
+                while (true) {
+                    int index;
+                    FrameGeometry frameGeometry;
+                    FrameBuffer frameBuffer;
+                    synchronized (this) {
+                        // the slot is free once the playback is done with the frame capacity places before
+                        while (generation == workerGeneration && nextFrameToCalculate < frameGeometries.size()
+                                && nextFrameToCalculate >= releasedFrames + slots.length) {
+                            wait();
+                        }
+                        if (generation != workerGeneration || nextFrameToCalculate >= frameGeometries.size()) {
+                            return;
+                        }
+                        index = nextFrameToCalculate++;
+                        frameGeometry = frameGeometries.get(index);
+                        frameBuffer = slots[index % slots.length];
+                    }
+                    calculateFrame(worker, frameBuffer, frameGeometry);
+                    synchronized (this) {
+                        if (generation != workerGeneration) {
+                            return;
+                        }
+                        slotFrames[index % slots.length] = index;
+                    }
+                }
+            } catch (CancellationException e) {
+                // a new animation was started
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                engine.setRenderCancellation(null);
+            }
+        }
+    }
+
+    private synchronized boolean isOutdated(long workerGeneration){
+        return generation != workerGeneration;
+    }
+
+    private void calculateFrame(int worker, FrameBuffer frameBuffer, FrameGeometry frameGeometry){
+        frameBuffer.resize(frameGeometry.getXResolution(), frameGeometry.getYResolution());
+        if (frameGeometry.isDeepZoom()) {
+            mPerturbationRenderers[worker].calcMandelbrotSet(frameBuffer, frameGeometry.getCentreReal(),
+                    frameGeometry.getCentreImaginary(), frameGeometry.getRealRange(), frameGeometry.getImaginaryRange(),
+                    frameGeometry.getMaxIterations(), frameGeometry.getRadiusSquared());
+        } else {
+            mParallelRenderEngines[worker].calcMandelbrotSet(frameBuffer, frameGeometry.getMinReal(),
+                    frameGeometry.getMaxReal(), frameGeometry.getMinImaginary(), frameGeometry.getMaxImaginary(),
+                    frameGeometry.getMaxIterations(), frameGeometry.getRadiusSquared());
+            frameBuffer.setExact(!mParallelRenderEngines[worker].getMandelbrotCalculator().isPeriodicityCheck());
+        }
+    }
+
+    /**
+     * Method to approximate a frame from another frame of an overlapping view, taking for every pixel the value of the
+     * nearest pixel of the other frame, or of its nearest edge pixel outside of it. Used to show the next frame of a
+     * zoom while it is still being calculated. The fractions are resampled too if the other frame has them.
+     *
+     * @param source the frame to resample, which is only read.
+     * @param sourceGeometry the geometry of source.
+     * @param frameBuffer the buffer receiving the approximated frame.
+     * @param frameGeometry the geometry of the frame to approximate.
+     */
+    public static void resample(FrameBuffer source, FrameGeometry sourceGeometry, FrameBuffer frameBuffer, FrameGeometry frameGeometry){
+        int xResolution = frameGeometry.getXResolution();
+        int yResolution = frameGeometry.getYResolution();
+        frameBuffer.setFractional(source.isFractional());
+        frameBuffer.resize(xResolution, yResolution);
+        char[] sourceFractions = source.getFractions();
+        char[] fractions = frameBuffer.getFractions();
+        // the centres are subtracted in arbitrary precision so that deep zooms are resampled correctly
+        double offsetReal = frameGeometry.getCentreReal().subtract(sourceGeometry.getCentreReal()).doubleValue();
+        double offsetImaginary = frameGeometry.getCentreImaginary().subtract(sourceGeometry.getCentreImaginary()).doubleValue();
+        double sourceRealStep = sourceGeometry.getRealRange() / source.getWidth();
+        double sourceImaginaryStep = sourceGeometry.getImaginaryRange() / source.getHeight();
+        double realStep = frameGeometry.getRealRange() / xResolution;
+        double imaginaryStep = frameGeometry.getImaginaryRange() / yResolution;
+
+        int[] sourceColumns = new int[xResolution];
+        for (int x = 0; x < xResolution; x++) {
+            double real = offsetReal + x * realStep - frameGeometry.getRealRange() / 2;
+            sourceColumns[x] = clamp((int) Math.rint((real + sourceGeometry.getRealRange() / 2) / sourceRealStep), source.getWidth());
+        }
+        for (int y = 0; y < yResolution; y++) {
+            double imaginary = offsetImaginary + y * imaginaryStep - frameGeometry.getImaginaryRange() / 2;
+            int sourceY = clamp((int) Math.rint((imaginary + sourceGeometry.getImaginaryRange() / 2) / sourceImaginaryStep), source.getHeight());
+            for (int x = 0; x < xResolution; x++) {
+                frameBuffer.set(x, y, source.get(sourceColumns[x], sourceY));
+            }
+            if (fractions != null) {
+                for (int x = 0; x < xResolution; x++) {
+                    fractions[frameBuffer.getOffset(y) + x] = sourceFractions[source.getOffset(sourceY) + sourceColumns[x]];
+                }
+            }
+        }
+    }
+
+    private static int clamp(int value, int size){
+        return Math.max(0, Math.min(size - 1, value));
+    }
+}
@@ -0,0 +1,162 @@
+package model;
+
+/**
+ * The AntiAliasingRenderer class smooths the edges of a calculated frame by supersampling only the pixels on them.
+ *
+ * Calculating a frame at a higher resolution and scaling it down costs the square of the factor for every pixel, but
+ * most pixels lie inside a band of equal iteration values, where more samples give the same colour. So the frame is
+ * calculated at its own resolution first, and only the edge pixels, whose value differs from one of their four
+ * neighbours, are sampled again on a gridSize x gridSize grid spread over the pixel. Each sample is moved to a random
+ * point of its grid cell (jittered), which turns the moire patterns a regular grid gives on fine filaments into noise.
+ * The jitter is a hash of the pixel and sample, so the same frame always gets the same samples.
+ *
+ * The samples are stored in the frame buffer next to the iteration values (see FrameBuffer.setSupersamples), and
+ * blended when the frame is colour mapped, as the colour of an edge pixel is the mean of the colours of its samples
+ * rather than the colour of a mean iteration value. Typically only a small share of the pixels are on edges, so this
+ * costs far less than supersampling the whole frame.
+ *
+ * The pixel (x, y) is the point minReal + x * realStep, minImaginary + y * imaginaryStep, so its samples are spread
+ * over the square of one pixel around that point. Deep zooms cannot be sampled in double precision.
+ *
+ * Example usage -- To calculate the initial view with anti-aliased edges
+ *
+ * ParallelRenderEngine engine = new ParallelRenderEngine(new MandelbrotCalculator());
+ * engine.calcMandelbrotSet(frameBuffer, minReal, maxReal, minImaginary, maxImaginary, maxIterations, radiusSquared);
+ * new AntiAliasingRenderer(engine).calcSupersamples(frameBuffer, AntiAliasingRenderer.DEFAULT_GRID_SIZE, minReal, maxReal, minImaginary, maxImaginary, maxIterations, radiusSquared);
+ *
+ * @author Student id: 170024238
+ */
+public class AntiAliasingRenderer {
+
+    // Default and largest number of samples of an edge pixel on each axis
+    public static final int DEFAULT_GRID_SIZE = 3;
+    public static final int MAX_GRID_SIZE = 16;
+
+    private ParallelRenderEngine mParallelRenderEngine;
+    private MandelbrotCalculator mMandelbrotCalculator;
+
+    // Number of pixels supersampled in the last frame
+    private volatile long lastSupersampledPixels;
+
+    /**
+     * Constructs a new AntiAliasingRenderer running its rows on the given engine.
+     *
+     * @param mParallelRenderEngine the engine used to supersample the rows of the frame in parallel.
+     */
+    public AntiAliasingRenderer(ParallelRenderEngine mParallelRenderEngine){
+        this.mParallelRenderEngine = mParallelRenderEngine;
+        this.mMandelbrotCalculator = mParallelRenderEngine.getMandelbrotCalculator();
+    }
+
+    public long getLastSupersampledPixels() {
+        return lastSupersampledPixels;
+    }
+
+    /**
+     * @param gridSize a number of samples of an edge pixel on each axis.
+     * @throws IllegalArgumentException if the grid size is not from 2 to MAX_GRID_SIZE.
+     */
+    public static void checkGridSize(int gridSize){
+        if (gridSize < 2 || gridSize > MAX_GRID_SIZE){
+            throw new IllegalArgumentException("Grid size must be from 2 to " + MAX_GRID_SIZE + " but was " + gridSize);
+        }
+    }
+
+    /**
+     * Method to supersample the edge pixels of a calculated frame, storing the samples in the frame buffer. The
+     * iteration values of the frame are only read.
+     *
+     * @param frameBuffer the calculated frame, receiving the supersamples.
+     * @param gridSize the number of samples of an edge pixel on each axis, from 2 to MAX_GRID_SIZE.
+     * @param minReal the lower real bound for the complex constant C
+     * @param maxReal the upper real bound for the complex constant C
+     * @param minImaginary the lower imaginary bound for the complex constant C
+     * @param maxImaginary the upper imaginary bound for the complex constant C
+     * @param maxIterations the maximum number of iterations the frame was calculated with.
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     */
+    public void calcSupersamples(FrameBuffer frameBuffer, final int gridSize, final double minReal, double maxReal, final double minImaginary,
+                                 double maxImaginary, final int maxIterations, final double radiusSquared){
+        checkGridSize(gridSize);
+        final int xResolution = frameBuffer.getWidth();
+        final int yResolution = frameBuffer.getHeight();
+        final double realStep = (maxReal - minReal)/xResolution;
+        final double imaginaryStep = (maxImaginary - minImaginary)/yResolution;
+        final int samplesPerPixel = gridSize * gridSize;
+
+        // rowStart[y] is the first supersampled pixel of row y
+        final int[] rowStart = new int[yResolution + 1];
+        int count = 0;
+        for (int y = 0; y < yResolution; y++) {
+            rowStart[y] = count;
+            for (int x = 0; x < xResolution; x++) {
+                if (isEdge(frameBuffer, x, y)) {
+                    count++;
+                }
+            }
+        }
+        rowStart[yResolution] = count;
+        frameBuffer.setSupersamples(count, samplesPerPixel);
+        final int[] indices = frameBuffer.getSupersampledIndices();
+        int index = 0;
+        for (int y = 0; y < yResolution; y++) {
+            for (int x = 0; x < xResolution; x++) {
+                if (isEdge(frameBuffer, x, y)) {
+                    indices[index++] = frameBuffer.getOffset(y) + x;
+                }
+            }
+        }
+
+        final int[] samples = frameBuffer.getSupersampleData();
+        final char[] sampleFractions = frameBuffer.getSupersampleFractions();
+        mParallelRenderEngine.calcRows(frameBuffer, new ParallelRenderEngine.RowKernel() {
+            @Override
+            public long calcRow(int[] rowData, int offset, int y) {
+                long rowIterations = 0;
+                for (int i = rowStart[y]; i < rowStart[y + 1]; i++) {
+                    int x = indices[i] - offset;
+                    for (int sample = 0; sample < samplesPerPixel; sample++) {
+                        // the cell of the sample, from -0.5 to 0.5 pixels around the pixel's point
+                        double sampleX = x - 0.5 + (sample % gridSize + jitter(indices[i], sample, 0)) / gridSize;
+                        double sampleY = y - 0.5 + (sample / gridSize + jitter(indices[i], sample, 1)) / gridSize;
+                        int iterations = mMandelbrotCalculator.calcMandel(minReal + sampleX * realStep,
+                                minImaginary + sampleY * imaginaryStep, maxIterations, radiusSquared,
+                                realStep / gridSize, sampleFractions, i * samplesPerPixel + sample);
+                        samples[i * samplesPerPixel + sample] = iterations;
+                        rowIterations += iterations;
+                    }
+                }
+                return rowIterations;
+            }
+        });
+        lastSupersampledPixels = count;
+    }
+
+    /**
+     * @return true if the iteration value of pixel (x, y) differs from that of one of its four neighbours.
+     */
+    static boolean isEdge(FrameBuffer frameBuffer, int x, int y){
+        int value = frameBuffer.get(x, y);
+        return (x > 0 && frameBuffer.get(x - 1, y) != value)
+                || (x < frameBuffer.getWidth() - 1 && frameBuffer.get(x + 1, y) != value)
+                || (y > 0 && frameBuffer.get(x, y - 1) != value)
+                || (y < frameBuffer.getHeight() - 1 && frameBuffer.get(x, y + 1) != value);
+    }
+
+    /**
+     * @param pixel the index of the pixel in the frame.
+     * @param sample the sample of the pixel.
+     * @param axis 0 for the x-axis and 1 for the y-axis.
+     * @return the offset of the sample inside its grid cell, from 0 to 1, always the same for the same arguments.
+     */
+    private static double jitter(int pixel, int sample, int axis){
+        // a 32-bit integer hash, see the finaliser of MurmurHash3
+        int hash = pixel * 0x9e3779b1 + sample * 0x85ebca77 + axis * 0xc2b2ae3d;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return (hash >>> 8) / (double) (1 << 24);
+    }
+}
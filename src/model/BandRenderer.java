@@ -0,0 +1,112 @@
+package model;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * The BandRenderer class calculates frames too large to be held in memory at once, band by band of rows.
+ *
+ * Only one band of the frame is in memory at a time: the band is calculated on the ParallelRenderEngine into a
+ * reused FrameBuffer and handed to a BandConsumer, which writes it out, before the next band is calculated. The pixels
+ * of a band get exactly the values they have when the whole frame is calculated at once, from the same lower bounds
+ * and steps; deep zooms are calculated by perturbation around the centre of each band.
+ *
+ * @author Student id: 170024238
+ */
+public class BandRenderer {
+
+    // Default number of rows of a band
+    public static final int DEFAULT_BAND_ROWS = 256;
+
+    private ParallelRenderEngine mParallelRenderEngine;
+    private MandelbrotCalculator mMandelbrotCalculator;
+    private PerturbationRenderer mPerturbationRenderer;
+
+    /**
+     * Receives the bands of a frame, in order, from calcBands.
+     */
+    public interface BandConsumer {
+
+        /**
+         * Method to take a band of the frame. The band is only valid until the method returns.
+         *
+         * @param band the iteration values of the rows of the band, as wide as the frame.
+         * @param fromRow the row of the frame the first row of the band is.
+         * @throws IOException if the band could not be written out.
+         */
+        void consumeBand(FrameBuffer band, int fromRow) throws IOException;
+    }
+
+    /**
+     * Constructs a new BandRenderer.
+     *
+     * @param mParallelRenderEngine the engine used to calculate the rows of every band in parallel.
+     * @param mPerturbationRenderer the renderer used to calculate the bands of deep zooms.
+     */
+    public BandRenderer(ParallelRenderEngine mParallelRenderEngine, PerturbationRenderer mPerturbationRenderer){
+        this.mParallelRenderEngine = mParallelRenderEngine;
+        this.mMandelbrotCalculator = mParallelRenderEngine.getMandelbrotCalculator();
+        this.mPerturbationRenderer = mPerturbationRenderer;
+    }
+
+    /**
+     * Method to calculate a whole frame band by band, handing every band to the consumer.
+     *
+     * @param frameGeometry the geometry of the frame.
+     * @param bandRows the number of rows of every band but the last one.
+     * @param bandConsumer the consumer receiving the bands in order.
+     * @throws IOException if the consumer failed to write out a band.
+     */
+    public void calcBands(FrameGeometry frameGeometry, int bandRows, BandConsumer bandConsumer) throws IOException {
+        if (bandRows < 1){
+            throw new IllegalArgumentException("Band rows must be at least 1 but was " + bandRows);
+        }
+        FrameBuffer band = new FrameBuffer(0, 0);
+        for (int fromRow = 0; fromRow < frameGeometry.getYResolution(); fromRow += bandRows) {
+            int toRow = Math.min(fromRow + bandRows, frameGeometry.getYResolution());
+            calcBand(frameGeometry, fromRow, toRow, band);
+            bandConsumer.consumeBand(band, fromRow);
+        }
+    }
+
+    /**
+     * Method to calculate the rows [fromRow, toRow) of a frame.
+     *
+     * @param frameGeometry the geometry of the frame.
+     * @param fromRow the first row of the band.
+     * @param toRow the row after the last row of the band.
+     * @param band the buffer receiving the band, resized to the width of the frame and the height of the band.
+     */
+    public void calcBand(FrameGeometry frameGeometry, final int fromRow, int toRow, FrameBuffer band){
+        final int xResolution = frameGeometry.getXResolution();
+        int yResolution = frameGeometry.getYResolution();
+        band.resize(xResolution, toRow - fromRow);
+
+        if (frameGeometry.isDeepZoom()) {
+            // the band is a view of its own, whose centre is moved from the frame's in arbitrary precision
+            double imaginaryStep = frameGeometry.getImaginaryRange() / yResolution;
+            double bandImaginaryRange = (toRow - fromRow) * imaginaryStep;
+            BigDecimal bandCentreImaginary = frameGeometry.getCentreImaginary().add(
+                    new BigDecimal(fromRow * imaginaryStep + (bandImaginaryRange - frameGeometry.getImaginaryRange()) / 2));
+            mPerturbationRenderer.calcMandelbrotSet(band, frameGeometry.getCentreReal(), bandCentreImaginary,
+                    frameGeometry.getRealRange(), bandImaginaryRange, frameGeometry.getMaxIterations(),
+                    frameGeometry.getRadiusSquared());
+            return;
+        }
+
+        final double minReal = frameGeometry.getMinReal();
+        final double minImaginary = frameGeometry.getMinImaginary();
+        final double realStep = (frameGeometry.getMaxReal() - minReal)/xResolution;
+        final double imaginaryStep = (frameGeometry.getMaxImaginary() - minImaginary)/yResolution;
+        final int maxIterations = frameGeometry.getMaxIterations();
+        final double radiusSquared = frameGeometry.getRadiusSquared();
+        mParallelRenderEngine.calcRows(band, new ParallelRenderEngine.RowKernel() {
+            @Override
+            public long calcRow(int[] rowData, int offset, int y) {
+                double cImaginary = minImaginary + (fromRow + y) * imaginaryStep;
+                return mMandelbrotCalculator.calcMandelbrotRow(rowData, offset, xResolution, minReal, realStep, cImaginary,
+                        maxIterations, radiusSquared);
+            }
+        });
+    }
+}
@@ -0,0 +1,485 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The FrameBuffer class stores the iteration value of every pixel of a frame in a single contiguous int[].
+ *
+ * Pixel (x, y) is found at data[y * stride + x]. Compared to an int[y][x] this is one object instead of one per row,
+ * rows lie next to each other in memory, and the buffer can be reused from frame to frame: resizing only allocates
+ * a new array when the frame no longer fits in the current one.
+ *
+ * A frame can also hold the fraction of the iteration at which every pixel escaped, for smooth colouring: pixel (x, y)
+ * with the value n escaped at the continuous iteration value n - 1 + fraction, see MandelbrotCalculator.escapeFraction.
+ * The fraction is mostly between 0 and 1, but can fall a little outside when the radius is small, so the fractions
+ * from MIN_FRACTION to MIN_FRACTION + 4 are kept, as 16-bit fixed point numbers in a char[] next to the data, half the
+ * size of a float[]. It is only allocated once setFractional(true) is called. The fraction of a pixel which did not
+ * escape is undefined.
+ *
+ * For anti-aliasing a frame can hold several samples of some of its pixels besides their iteration values, see
+ * AntiAliasingRenderer: the index of every supersampled pixel, in frame order, and for each the iteration values (and
+ * fractions, if the frame is fractional) of samplesPerPixel points spread over the pixel. The supersamples belong to
+ * the iteration values they were taken for, so they are dropped whenever the frame is resized or copied into.
+ *
+ * A frame also records whether its iteration values are exact, see setExact, which decides whether its tiles may be
+ * added to the TileCache.
+ *
+ * So that raising maxIterations can continue the frame where it stopped (see IncrementalRenderer), a frame can keep
+ * the Z every pixel with the value maxIterations stopped at, once setKeepingOrbits(true) is called. The Z of row y are
+ * in their own double[], the real and imaginary components of pixel x at 2 * x and 2 * x + 1, which is only allocated
+ * once a pixel of the row did not escape, so the rows outside the set take no memory. A Z whose real component is NaN
+ * belongs to a pixel which escaped in the last iteration. Whoever calculates a row records the Z of its pixels and
+ * marks the row as recorded (see setOrbitRecorded); the Z of the pixels of other rows are undefined. Resizing the frame
+ * unmarks every row.
+ *
+ * @author Student id: 170024238
+ */
+public class FrameBuffer {
+
+    // Fixed point scale of the fractions, and the fraction stored as 0
+    public static final int FRACTION_SCALE = 1 << 14;
+    public static final int MIN_FRACTION = -1;
+
+    private int width, height;
+    private int[] data;
+    // Fractional iteration values, used only while the frame is fractional
+    private char[] fractions;
+    private boolean fractional;
+    // Whether the iteration values are exact, see setExact
+    private boolean exact;
+    // Z of the pixels which did not escape, one array per row allocated on demand, used only while keeping orbits
+    private boolean keepingOrbits;
+    private double[][] rowOrbits = new double[0][];
+    private boolean[] orbitsRecorded = new boolean[0];
+    // Supersampled pixels, and the values and fractions of their samples, samplesPerPixel after each other
+    private int supersampledPixels, samplesPerPixel;
+    private int[] supersampledIndices = new int[0];
+    private int[] supersampleData = new int[0];
+    private char[] supersampleFractions = new char[0];
+
+    /**
+     * Constructs a new FrameBuffer with every pixel set to 0.
+     *
+     * @param width the number of pixels on the x-axis.
+     * @param height the number of pixels on the y-axis.
+     */
+    public FrameBuffer(int width, int height){
+        this.width = width;
+        this.height = height;
+        this.data = new int[width * height];
+    }
+
+    /**
+     * Constructs a new FrameBuffer holding a copy of another one, without its Z.
+     *
+     * @param frameBuffer the buffer to copy.
+     */
+    public FrameBuffer(FrameBuffer frameBuffer){
+        this.width = frameBuffer.width;
+        this.height = frameBuffer.height;
+        this.data = Arrays.copyOf(frameBuffer.data, frameBuffer.width * frameBuffer.height);
+        this.exact = frameBuffer.exact;
+        if (frameBuffer.fractional) {
+            this.fractions = Arrays.copyOf(frameBuffer.fractions, frameBuffer.width * frameBuffer.height);
+            this.fractional = true;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the distance in the data array between the start of two neighbouring rows.
+     */
+    public int getStride() {
+        return width;
+    }
+
+    /**
+     * @return the backing array, of which the first width * height values are the pixels.
+     */
+    public int[] getData() {
+        return data;
+    }
+
+    /**
+     * @param y the row.
+     * @return the index in the data array of the first pixel of the row.
+     */
+    public int getOffset(int y) {
+        return y * width;
+    }
+
+    /**
+     * @return true if the frame holds the fractional iteration values of its pixels.
+     */
+    public boolean isFractional() {
+        return fractional;
+    }
+
+    /**
+     * Method to choose whether the frame holds the fractional iteration values of its pixels, allocating the array
+     * of the fractions the first time. The fractions are undefined until calculated, and the supersamples are dropped
+     * if the choice changes.
+     *
+     * @param fractional true to keep the fractions, false to ignore them.
+     */
+    public void setFractional(boolean fractional) {
+        if (fractional && (fractions == null || fractions.length < data.length)) {
+            fractions = new char[data.length];
+        }
+        if (fractional != this.fractional) {
+            clearSupersamples();
+        }
+        this.fractional = fractional;
+    }
+
+    /**
+     * @return true if every iteration value of the frame is exact, see setExact.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Method to record whether every iteration value of the frame is the one MandelbrotCalculator.calcMandel gives
+     * without the periodicity check, rather than an approximation (boundary subdivision, the periodicity check,
+     * perturbation, resampling, or values kept from a frame which was not exact). Set by whoever calculates the frame;
+     * a frame is not exact after it is resized.
+     *
+     * @param exact true if the iteration values are exact.
+     */
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+
+    /**
+     * @return true if the frame keeps the Z of the pixels which did not escape.
+     */
+    public boolean isKeepingOrbits() {
+        return keepingOrbits;
+    }
+
+    /**
+     * Method to choose whether the frame keeps the Z of the pixels which did not escape. No row is recorded
+     * afterwards if the frame stops keeping them.
+     *
+     * @param keepingOrbits true to keep the Z, false to leave them out.
+     */
+    public void setKeepingOrbits(boolean keepingOrbits) {
+        this.keepingOrbits = keepingOrbits;
+        if (keepingOrbits) {
+            if (rowOrbits.length < height) {
+                rowOrbits = Arrays.copyOf(rowOrbits, height);
+                orbitsRecorded = Arrays.copyOf(orbitsRecorded, height);
+            }
+        } else {
+            clearOrbits();
+        }
+    }
+
+    /**
+     * @param y the row.
+     * @return true if the frame keeps its Z and every pixel of the row with the value maxIterations, outside the main
+     * cardioid and period 2 bulb, has its Z recorded.
+     */
+    public boolean isOrbitRecorded(int y) {
+        return keepingOrbits && orbitsRecorded[y];
+    }
+
+    /**
+     * Method to mark whether the Z of a row are recorded, see isOrbitRecorded. Only has an effect while the frame keeps
+     * its Z.
+     *
+     * @param y the row.
+     * @param recorded true once the Z of the row are recorded.
+     */
+    public void setOrbitRecorded(int y, boolean recorded) {
+        if (keepingOrbits) {
+            orbitsRecorded[y] = recorded;
+        }
+    }
+
+    /**
+     * @param y the row.
+     * @return the array of the Z of the row, pixel x at 2 * x, or null if no pixel of the row has needed one yet.
+     */
+    public double[] getRowOrbit(int y) {
+        return keepingOrbits ? rowOrbits[y] : null;
+    }
+
+    /**
+     * Method to get the array of the Z of a row to write them, allocating it the first time. Rows are independent, so
+     * different threads may write different rows. The frame must keep its Z.
+     *
+     * @param y the row.
+     * @return the array of the Z of the row, pixel x at 2 * x.
+     */
+    public double[] getRowOrbitForWriting(int y) {
+        double[] rowOrbit = rowOrbits[y];
+        if (rowOrbit == null || rowOrbit.length < 2 * width) {
+            rowOrbit = new double[2 * width];
+            rowOrbits[y] = rowOrbit;
+        }
+        return rowOrbit;
+    }
+
+    /**
+     * Method to unmark every row, keeping the arrays of the Z for the next frame.
+     */
+    public void clearOrbits() {
+        Arrays.fill(orbitsRecorded, false);
+    }
+
+    /**
+     * @return the array of the fractions, indexed like the data array, or null if the frame is not fractional.
+     */
+    public char[] getFractions() {
+        return fractional ? fractions : null;
+    }
+
+    /**
+     * @return the fraction of pixel (x, y), 0 if the frame is not fractional.
+     */
+    public float getFraction(int x, int y) {
+        return fractional ? decodeFraction(fractions[y * width + x]) : 0;
+    }
+
+    /**
+     * @param fraction a fraction of an iteration.
+     * @return the fraction in fixed point, limited to the fractions which can be stored.
+     */
+    public static char encodeFraction(double fraction) {
+        double fixedPoint = (fraction - MIN_FRACTION) * FRACTION_SCALE;
+        // NaN, e.g. from a radius up to 1, is stored as 0
+        return (char) (fixedPoint > 0 ? Math.min(Character.MAX_VALUE, (int) fixedPoint) : 0);
+    }
+
+    /**
+     * @param fixedPoint a fraction in fixed point.
+     * @return the fraction.
+     */
+    public static float decodeFraction(char fixedPoint) {
+        return (float) fixedPoint / FRACTION_SCALE + MIN_FRACTION;
+    }
+
+    /**
+     * @return the number of supersampled pixels.
+     */
+    public int getSupersampledPixels() {
+        return supersampledPixels;
+    }
+
+    /**
+     * @return the number of samples of every supersampled pixel, 0 if the frame has not been supersampled.
+     */
+    public int getSamplesPerPixel() {
+        return samplesPerPixel;
+    }
+
+    /**
+     * @return the array of the index in the data array of every supersampled pixel, in frame order.
+     */
+    public int[] getSupersampledIndices() {
+        return supersampledIndices;
+    }
+
+    /**
+     * @return the array of the iteration values of the samples, those of supersampled pixel i starting at
+     * i * samplesPerPixel.
+     */
+    public int[] getSupersampleData() {
+        return supersampleData;
+    }
+
+    /**
+     * @return the array of the fractions of the samples, indexed like the supersample data, or null if the frame is
+     * not fractional.
+     */
+    public char[] getSupersampleFractions() {
+        return fractional ? supersampleFractions : null;
+    }
+
+    /**
+     * Method to make room for the supersamples of the frame, replacing any it had. The indices and sample values are
+     * undefined until calculated.
+     *
+     * @param supersampledPixels the number of supersampled pixels.
+     * @param samplesPerPixel the number of samples of every supersampled pixel, at least 1.
+     */
+    public void setSupersamples(int supersampledPixels, int samplesPerPixel) {
+        int samples = supersampledPixels * samplesPerPixel;
+        if (supersampledIndices.length < supersampledPixels) {
+            supersampledIndices = new int[supersampledPixels];
+        }
+        if (supersampleData.length < samples) {
+            supersampleData = new int[samples];
+        }
+        if (fractional && supersampleFractions.length < samples) {
+            supersampleFractions = new char[samples];
+        }
+        this.supersampledPixels = supersampledPixels;
+        this.samplesPerPixel = samplesPerPixel;
+    }
+
+    /**
+     * Method to drop the supersamples of the frame.
+     */
+    public void clearSupersamples() {
+        supersampledPixels = 0;
+        samplesPerPixel = 0;
+    }
+
+    public int get(int x, int y) {
+        return data[y * width + x];
+    }
+
+    public void set(int x, int y, int value) {
+        data[y * width + x] = value;
+    }
+
+    /**
+     * Method to change the size of the frame, keeping the backing array if it is big enough.
+     * The pixel values are undefined afterwards, the supersamples dropped, no row has its Z recorded and the frame
+     * is not exact.
+     *
+     * @param width the new number of pixels on the x-axis.
+     * @param height the new number of pixels on the y-axis.
+     */
+    public void resize(int width, int height) {
+        if (data.length < width * height) {
+            data = new int[width * height];
+        }
+        if (fractional && fractions.length < width * height) {
+            fractions = new char[width * height];
+        }
+        clearSupersamples();
+        this.exact = false;
+        this.width = width;
+        this.height = height;
+        // grows the rows of the Z while keeping them, and unmarks them all
+        setKeepingOrbits(keepingOrbits);
+        clearOrbits();
+    }
+
+    /**
+     * Method to make this frame a copy of another one, keeping the backing array if it is big enough. The frame is
+     * fractional, keeps its Z and is exact afterwards if the other one does. Every Z of the other frame is copied,
+     * including those of rows not yet marked as recorded, so a frame being calculated can be continued in the copy.
+     *
+     * @param frameBuffer the buffer to copy.
+     */
+    public void copyFrom(FrameBuffer frameBuffer) {
+        setFractional(frameBuffer.fractional);
+        setKeepingOrbits(frameBuffer.keepingOrbits);
+        resize(frameBuffer.width, frameBuffer.height);
+        System.arraycopy(frameBuffer.data, 0, data, 0, width * height);
+        if (fractional) {
+            System.arraycopy(frameBuffer.fractions, 0, fractions, 0, width * height);
+        }
+        if (keepingOrbits) {
+            for (int y = 0; y < height; y++) {
+                if (frameBuffer.rowOrbits[y] != null) {
+                    System.arraycopy(frameBuffer.rowOrbits[y], 0, getRowOrbitForWriting(y), 0, 2 * width);
+                }
+                orbitsRecorded[y] = frameBuffer.orbitsRecorded[y];
+            }
+        }
+        exact = frameBuffer.exact;
+    }
+
+    /**
+     * Method to copy another frame of the same size shifted by whole pixels: pixel (x, y) of this frame gets the value
+     * of pixel (x + shiftX, y + shiftY) of the other frame. Pixels for which that is outside the other frame are left
+     * unchanged. Unlike copyFrom the frame keeps its own choice of fractions: they are copied if both frames hold them,
+     * and undefined if only this one does, so a frame calculated without fractions does not get them back. The Z are
+     * left out, see copyOrbitsShifted.
+     *
+     * @param frameBuffer the buffer to copy.
+     * @param shiftX the shift on the x-axis.
+     * @param shiftY the shift on the y-axis.
+     */
+    public void copyShifted(FrameBuffer frameBuffer, int shiftX, int shiftY) {
+        resize(frameBuffer.width, frameBuffer.height);
+        boolean copyFractions = fractional && frameBuffer.fractional;
+        int fromX = Math.max(0, -shiftX);
+        int toX = Math.min(width, width - shiftX);
+        for (int y = Math.max(0, -shiftY); y < Math.min(height, height - shiftY); y++) {
+            if (fromX < toX) {
+                System.arraycopy(frameBuffer.data, frameBuffer.getOffset(y + shiftY) + fromX + shiftX, data, getOffset(y) + fromX, toX - fromX);
+                if (copyFractions) {
+                    System.arraycopy(frameBuffer.fractions, frameBuffer.getOffset(y + shiftY) + fromX + shiftX, fractions, getOffset(y) + fromX, toX - fromX);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to copy the Z of another frame of the same size shifted by whole pixels like copyShifted, if both frames
+     * keep them. A row shifted from a recorded row is marked as recorded, as the pixels left unchanged are those the
+     * caller calculates next.
+     *
+     * @param frameBuffer the buffer to copy.
+     * @param shiftX the shift on the x-axis.
+     * @param shiftY the shift on the y-axis.
+     */
+    public void copyOrbitsShifted(FrameBuffer frameBuffer, int shiftX, int shiftY) {
+        if (!keepingOrbits || !frameBuffer.keepingOrbits) {
+            return;
+        }
+        int fromX = Math.max(0, -shiftX);
+        int toX = Math.min(width, width - shiftX);
+        for (int y = Math.max(0, -shiftY); y < Math.min(height, height - shiftY); y++) {
+            if (fromX < toX) {
+                double[] rowOrbit = frameBuffer.rowOrbits[y + shiftY];
+                if (rowOrbit != null) {
+                    System.arraycopy(rowOrbit, 2 * (fromX + shiftX), getRowOrbitForWriting(y), 2 * fromX, 2 * (toX - fromX));
+                }
+                orbitsRecorded[y] = frameBuffer.orbitsRecorded[y + shiftY];
+            }
+        }
+    }
+
+    /**
+     * Method to set every pixel of the frame to the same value.
+     *
+     * @param value the value of every pixel.
+     */
+    public void fill(int value) {
+        Arrays.fill(data, 0, width * height, value);
+    }
+
+    /**
+     * @return a copy of the frame as a 2-D integer array [height][width].
+     */
+    public int[][] toArray() {
+        int[][] array = new int[height][];
+        for (int y = 0; y < height; y++) {
+            array[y] = Arrays.copyOfRange(data, y * width, (y + 1) * width);
+        }
+        return array;
+    }
+
+    /**
+     * Method to count the pixels that differ between two frames of the same size.
+     *
+     * @param expected the reference frame.
+     * @param actual the frame to check.
+     * @return the number of pixels with different values.
+     */
+    public static long countDifferentPixels(FrameBuffer expected, FrameBuffer actual) {
+        long differentPixels = 0;
+        int pixels = expected.width * expected.height;
+        for (int i = 0; i < pixels; i++) {
+            if (expected.data[i] != actual.data[i]) {
+                differentPixels++;
+            }
+        }
+        return differentPixels;
+    }
+}
@@ -0,0 +1,193 @@
+package model;
+
+import java.math.BigDecimal;
+
+/**
+ * The FrameGeometry class holds every parameter that decides the iteration values of a frame: its resolution, its view
+ * of the complex plane, maxIterations and the escape radius. Colours and other presentation settings are not part of
+ * it, so two frames with equal geometry have the same iteration data.
+ *
+ * Instances are immutable, so they can be kept to remember what a computed frame shows.
+ *
+ * @author Student id: 170024238
+ */
+public final class FrameGeometry {
+
+    private final int xResolution, yResolution, maxIterations;
+    private final double minReal, maxReal, minImaginary, maxImaginary, radiusSquared;
+    private final BigDecimal centreReal, centreImaginary;
+    private final double realRange, imaginaryRange;
+
+    /**
+     * Constructs a new FrameGeometry.
+     *
+     * @param xResolution the number of pixels on the x-axis.
+     * @param yResolution the number of pixels on the y-axis.
+     * @param minReal the lower real bound of the view.
+     * @param maxReal the upper real bound of the view.
+     * @param minImaginary the lower imaginary bound of the view.
+     * @param maxImaginary the upper imaginary bound of the view.
+     * @param centreReal the real component of the centre of the view in arbitrary precision.
+     * @param centreImaginary the imaginary component of the centre of the view in arbitrary precision.
+     * @param realRange the width of the view.
+     * @param imaginaryRange the height of the view.
+     * @param maxIterations the maximum number of iterations.
+     * @param radiusSquared the squared escape radius.
+     */
+    public FrameGeometry(int xResolution, int yResolution, double minReal, double maxReal, double minImaginary, double maxImaginary,
+                         BigDecimal centreReal, BigDecimal centreImaginary, double realRange, double imaginaryRange,
+                         int maxIterations, double radiusSquared){
+        this.xResolution = xResolution;
+        this.yResolution = yResolution;
+        this.minReal = minReal;
+        this.maxReal = maxReal;
+        this.minImaginary = minImaginary;
+        this.maxImaginary = maxImaginary;
+        this.centreReal = centreReal;
+        this.centreImaginary = centreImaginary;
+        this.realRange = realRange;
+        this.imaginaryRange = imaginaryRange;
+        this.maxIterations = maxIterations;
+        this.radiusSquared = radiusSquared;
+    }
+
+    public int getXResolution() {
+        return xResolution;
+    }
+
+    public int getYResolution() {
+        return yResolution;
+    }
+
+    public double getMinReal() {
+        return minReal;
+    }
+
+    public double getMaxReal() {
+        return maxReal;
+    }
+
+    public double getMinImaginary() {
+        return minImaginary;
+    }
+
+    public double getMaxImaginary() {
+        return maxImaginary;
+    }
+
+    public BigDecimal getCentreReal() {
+        return centreReal;
+    }
+
+    public BigDecimal getCentreImaginary() {
+        return centreImaginary;
+    }
+
+    public double getRealRange() {
+        return realRange;
+    }
+
+    public double getImaginaryRange() {
+        return imaginaryRange;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public double getRadiusSquared() {
+        return radiusSquared;
+    }
+
+    /**
+     * @return true if the view is too deep for double precision and has to be calculated by perturbation.
+     */
+    public boolean isDeepZoom() {
+        return PerturbationRenderer.isDeepZoom(realRange, imaginaryRange);
+    }
+
+    /**
+     * @param maxIterations the maximum number of iterations of the new geometry.
+     * @return the geometry of the same view with another maxIterations.
+     */
+    public FrameGeometry withMaxIterations(int maxIterations) {
+        return new FrameGeometry(xResolution, yResolution, minReal, maxReal, minImaginary, maxImaginary, centreReal,
+                centreImaginary, realRange, imaginaryRange, maxIterations, radiusSquared);
+    }
+
+    /**
+     * Method to move the view onto the grid of the TileCache, so that its pixels are calculated with the same C in
+     * every view of the same scale and its tiles can be cached. The pixel steps are quantised, which changes the scale
+     * by less than a millionth, and the origin moved to the nearest grid point, which moves the view by less than half
+     * a pixel. Deep zooms, which are calculated from their centre by perturbation, are left as they are.
+     *
+     * @return the geometry of the view on the grid, or this geometry if it is a deep zoom or too far from the origin.
+     */
+    public FrameGeometry alignedToGrid() {
+        if (isDeepZoom()) {
+            return this;
+        }
+        double realStep = TileCache.quantiseStep((maxReal - minReal) / xResolution);
+        double imaginaryStep = TileCache.quantiseStep((maxImaginary - minImaginary) / yResolution);
+        double alignedMinReal = Math.rint(minReal / realStep) * realStep;
+        double alignedMinImaginary = Math.rint(minImaginary / imaginaryStep) * imaginaryStep;
+        if (!TileCache.isOnGrid(alignedMinReal, realStep, xResolution) || !TileCache.isOnGrid(alignedMinImaginary, imaginaryStep, yResolution)) {
+            return this;
+        }
+        double alignedMaxReal = alignedMinReal + xResolution * realStep;
+        double alignedMaxImaginary = alignedMinImaginary + yResolution * imaginaryStep;
+        BigDecimal two = BigDecimal.valueOf(2);
+        return new FrameGeometry(xResolution, yResolution, alignedMinReal, alignedMaxReal, alignedMinImaginary, alignedMaxImaginary,
+                new BigDecimal(alignedMinReal).add(new BigDecimal(alignedMaxReal)).divide(two),
+                new BigDecimal(alignedMinImaginary).add(new BigDecimal(alignedMaxImaginary)).divide(two),
+                xResolution * realStep, yResolution * imaginaryStep, maxIterations, radiusSquared);
+    }
+
+    /**
+     * Method to check whether two geometries describe the same view of the complex plane, whatever maxIterations.
+     *
+     * @param other the geometry to compare with.
+     * @return true if the resolution, view and radius are the same.
+     */
+    public boolean hasSameView(FrameGeometry other) {
+        return other != null
+                && xResolution == other.xResolution
+                && yResolution == other.yResolution
+                && Double.compare(minReal, other.minReal) == 0
+                && Double.compare(maxReal, other.maxReal) == 0
+                && Double.compare(minImaginary, other.minImaginary) == 0
+                && Double.compare(maxImaginary, other.maxImaginary) == 0
+                && centreReal.compareTo(other.centreReal) == 0
+                && centreImaginary.compareTo(other.centreImaginary) == 0
+                && Double.compare(realRange, other.realRange) == 0
+                && Double.compare(imaginaryRange, other.imaginaryRange) == 0
+                && Double.compare(radiusSquared, other.radiusSquared) == 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FrameGeometry)) {
+            return false;
+        }
+        FrameGeometry other = (FrameGeometry) o;
+        return maxIterations == other.maxIterations && hasSameView(other);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = xResolution;
+        result = 31 * result + yResolution;
+        result = 31 * result + maxIterations;
+        result = 31 * result + Double.hashCode(minReal);
+        result = 31 * result + Double.hashCode(maxReal);
+        result = 31 * result + Double.hashCode(minImaginary);
+        result = 31 * result + Double.hashCode(maxImaginary);
+        result = 31 * result + Double.hashCode(realRange);
+        result = 31 * result + Double.hashCode(imaginaryRange);
+        result = 31 * result + Double.hashCode(radiusSquared);
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+package model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The IncrementalRenderer class calculates a frame whose maxIterations has been raised from the previous frame of the
+ * same view, without repeating the work already done for it.
+ *
+ * Pixels that escaped below the old maxIterations keep their value, so only the pixels whose value was the old
+ * maxIterations are iterated further, by MandelbrotCalculator.resumeMandel. The rows of the previous frame which
+ * recorded the Z their pixels stopped at (see FrameBuffer.setKeepingOrbits) are continued from there, whichever way the
+ * frame was calculated: the ParallelRenderEngine, progressive passes, pans and this renderer all record them. The
+ * pixels of the other rows (e.g. those with tiles from the TileCache) are continued from Z_0 = 0, which still skips
+ * every pixel that escaped. The new frame records the Z of every row if it keeps them, so raising the limit again
+ * continues from there.
+ *
+ * The result is the same as calculating the frame from scratch with the new maxIterations.
+ *
+ * @author Student id: 170024238
+ */
+public class IncrementalRenderer {
+
+    private ParallelRenderEngine mParallelRenderEngine;
+    private MandelbrotCalculator mMandelbrotCalculator;
+
+    // Number of pixels iterated further in the last frame, and of those continued from a recorded Z
+    private long lastResumedPixels;
+    private long lastContinuedPixels;
+
+    /**
+     * Constructs a new IncrementalRenderer running its rows on the given engine.
+     *
+     * @param mParallelRenderEngine the engine used to continue the rows of the frame in parallel.
+     */
+    public IncrementalRenderer(ParallelRenderEngine mParallelRenderEngine){
+        this.mParallelRenderEngine = mParallelRenderEngine;
+        this.mMandelbrotCalculator = mParallelRenderEngine.getMandelbrotCalculator();
+    }
+
+    public long getLastResumedPixels() {
+        return lastResumedPixels;
+    }
+
+    /**
+     * @return the number of pixels of the last frame continued from the Z recorded by the previous frame, rather than
+     * from Z_0.
+     */
+    public long getLastContinuedPixels() {
+        return lastContinuedPixels;
+    }
+
+    /**
+     * Method to check whether a frame can be calculated by continuing the previous frame.
+     *
+     * @param previousGeometry the geometry of the previous frame, may be null.
+     * @param frameGeometry the geometry of the frame to calculate.
+     * @return true if both have the same view in double precision and the new maxIterations is higher.
+     */
+    public static boolean canResume(FrameGeometry previousGeometry, FrameGeometry frameGeometry){
+        return previousGeometry != null && !frameGeometry.isDeepZoom() && frameGeometry.hasSameView(previousGeometry)
+                && frameGeometry.getMaxIterations() > previousGeometry.getMaxIterations();
+    }
+
+    /**
+     * Method to calculate a frame by continuing the previous frame of the same view, see canResume.
+     *
+     * @param previousFrame the iteration values and recorded Z of the previous frame, which are only read.
+     * @param previousGeometry the geometry of the previous frame.
+     * @param frameBuffer the buffer receiving the iteration values of the new frame.
+     * @param frameGeometry the geometry of the new frame.
+     */
+    public void calcMandelbrotSet(final FrameBuffer previousFrame, FrameGeometry previousGeometry, final FrameBuffer frameBuffer, FrameGeometry frameGeometry){
+        final int xResolution = frameGeometry.getXResolution();
+        int yResolution = frameGeometry.getYResolution();
+        final double minReal = frameGeometry.getMinReal();
+        final double minImaginary = frameGeometry.getMinImaginary();
+        final double realStep = (frameGeometry.getMaxReal() - minReal)/xResolution;
+        final double imaginaryStep = (frameGeometry.getMaxImaginary() - minImaginary)/yResolution;
+        final int previousMaxIterations = previousGeometry.getMaxIterations();
+        final int maxIterations = frameGeometry.getMaxIterations();
+        final double radiusSquared = frameGeometry.getRadiusSquared();
+
+        // the frame keeps its own choice of fractions, so turning smooth colouring off drops them
+        frameBuffer.copyShifted(previousFrame, 0, 0);
+        final boolean keepingOrbits = frameBuffer.isKeepingOrbits();
+        final char[] fractions = frameBuffer.getFractions();
+        final LongAdder resumedPixels = new LongAdder();
+        final LongAdder continuedPixels = new LongAdder();
+
+        mParallelRenderEngine.calcRows(frameBuffer, new ParallelRenderEngine.RowKernel() {
+            @Override
+            public long calcRow(int[] rowData, int offset, int y) {
+                double cImaginary = minImaginary + y * imaginaryStep;
+                boolean recorded = previousFrame.isOrbitRecorded(y);
+                double[] previousOrbit = recorded ? previousFrame.getRowOrbit(y) : null;
+                // the Z of the row, or of a single pixel if the frame does not keep them
+                double[] orbit = keepingOrbits ? null : new double[2];
+                long rowIterations = 0;
+                int rowResumed = 0;
+                for (int x = 0; x < xResolution; x++) {
+                    if (rowData[offset + x] < previousMaxIterations) {
+                        continue;
+                    }
+                    double cReal = minReal + x * realStep;
+                    // the pixels the interior check skips never escape
+                    if (MandelbrotCalculator.isInMainCardioidOrBulb(cReal, cImaginary)) {
+                        rowData[offset + x] = maxIterations;
+                        continue;
+                    }
+                    if (orbit == null) {
+                        orbit = frameBuffer.getRowOrbitForWriting(y);
+                    }
+                    int orbitIndex = keepingOrbits ? 2 * x : 0;
+                    int fromIterations;
+                    if (recorded) {
+                        // the pixel escaped in the last iteration of the previous frame, and keeps its value
+                        if (Double.isNaN(previousOrbit[2 * x])) {
+                            continue;
+                        }
+                        orbit[orbitIndex] = previousOrbit[2 * x];
+                        orbit[orbitIndex + 1] = previousOrbit[2 * x + 1];
+                        fromIterations = previousMaxIterations;
+                    } else {
+                        orbit[orbitIndex] = 0;
+                        orbit[orbitIndex + 1] = 0;
+                        fromIterations = 0;
+                    }
+                    int iterations = mMandelbrotCalculator.resumeMandel(cReal, cImaginary, orbit, orbitIndex,
+                            fromIterations, maxIterations, radiusSquared, realStep, fractions, offset + x);
+                    rowData[offset + x] = iterations;
+                    rowIterations += iterations - fromIterations;
+                    rowResumed++;
+                }
+                frameBuffer.setOrbitRecorded(y, true);
+                resumedPixels.add(rowResumed);
+                if (recorded) {
+                    continuedPixels.add(rowResumed);
+                }
+                return rowIterations;
+            }
+        });
+        lastResumedPixels = resumedPixels.sum();
+        lastContinuedPixels = continuedPixels.sum();
+    }
+}
@@ -0,0 +1,191 @@
+package model;
+
+/**
+ * The IterationSelector class picks the maxIterations of a view automatically, so that shallow views do not waste
+ * iterations and deep views get enough of them to show their detail.
+ *
+ * The starting point is an estimate from the zoom scale: INITIAL_MAX_ITERATIONS plus ITERATIONS_PER_OCTAVE for every
+ * halving of the view since the initial view. The view is then sampled at SAMPLE_RESOLUTION pixels across, and the
+ * limit doubled for as long as doubling it makes the share of boundary samples which have not escaped fall by at
+ * least MIN_BOUNDARY_FALL. A sample which has not escaped next to one which has is either on the edge of the set or
+ * on a filament which more iterations would resolve; once doubling stops resolving them, the limit is high enough.
+ *
+ * Doubling the limit continues the samples of the previous limit through an IncrementalRenderer, so the whole
+ * selection costs about twice the sample at the limit chosen, a small fraction of the frame. Deep zooms are sampled by
+ * perturbation, each limit from scratch. The selector has its own single thread engine, so it does not disturb the
+ * row costs measured by the engine of the frames.
+ *
+ * Example usage -- To calculate a view with the maxIterations it needs
+ *
+ * IterationSelector selector = new IterationSelector(new MandelbrotCalculator());
+ * int maxIterations = selector.selectMaxIterations(frameGeometry, null);
+ *
+ * @author Student id: 170024238
+ */
+public class IterationSelector {
+
+    // Number of samples across the view
+    public static final int SAMPLE_RESOLUTION = 64;
+    // Default highest maxIterations selected
+    public static final int DEFAULT_ITERATION_LIMIT = 1 << 16;
+    // Iterations added to the estimate for every halving of the view
+    protected static final int ITERATIONS_PER_OCTAVE = 25;
+    // Relative fall of the share of unescaped boundary samples below which the limit is not doubled any more
+    protected static final double MIN_BOUNDARY_FALL = 0.1;
+
+    private ParallelRenderEngine mParallelRenderEngine;
+    private IncrementalRenderer mIncrementalRenderer;
+    private PerturbationRenderer mPerturbationRenderer;
+    private int iterationLimit = DEFAULT_ITERATION_LIMIT;
+
+    // Number of sample passes and the share of unescaped boundary samples at the limit chosen, of the last selection
+    private int lastSamplePasses;
+    private double lastBoundaryShare;
+
+    /**
+     * Constructs a new IterationSelector.
+     *
+     * @param mMandelbrotCalculator the calculator used to work out the iteration values of the samples.
+     */
+    public IterationSelector(MandelbrotCalculator mMandelbrotCalculator){
+        mParallelRenderEngine = new ParallelRenderEngine(mMandelbrotCalculator, 1);
+        mIncrementalRenderer = new IncrementalRenderer(mParallelRenderEngine);
+        mPerturbationRenderer = new PerturbationRenderer(mParallelRenderEngine);
+    }
+
+    public int getIterationLimit() {
+        return iterationLimit;
+    }
+
+    /**
+     * @param iterationLimit the highest maxIterations selected, at least MandelbrotCalculator.INITIAL_MAX_ITERATIONS.
+     */
+    public void setIterationLimit(int iterationLimit) {
+        if (iterationLimit < MandelbrotCalculator.INITIAL_MAX_ITERATIONS){
+            throw new IllegalArgumentException("Iteration limit must be at least " + MandelbrotCalculator.INITIAL_MAX_ITERATIONS
+                    + " but was " + iterationLimit);
+        }
+        this.iterationLimit = iterationLimit;
+    }
+
+    public int getLastSamplePasses() {
+        return lastSamplePasses;
+    }
+
+    public double getLastBoundaryShare() {
+        return lastBoundaryShare;
+    }
+
+    /**
+     * @param realRange the width of a view.
+     * @param imaginaryRange the height of the view.
+     * @param iterationLimit the highest maxIterations returned.
+     * @return the maxIterations estimated from the zoom scale of the view alone.
+     */
+    public static int getScaleIterations(double realRange, double imaginaryRange, int iterationLimit){
+        double initialRange = MandelbrotCalculator.INITIAL_MAX_IMAGINARY - MandelbrotCalculator.INITIAL_MIN_IMAGINARY;
+        double octaves = Math.max(0, Math.log(initialRange / Math.min(realRange, imaginaryRange)) / Math.log(2));
+        double iterations = MandelbrotCalculator.INITIAL_MAX_ITERATIONS + ITERATIONS_PER_OCTAVE * octaves;
+        return (int) Math.min(iterationLimit, Math.round(iterations));
+    }
+
+    /**
+     * Method to select the maxIterations of a view.
+     *
+     * @param frameGeometry the geometry of the view, whose maxIterations is ignored.
+     * @param cancellation the cancellation of the render the selection is for, or null.
+     * @return the maxIterations selected, between the scale estimate and the iteration limit.
+     * @throws java.util.concurrent.CancellationException if the render was cancelled.
+     */
+    public synchronized int selectMaxIterations(FrameGeometry frameGeometry, RenderCancellation cancellation){
+        int sampleWidth = SAMPLE_RESOLUTION;
+        int sampleHeight = (int) Math.max(1, Math.round((double) SAMPLE_RESOLUTION * frameGeometry.getYResolution()
+                / frameGeometry.getXResolution()));
+        FrameBuffer sample = new FrameBuffer(sampleWidth, sampleHeight);
+        FrameBuffer doubledSample = new FrameBuffer(sampleWidth, sampleHeight);
+        // every doubling continues the samples from the Z they stopped at
+        sample.setKeepingOrbits(true);
+        doubledSample.setKeepingOrbits(true);
+
+        mParallelRenderEngine.setRenderCancellation(cancellation);
+        try {
+            int maxIterations = getScaleIterations(frameGeometry.getRealRange(), frameGeometry.getImaginaryRange(), iterationLimit);
+            FrameGeometry sampleGeometry = getSampleGeometry(frameGeometry, sampleWidth, sampleHeight, maxIterations);
+            calcSample(null, null, sample, sampleGeometry);
+            double boundaryShare = getUnescapedBoundaryShare(sample, maxIterations);
+            lastSamplePasses = 1;
+
+            while (boundaryShare > 0 && (long) maxIterations * 2 <= iterationLimit) {
+                FrameGeometry doubledGeometry = getSampleGeometry(frameGeometry, sampleWidth, sampleHeight, maxIterations * 2);
+                calcSample(sample, sampleGeometry, doubledSample, doubledGeometry);
+                double doubledShare = getUnescapedBoundaryShare(doubledSample, maxIterations * 2);
+                lastSamplePasses++;
+                if (doubledShare > boundaryShare * (1 - MIN_BOUNDARY_FALL)) {
+                    break;
+                }
+                FrameBuffer previousSample = sample;
+                sample = doubledSample;
+                doubledSample = previousSample;
+                sampleGeometry = doubledGeometry;
+                maxIterations *= 2;
+                boundaryShare = doubledShare;
+            }
+            lastBoundaryShare = boundaryShare;
+            return maxIterations;
+        } finally {
+            mParallelRenderEngine.setRenderCancellation(null);
+        }
+    }
+
+    /**
+     * @return the geometry of the samples of a view, the view at a lower resolution.
+     */
+    private static FrameGeometry getSampleGeometry(FrameGeometry frameGeometry, int sampleWidth, int sampleHeight, int maxIterations){
+        return new FrameGeometry(sampleWidth, sampleHeight, frameGeometry.getMinReal(), frameGeometry.getMaxReal(),
+                frameGeometry.getMinImaginary(), frameGeometry.getMaxImaginary(), frameGeometry.getCentreReal(),
+                frameGeometry.getCentreImaginary(), frameGeometry.getRealRange(), frameGeometry.getImaginaryRange(),
+                maxIterations, frameGeometry.getRadiusSquared());
+    }
+
+    /**
+     * Method to calculate the samples of a view, continuing the samples of a lower maxIterations if given.
+     */
+    private void calcSample(FrameBuffer previousSample, FrameGeometry previousGeometry, FrameBuffer sample, FrameGeometry sampleGeometry){
+        if (sampleGeometry.isDeepZoom()) {
+            mPerturbationRenderer.calcMandelbrotSet(sample, sampleGeometry.getCentreReal(), sampleGeometry.getCentreImaginary(),
+                    sampleGeometry.getRealRange(), sampleGeometry.getImaginaryRange(), sampleGeometry.getMaxIterations(),
+                    sampleGeometry.getRadiusSquared());
+        } else if (IncrementalRenderer.canResume(previousGeometry, sampleGeometry)) {
+            mIncrementalRenderer.calcMandelbrotSet(previousSample, previousGeometry, sample, sampleGeometry);
+        } else {
+            mParallelRenderEngine.calcMandelbrotSet(sample, sampleGeometry.getMinReal(), sampleGeometry.getMaxReal(),
+                    sampleGeometry.getMinImaginary(), sampleGeometry.getMaxImaginary(), sampleGeometry.getMaxIterations(),
+                    sampleGeometry.getRadiusSquared());
+        }
+    }
+
+    /**
+     * @param sample the iteration values of the samples.
+     * @param maxIterations the maxIterations the samples were calculated with.
+     * @return the share of the samples which have not escaped but have a neighbour which has, or 1 if no sample has
+     * escaped, the whole view then being either inside the set or not resolved at all.
+     */
+    static double getUnescapedBoundaryShare(FrameBuffer sample, int maxIterations){
+        int width = sample.getWidth();
+        int height = sample.getHeight();
+        long boundarySamples = 0, escapedSamples = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (sample.get(x, y) < maxIterations) {
+                    escapedSamples++;
+                    continue;
+                }
+                if ((x > 0 && sample.get(x - 1, y) < maxIterations) || (x < width - 1 && sample.get(x + 1, y) < maxIterations)
+                        || (y > 0 && sample.get(x, y - 1) < maxIterations) || (y < height - 1 && sample.get(x, y + 1) < maxIterations)) {
+                    boundarySamples++;
+                }
+            }
+        }
+        return escapedSamples == 0 ? 1 : (double) boundarySamples / ((long) width * height);
+    }
+}
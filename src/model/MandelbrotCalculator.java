@@ -1,5 +1,7 @@
 package model;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * The MandelbrotCalculator class contains methods which establish the Mandelbrot set.
  * The calcMandelbrotSet method below iterates over X,Y positions and establishes for specified parameter values a 2-D array containing
@@ -12,7 +14,7 @@ package model;
  * int[][] madelbrotData = mandelCalc.calcMandelbrotSet(800, 800, MandelbrotCalculator.INITIAL_MIN_REAL, MandelbrotCalculator.INITIAL_MAX_REAL, MandelbrotCalculator.INITIAL_MIN_IMAGINARY, MandelbrotCalculator.INITIAL_MAX_IMAGINARY, MandelbrotCalculator.INITIAL_MAX_ITERATIONS, MandelbrotCalculator.DEFAULT_RADIUS_SQUARED);
  *
  */
-public class MandelbrotCalculator {
+public class MandelbrotCalculator implements RenderStrategy {
 
     // Initial parameter values
     protected static final double INITIAL_MIN_REAL = -2.0;
@@ -24,19 +26,154 @@ public class MandelbrotCalculator {
     // Default parameter values
     protected static final double DEFAULT_RADIUS_SQUARED = 4.0;
 
+    // Mode to return maxIterations straight away for points inside the main cardioid or the period-2 bulb
+    private boolean interiorCheck;
+    // Number of pixels the interior check returned without iterating, since the last reset
+    private final LongAdder shortCircuitedPixels = new LongAdder();
+
+    // Iterations Z is continued for after escaping to work out the fraction of the iteration at which it escaped, and
+    // the squared length of Z at which it is stopped early
+    protected static final int ESCAPE_ITERATIONS = 3;
+    private static final double ESCAPE_MODULUS_LIMIT = 1e100;
+
+    // Distance within which Z is considered to have returned to a checkpoint, i.e. the orbit is periodic: a fraction
+    // of the pixel step up to PERIODICITY_EPSILON, the check being off once that is below MIN_PERIODICITY_EPSILON
+    protected static final double PERIODICITY_EPSILON = 1e-12;
+    protected static final double PERIODICITY_STEP_FRACTION = 1e-3;
+    protected static final double MIN_PERIODICITY_EPSILON = 1e-15;
+    // Mode to stop iterating orbits that are caught in a cycle
+    private boolean periodicityCheck;
+    // Number of pixels the periodicity check stopped early, since the last reset
+    private final LongAdder periodicPixels = new LongAdder();
+
+    public boolean isInteriorCheck() {
+        return interiorCheck;
+    }
+
+    public void setInteriorCheck(boolean interiorCheck) {
+        this.interiorCheck = interiorCheck;
+    }
+
+    public long getShortCircuitedPixels() {
+        return shortCircuitedPixels.sum();
+    }
+
+    public void resetShortCircuitedPixels() {
+        shortCircuitedPixels.reset();
+    }
+
+    /**
+     * @return the counter of the pixels the interior check returned without iterating, for kernels applying the
+     * interior check themselves.
+     */
+    LongAdder getShortCircuitedPixelCounter() {
+        return shortCircuitedPixels;
+    }
+
+    public boolean isPeriodicityCheck() {
+        return periodicityCheck;
+    }
+
+    public void setPeriodicityCheck(boolean periodicityCheck) {
+        this.periodicityCheck = periodicityCheck;
+    }
+
+    public long getPeriodicPixels() {
+        return periodicPixels.sum();
+    }
+
+    public void resetPeriodicPixels() {
+        periodicPixels.reset();
+    }
+
+    /**
+     * Method to check analytically whether C lies inside the main cardioid or the period-2 bulb of the Mandelbrot set.
+     * Every such point belongs to the set, so iterating it would always run for the full maxIterations.
+     *
+     * Main cardioid: q * (q + (cr - 1/4)) <= ci^2 / 4 where q = (cr - 1/4)^2 + ci^2
+     * Period-2 bulb: (cr + 1)^2 + ci^2 <= 1/16
+     *
+     * @param cReal the real component of the constant C.
+     * @param cImaginary the imaginary component of the constant C.
+     * @return true if C is inside the main cardioid or the period-2 bulb.
+     */
+    protected static boolean isInMainCardioidOrBulb(double cReal, double cImaginary){
+        double ci2 = cImaginary * cImaginary;
+        double xr = cReal - 0.25;
+        double q = xr * xr + ci2;
+        if (q * (q + xr) <= 0.25 * ci2)
+            return true;
+        double xb = cReal + 1;
+        return xb * xb + ci2 <= 0.0625;
+    }
+
+    /**
+     * Method to work out the distance within which the periodicity check considers Z to have returned to a checkpoint.
+     * A fixed distance would be larger than the pixel step of deep views, so points a fraction of a pixel outside the
+     * set, whose orbits stay close to a cycle for a long time before escaping, would be taken as periodic. So the
+     * distance is PERIODICITY_STEP_FRACTION of the pixel step, at most PERIODICITY_EPSILON. Below
+     * MIN_PERIODICITY_EPSILON (pixel steps under 1e-12) it is too close to the rounding of Z to tell cycles apart,
+     * and the check is turned off.
+     *
+     * @param pixelStep the distance between neighbouring points.
+     * @return the distance, or 0 if the periodicity check is off at this pixel step.
+     */
+    protected static double periodicityEpsilon(double pixelStep){
+        double periodicityEpsilon = Math.min(PERIODICITY_EPSILON, Math.abs(pixelStep) * PERIODICITY_STEP_FRACTION);
+        return periodicityEpsilon < MIN_PERIODICITY_EPSILON ? 0 : periodicityEpsilon;
+    }
+
 
     /**
      * Method which calculates the number of iterations over which Z_n+1 = Z_n^2 + C can be applied for Z starting at the origin and a specific constant C (given by its Real and cImaginary components).
      * If the square of the absolute value of Z is still inside the defined squaredRadius after maxIterations then we stop iterating and return maxIterations, implicitly assuming that Z will never escape the radius for the given setting of the constant C.
      * In this case, the value of C is treated as being part of the Mandelbrot set, i.e. the set of starting constants C for which the value of Z remains bounded within the complex plane under iteration.
+     * When the interior check mode is on, points inside the main cardioid or the period-2 bulb return maxIterations without iterating.
+     * When the periodicity check mode is on, orbits caught in a cycle return maxIterations as soon as the cycle is found.
+     * The distance within which the cycle is detected scales with the distance between the points calculated, see
+     * periodicityEpsilon.
      *
      * @param cReal the real component (akin to X component) of the constant C.
      * @param cImaginary the imaginary component (akin to Y component) of the constant C.
      * @param maxIterations the maximum number of iterations over which to iterate the equation until assuming Z will remain bounded.
      * @param radiusSquared the squared of the radius to use when determining whether Z escaped the circle in the complex plain or remained bounded. The value used is commonly 4.0.
+     * @param pixelStep the distance between neighbouring points, i.e. the pixel step of the frame.
      * @return the number iterations for the value of Z to grow outside of the bounding radius, or maxIterations if it never escaped.
      */
-    private int calcMandel(double cReal, double cImaginary, int maxIterations, double radiusSquared){
+    protected int calcMandel(double cReal, double cImaginary, int maxIterations, double radiusSquared, double pixelStep){
+        return calcMandel(cReal, cImaginary, maxIterations, radiusSquared, pixelStep, null, 0);
+    }
+
+    /**
+     * Method which calculates the same iteration value as calcMandel above, also recording the fraction of the
+     * iteration at which Z escaped for smooth colouring, see escapeFraction.
+     *
+     * @param cReal the real component of the constant C.
+     * @param cImaginary the imaginary component of the constant C.
+     * @param maxIterations the maximum number of iterations.
+     * @param radiusSquared the squared of the radius used to determine whether Z escaped.
+     * @param pixelStep the distance between neighbouring points, i.e. the pixel step of the frame.
+     * @param fractions the array receiving the fraction if Z escaped, or null to skip it.
+     * @param index the index of the point in the fractions array.
+     * @return the number iterations for the value of Z to grow outside of the bounding radius, or maxIterations if it never escaped.
+     */
+    protected int calcMandel(double cReal, double cImaginary, int maxIterations, double radiusSquared, double pixelStep,
+                             char[] fractions, int index){
+        return calcMandel(cReal, cImaginary, maxIterations, radiusSquared, pixelStep, fractions, index, null, 0);
+    }
+
+    /**
+     * Method which calculates the same iteration value as calcMandel above, also recording the Z where the iteration
+     * stopped, from which resumeMandel can continue it to a higher maxIterations. A point which escaped gets the real
+     * component NaN, as its value may be maxIterations when it escaped in the last iteration. The Z of a point the
+     * interior check returns straight away is not recorded, as it never escapes.
+     *
+     * @param orbit the array receiving the real component of Z at orbitIndex and the imaginary one after it, or null
+     *              to skip it.
+     * @param orbitIndex the index of the real component of Z in the orbit array.
+     */
+    protected int calcMandel(double cReal, double cImaginary, int maxIterations, double radiusSquared, double pixelStep,
+                             char[] fractions, int index, double[] orbit, int orbitIndex){
         // To work out Z_n+1 = Z_n^2 + C and establish whether C is in the Mandelbrot set or not
         // we need to
         //    square the current value of Z
@@ -46,21 +183,218 @@ public class MandelbrotCalculator {
         // Z = zr + i*zi
         // C = cr + i*ci
         // Z^2 = zr^2 + 2zr*i*zi + i^2*zi^2 = (zr^2 - zi^2) + i*2zr*zi
+        if (interiorCheck && isInMainCardioidOrBulb(cReal, cImaginary)) {
+            shortCircuitedPixels.increment();
+            return maxIterations;
+        }
+        if (periodicityCheck) {
+            double periodicityEpsilon = periodicityEpsilon(pixelStep);
+            if (periodicityEpsilon > 0) {
+                return calcMandelPeriodic(cReal, cImaginary, maxIterations, radiusSquared, periodicityEpsilon, fractions,
+                        index, orbit, orbitIndex);
+            }
+        }
+        int iterations = 0;
+        double zr = 0;
+        double zi = 0;
+        while (iterations < maxIterations) {
+            double zr2 = zr * zr;
+            double zi2 = zi * zi;
+            double nzr = zr2 - zi2 + cReal;
+            double nzi = 2 * zr * zi + cImaginary;
+            zr = nzr;
+            zi = nzi;
+            iterations++;
+            if ((zr2 + zi2) > radiusSquared) {
+                if (fractions != null)
+                    fractions[index] = escapeFraction(zr, zi, cReal, cImaginary, radiusSquared);
+                if (orbit != null)
+                    orbit[orbitIndex] = Double.NaN;
+                return iterations;
+            }
+        }
+        if (orbit != null) {
+            orbit[orbitIndex] = zr;
+            orbit[orbitIndex + 1] = zi;
+        }
+        return iterations;
+    }
+
+    /**
+     * Method to work out the fraction of the iteration at which Z escaped, so that the iteration values of
+     * neighbouring pixels can be coloured without bands. With n the iteration value, i.e. Z_n-1 the first Z whose
+     * squared length exceeded radiusSquared, the continuous iteration value is
+     *
+     *    n - log2(log(|Z_n-1|^2) / log(radiusSquared))
+     *
+     * which lies between n - 1 and n: it reaches n as |Z_n-1|^2 falls to radiusSquared, and n - 1 as it grows to
+     * radiusSquared^2, where a point escaping one iteration earlier starts. This relies on log|Z| doubling with every
+     * iteration, which only holds once |Z| is well above |C|, so Z is iterated ESCAPE_ITERATIONS more times and the
+     * formula applied to the last one. That removes the steps between the bands that the usual radius of 2 would
+     * leave, the value then straying up to about a third of an iteration outside n - 1 to n. The fraction returned is
+     * the part above n - 1, in the fixed point of FrameBuffer.encodeFraction.
+     *
+     * @param zReal the real component of Z_n, the Z after the iteration in which Z escaped.
+     * @param zImaginary the imaginary component of Z_n.
+     * @param cReal the real component of the constant C.
+     * @param cImaginary the imaginary component of the constant C.
+     * @param radiusSquared the squared of the radius, above 1.
+     * @return the fraction in fixed point.
+     */
+    protected static char escapeFraction(double zReal, double zImaginary, double cReal, double cImaginary, double radiusSquared){
+        double zr = zReal;
+        double zi = zImaginary;
+        int iterations = 1;
+        // Z_n+k grows like |Z|^(2^k), so a huge radius would overflow a double
+        while (iterations <= ESCAPE_ITERATIONS && zr * zr + zi * zi < ESCAPE_MODULUS_LIMIT) {
+            double nzr = zr * zr - zi * zi + cReal;
+            zi = 2 * zr * zi + cImaginary;
+            zr = nzr;
+            iterations++;
+        }
+        return FrameBuffer.encodeFraction(iterations + 1 - Math.log(Math.log(zr * zr + zi * zi) / Math.log(radiusSquared)) / Math.log(2));
+    }
+
+    /**
+     * Method which calculates the same iteration value as calcMandel, but also checks whether the orbit of Z is
+     * caught in a cycle. Interior points outside the main cardioid and bulb (such as the satellite bulbs along the real
+     * axis) settle into a periodic orbit, which would otherwise be iterated for the full maxIterations.
+     *
+     * Brent's method is used: Z is saved as a checkpoint, and whenever Z comes back within periodicityEpsilon of the
+     * checkpoint the orbit is periodic and maxIterations is returned. The distance between checkpoints doubles each
+     * time, so cycles of any length are found within a few times their period after the orbit has settled.
+     *
+     * @param cReal the real component of the constant C.
+     * @param cImaginary the imaginary component of the constant C.
+     * @param maxIterations the maximum number of iterations over which to iterate the equation.
+     * @param radiusSquared the squared of the radius used to determine whether Z escaped.
+     * @param periodicityEpsilon the distance within which Z is considered to have returned to the checkpoint.
+     * @param fractions the array receiving the fraction if Z escaped, or null to skip it.
+     * @param index the index of the point in the fractions array.
+     * @param orbit the array receiving Z where the iteration stopped like in calcMandel, the Z where the cycle was
+     *              found for a periodic point, or null to skip it.
+     * @param orbitIndex the index of the real component of Z in the orbit array.
+     * @return the number iterations for the value of Z to grow outside of the bounding radius, or maxIterations if it never escaped.
+     */
+    private int calcMandelPeriodic(double cReal, double cImaginary, int maxIterations, double radiusSquared,
+                                   double periodicityEpsilon, char[] fractions, int index, double[] orbit, int orbitIndex){
         int iterations = 0;
         double zr = 0;
         double zi = 0;
-        boolean outside = false;
-        while (iterations < maxIterations && !outside) {
+        double checkpointZr = 0;
+        double checkpointZi = 0;
+        int checkpointInterval = 1;
+        int sinceCheckpoint = 0;
+        while (iterations < maxIterations) {
+            double zr2 = zr * zr;
+            double zi2 = zi * zi;
+            double nzr = zr2 - zi2 + cReal;
+            double nzi = 2 * zr * zi + cImaginary;
+            zr = nzr;
+            zi = nzi;
+            iterations++;
+            if ((zr2 + zi2) > radiusSquared) {
+                if (fractions != null)
+                    fractions[index] = escapeFraction(zr, zi, cReal, cImaginary, radiusSquared);
+                if (orbit != null)
+                    orbit[orbitIndex] = Double.NaN;
+                return iterations;
+            }
+
+            if (Math.abs(zr - checkpointZr) < periodicityEpsilon && Math.abs(zi - checkpointZi) < periodicityEpsilon) {
+                periodicPixels.increment();
+                break;
+            }
+            if (++sinceCheckpoint == checkpointInterval) {
+                checkpointZr = zr;
+                checkpointZi = zi;
+                sinceCheckpoint = 0;
+                checkpointInterval <<= 1;
+            }
+        }
+        if (orbit != null) {
+            orbit[orbitIndex] = zr;
+            orbit[orbitIndex + 1] = zi;
+        }
+        return maxIterations;
+    }
+
+    /**
+     * Method which continues the iteration of calcMandel for a point that had not escaped after a number of
+     * iterations, so that raising maxIterations does not repeat the iterations already done. Continuing from Z_n after
+     * n iterations gives the same value as calcMandel with the higher maxIterations.
+     *
+     * The interior check is not repeated, the points it returns straight away never escape. A point that escapes is
+     * marked by setting its real component of Z to NaN, as its value may be maxIterations when it escaped in the last
+     * iteration. A point found to be periodic keeps the Z where the cycle was found, from where it is found again
+     * within a few periods if it is continued again.
+     *
+     * @param cReal the real component of the constant C.
+     * @param cImaginary the imaginary component of the constant C.
+     * @param orbit the array holding Z_n, the real component at orbitIndex and the imaginary one after it, replaced
+     *              by Z where the iteration stopped.
+     * @param orbitIndex the index of the real component of Z in the orbit array.
+     * @param iterations the number of iterations n already done.
+     * @param maxIterations the new maximum number of iterations.
+     * @param radiusSquared the squared of the radius used to determine whether Z escaped.
+     * @param pixelStep the distance between neighbouring points, which the periodicity check scales with.
+     * @return the number iterations for the value of Z to grow outside of the bounding radius, or maxIterations if it never escaped.
+     */
+    protected int resumeMandel(double cReal, double cImaginary, double[] orbit, int orbitIndex,
+                               int iterations, int maxIterations, double radiusSquared, double pixelStep){
+        return resumeMandel(cReal, cImaginary, orbit, orbitIndex, iterations, maxIterations, radiusSquared,
+                pixelStep, null, 0);
+    }
+
+    /**
+     * Method which continues the iteration like resumeMandel above, also recording the fraction of the iteration at
+     * which Z escaped for smooth colouring, see escapeFraction.
+     *
+     * @param fractions the array receiving the fraction if Z escaped, or null to skip it.
+     * @param pixelIndex the index of the point in the fractions array.
+     */
+    protected int resumeMandel(double cReal, double cImaginary, double[] orbit, int orbitIndex,
+                               int iterations, int maxIterations, double radiusSquared, double pixelStep,
+                               char[] fractions, int pixelIndex){
+        double periodicityEpsilon = periodicityCheck ? periodicityEpsilon(pixelStep) : 0;
+        double zr = orbit[orbitIndex];
+        double zi = orbit[orbitIndex + 1];
+        double checkpointZr = zr;
+        double checkpointZi = zi;
+        int checkpointInterval = 1;
+        int sinceCheckpoint = 0;
+        while (iterations < maxIterations) {
             double zr2 = zr * zr;
             double zi2 = zi * zi;
             double nzr = zr2 - zi2 + cReal;
             double nzi = 2 * zr * zi + cImaginary;
             zr = nzr;
             zi = nzi;
-            if ((zr2 + zi2) > radiusSquared)
-                outside = true;
             iterations++;
+            if ((zr2 + zi2) > radiusSquared) {
+                if (fractions != null)
+                    fractions[pixelIndex] = escapeFraction(zr, zi, cReal, cImaginary, radiusSquared);
+                orbit[orbitIndex] = Double.NaN;
+                return iterations;
+            }
+
+            if (periodicityEpsilon > 0) {
+                if (Math.abs(zr - checkpointZr) < periodicityEpsilon && Math.abs(zi - checkpointZi) < periodicityEpsilon) {
+                    periodicPixels.increment();
+                    orbit[orbitIndex] = zr;
+                    orbit[orbitIndex + 1] = zi;
+                    return maxIterations;
+                }
+                if (++sinceCheckpoint == checkpointInterval) {
+                    checkpointZr = zr;
+                    checkpointZi = zi;
+                    sinceCheckpoint = 0;
+                    checkpointInterval <<= 1;
+                }
+            }
         }
+        orbit[orbitIndex] = zr;
+        orbit[orbitIndex + 1] = zi;
         return iterations;
     }
 
@@ -78,19 +412,141 @@ public class MandelbrotCalculator {
      */
     public int[][] calcMandelbrotSet(int xResolution, int yResolution, double minReal, double maxReal, double minImaginary, double maxImaginary, int maxIterations, double radiusSquared){
         int[][] mandelbrotData = new int[yResolution][xResolution];
-        double realRange = maxReal - minReal;
 
         double realStep = (maxReal - minReal)/xResolution;
         double imaginaryStep = (maxImaginary - minImaginary)/yResolution;
 
         for (int y = 0; y < yResolution; y++) {
             double cImaginary = minImaginary + y * imaginaryStep;
-            for (int x = 0; x < xResolution; x++) {
-                double cReal = minReal + x * realStep;
-                mandelbrotData[y][x] = calcMandel(cReal, cImaginary, maxIterations, radiusSquared);
-                cReal = cReal + realStep;
-            }
+            calcMandelbrotRow(mandelbrotData[y], 0, xResolution, minReal, realStep, cImaginary, maxIterations, radiusSquared);
         }
         return mandelbrotData;
     }
+
+    /**
+     * Method to calculate the Mandelbrot set for the given parameter settings into a frame buffer, on a single thread.
+     * The values are the same as those returned by calcMandelbrotSet above for the buffer's width and height. The
+     * fractions are recorded too if the buffer is fractional, and the Z of the pixels which did not escape if it keeps
+     * them.
+     *
+     * @param frameBuffer the buffer receiving the iteration value of every pixel.
+     * @param minReal the lower real bound for the complex constant C
+     * @param maxReal the upper real bound for the complex constant C
+     * @param minImaginary the lower imaginary bound for the complex constant C
+     * @param maxImaginary the upper imaginary bound for the complex constant C
+     * @param maxIterations the maximum number of iterations to iterate the complex formula
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     */
+    @Override
+    public void calcMandelbrotSet(FrameBuffer frameBuffer, double minReal, double maxReal, double minImaginary, double maxImaginary, int maxIterations, double radiusSquared){
+        int xResolution = frameBuffer.getWidth();
+        int yResolution = frameBuffer.getHeight();
+        double realStep = (maxReal - minReal)/xResolution;
+        double imaginaryStep = (maxImaginary - minImaginary)/yResolution;
+
+        for (int y = 0; y < yResolution; y++) {
+            double cImaginary = minImaginary + y * imaginaryStep;
+            calcMandelbrotRow(frameBuffer, y, 0, xResolution, minReal, realStep, cImaginary, maxIterations, radiusSquared);
+        }
+    }
+
+    /**
+     * Method to calculate a single row of the Mandelbrot set. This is the unit of work shared by calcMandelbrotSet and
+     * the ParallelRenderEngine, so both produce exactly the same values for every pixel.
+     *
+     * @param rowData the array receiving the iteration value for each x pixel of the row.
+     * @param offset the index in rowData of the first pixel of the row.
+     * @param xResolution the number of pixels on the x-axis.
+     * @param minReal the lower real bound for the complex constant C.
+     * @param realStep the distance on the real axis between two neighbouring pixels.
+     * @param cImaginary the imaginary component of the constant C shared by every pixel in the row.
+     * @param maxIterations the maximum number of iterations to iterate the complex formula
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped the circle in the complex plain or remained bounded.
+     * @return the total number of iterations performed for the row, used as a measure of how costly the row was.
+     */
+    protected long calcMandelbrotRow(int[] rowData, int offset, int xResolution, double minReal, double realStep, double cImaginary, int maxIterations, double radiusSquared){
+        return calcMandelbrotRow(rowData, offset, 0, xResolution, minReal, realStep, cImaginary, maxIterations, radiusSquared);
+    }
+
+    /**
+     * Method to calculate the pixels [fromX, toX) of a row of the Mandelbrot set, with the same values that calculating
+     * the whole row gives them.
+     *
+     * @param rowData the array receiving the iteration value for each x pixel of the row.
+     * @param offset the index in rowData of the first pixel of the row (x = 0).
+     * @param fromX the first pixel to calculate.
+     * @param toX the pixel after the last one to calculate.
+     * @param minReal the lower real bound for the complex constant C.
+     * @param realStep the distance on the real axis between two neighbouring pixels.
+     * @param cImaginary the imaginary component of the constant C shared by every pixel in the row.
+     * @param maxIterations the maximum number of iterations to iterate the complex formula
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     * @return the total number of iterations performed for the pixels.
+     */
+    protected long calcMandelbrotRow(int[] rowData, int offset, int fromX, int toX, double minReal, double realStep, double cImaginary, int maxIterations, double radiusSquared){
+        return calcMandelbrotRow(rowData, null, offset, fromX, toX, minReal, realStep, cImaginary, maxIterations, radiusSquared);
+    }
+
+    /**
+     * Method to calculate the pixels [fromX, toX) of a row like calcMandelbrotRow above, also recording the fractions
+     * of the pixels that escaped for smooth colouring, see escapeFraction.
+     *
+     * @param rowFractions the array receiving the fractions, indexed like rowData, or null to skip them.
+     */
+    protected long calcMandelbrotRow(int[] rowData, char[] rowFractions, int offset, int fromX, int toX, double minReal, double realStep, double cImaginary, int maxIterations, double radiusSquared){
+        long rowIterations = 0;
+        for (int x = fromX; x < toX; x++) {
+            double cReal = minReal + x * realStep;
+            int iterations = calcMandel(cReal, cImaginary, maxIterations, radiusSquared, realStep, rowFractions, offset + x);
+            rowData[offset + x] = iterations;
+            rowIterations += iterations;
+        }
+        return rowIterations;
+    }
+
+    /**
+     * Method to calculate the pixels [fromX, toX) of row y of a frame like calcMandelbrotRow above, recording the
+     * fractions if the frame is fractional and, if it keeps them, the Z of the pixels with the value maxIterations (see
+     * FrameBuffer.setKeepingOrbits). Calculating the whole row marks it as recorded.
+     *
+     * @param frameBuffer the buffer receiving the iteration values.
+     * @param y the row.
+     * @param fromX the first pixel to calculate.
+     * @param toX the pixel after the last one to calculate.
+     * @param minReal the lower real bound for the complex constant C.
+     * @param realStep the distance on the real axis between two neighbouring pixels.
+     * @param cImaginary the imaginary component of the constant C shared by every pixel in the row.
+     * @param maxIterations the maximum number of iterations to iterate the complex formula
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     * @return the total number of iterations performed for the pixels.
+     */
+    protected long calcMandelbrotRow(FrameBuffer frameBuffer, int y, int fromX, int toX, double minReal, double realStep, double cImaginary, int maxIterations, double radiusSquared){
+        int[] rowData = frameBuffer.getData();
+        char[] rowFractions = frameBuffer.getFractions();
+        int offset = frameBuffer.getOffset(y);
+        if (!frameBuffer.isKeepingOrbits()) {
+            return calcMandelbrotRow(rowData, rowFractions, offset, fromX, toX, minReal, realStep, cImaginary, maxIterations, radiusSquared);
+        }
+        // the array of the row is only allocated once a pixel does not escape
+        double[] z = new double[2];
+        double[] rowOrbit = null;
+        long rowIterations = 0;
+        for (int x = fromX; x < toX; x++) {
+            double cReal = minReal + x * realStep;
+            int iterations = calcMandel(cReal, cImaginary, maxIterations, radiusSquared, realStep, rowFractions, offset + x, z, 0);
+            rowData[offset + x] = iterations;
+            if (iterations >= maxIterations) {
+                if (rowOrbit == null) {
+                    rowOrbit = frameBuffer.getRowOrbitForWriting(y);
+                }
+                rowOrbit[2 * x] = z[0];
+                rowOrbit[2 * x + 1] = z[1];
+            }
+            rowIterations += iterations;
+        }
+        if (fromX == 0 && toX == frameBuffer.getWidth()) {
+            frameBuffer.setOrbitRecorded(y, true);
+        }
+        return rowIterations;
+    }
 }
@@ -3,9 +3,13 @@ package model;
 import guiDelegate.MandelbrotSetData;
 
 import java.awt.*;
+import java.math.BigDecimal;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Observable;
 import java.util.Stack;
+import java.util.concurrent.Executor;
 
 /**
  *  This is the simple class whose purpose is to store all the Mandelbrot Set details and perform Mandelbrot Set]
@@ -14,6 +18,23 @@ import java.util.Stack;
  *  The model extends the Observable class and is observed by the GUIDelegate class. This form
  *  of loose coupling permits the delegate (View) to be updated when the model has changed.
  *
+ *  Frames are calculated by a RenderScheduler on a background thread, so updates return straight away. The new frame
+ *  is calculated into a back buffer while mandelbrotInfo stays displayed; once complete the buffers are swapped on the
+ *  Event Dispatch Thread and the observers notified of a ModelChange.GEOMETRY. A newer update cancels a frame that is
+ *  still being calculated. With progressive rendering the coarse passes of the new frame are swapped in as previews
+ *  (ModelChange.PREVIEW) before the complete frame. The asynchronous updates are meant to be made from the Event Dispatch Thread; with
+ *  setAsynchronousRendering(false) they calculate the frame on the caller's thread instead.
+ *
+ *  Zoom animations are calculated ahead by an AnimationPipeline and played back by calling advanceAnimation at a
+ *  fixed frame rate, see startAnimation.
+ *
+ *  The calculation of every frame displayed is recorded in a RenderMetrics, see getRenderMetrics.
+ *
+ *  With automatic iterations the maxIterations of every new view is picked by an IterationSelector on the render
+ *  scheduler's thread before the frame is calculated, and set once the frame is displayed, see setAutoIterations.
+ *
+ *  With smooth colouring the frames also hold the fractions of their iteration values, see setSmoothColouring.
+ *
  *  @author Student id: 170024238
  *
  *  Reference Source: https://studres.cs.st-andrews.ac.uk/CS5001/Examples/L11-13_GUIs/CS5001_SimpleSwing_MDGuiExample/src/model/SimpleModel.java
@@ -23,17 +44,73 @@ public class MandelbrotModel extends Observable {
     private static final int X_RESOLUTION = 900;
     private static final int Y_RESOLUTION = 900;
 
-    // Mandelbrot Data Information
-    private int[][] mandelbrotInfo;
+    // Mandelbrot Data Information, reused by every render
+    private FrameBuffer mandelbrotInfo;
+    // Geometry mandelbrotInfo was calculated for, or null if it is not known
+    private FrameGeometry mandelbrotInfoGeometry;
+    // Block size of the pass mandelbrotInfo holds, 1 once the frame is complete and 0 for a resampled frame
+    private int mandelbrotInfoPassSize;
+    // Buffer the next frame is calculated into, swapped with mandelbrotInfo once complete, read by the render
+    // scheduler's thread
+    private volatile FrameBuffer backBuffer;
+    // Runs the renders in the background, and the geometry of the frame it is calculating or null if none
+    private RenderScheduler mRenderScheduler;
+    private FrameGeometry pendingGeometry;
+    private boolean asynchronousRendering;
     private MandelbrotCalculator mMandelbrotCalculator;
+    private ParallelRenderEngine mParallelRenderEngine;
+    private MarianiSilverRenderer mMarianiSilverRenderer;
+    private VectorRenderer mVectorRenderer;
+    // Calculates the frames in coarse to fine passes, used instead of mRenderStrategy when progressive rendering is on
+    private ProgressiveRenderer mProgressiveRenderer;
+    private boolean progressiveRendering;
+    // Strategy used instead of mRenderStrategy once the view is too deep for double precision
+    private PerturbationRenderer mPerturbationRenderer;
+    // Strategy used to calculate every frame, the parallel engine unless set otherwise
+    private RenderStrategy mRenderStrategy;
+    // Recently calculated tiles, and the renderer looking them up before calling mRenderStrategy
+    private TileCache mTileCache;
+    private TiledRenderer mTiledRenderer;
+    // Continues the previous frame when only maxIterations has been raised
+    private IncrementalRenderer mIncrementalRenderer;
+    // Shifts the previous frame when the view has been panned by whole pixels
+    private PanRenderer mPanRenderer;
+    // Calculates the frames of the animation being played, their parameters, or null if none is played, and the
+    // frame last shown resampled while it was being calculated
+    private AnimationPipeline mAnimationPipeline;
+    private List<MandelbrotSetData> playedAnimationFrames;
+    private int resampledAnimationFrame;
+    // Picks the maxIterations of every view when automatic iterations are on, and whether the maxIterations of the
+    // displayed frame was picked by it
+    private IterationSelector mIterationSelector;
+    private boolean autoIterations;
+    private boolean iterationsSelected;
+    // Whether the frames are calculated with the fractions of their iteration values, and whether the frame being
+    // calculated in the background is
+    private boolean smoothColouring;
+    private boolean pendingSmoothColouring;
+    // Supersamples the edge pixels of the frames, the grid size used while anti-aliasing is on, and the samples per
+    // pixel of the frame being calculated in the background
+    private AntiAliasingRenderer mAntiAliasingRenderer;
+    private boolean antiAliasing;
+    private int antiAliasingGridSize = AntiAliasingRenderer.DEFAULT_GRID_SIZE;
+    private int pendingSamplesPerPixel;
+    // Metrics of the last frame calculated and displayed, and the number of frames calculated so far
+    private volatile RenderMetrics renderMetrics;
+    private volatile long renderCount;
     //X, Y screen resolution
     private int x_resolution, y_resolution;
 
     //Mandelbrot set parameters required for calculation
     private int maximumIterations;
     private double minumumReal, maximumReal, minimumImaginary, maximumImaginary, defaultRadiusSquared;
+    // The view in arbitrary precision, the bounds above being their nearest doubles
+    private BigDecimal centreReal, centreImaginary;
+    private double realRange, imaginaryRange;
 
     private Color color;
+    // Name of the gradient palette used instead of the colour, or null to use the colour
+    private String gradientName;
     // Array required in order for the animation logic enhancement
     private ArrayDeque<MandelbrotSetData> animationFrames;
     //Stack used for Undo and Redo
@@ -56,6 +133,28 @@ public class MandelbrotModel extends Observable {
      */
     public MandelbrotModel(){
         mMandelbrotCalculator = new MandelbrotCalculator();
+        mMandelbrotCalculator.setInteriorCheck(true);
+        mParallelRenderEngine = new ParallelRenderEngine(mMandelbrotCalculator);
+        mMarianiSilverRenderer = new MarianiSilverRenderer(mParallelRenderEngine);
+        mVectorRenderer = new VectorRenderer(mParallelRenderEngine);
+        mProgressiveRenderer = new ProgressiveRenderer(mParallelRenderEngine);
+        progressiveRendering = true;
+        mPerturbationRenderer = new PerturbationRenderer(mParallelRenderEngine);
+        mRenderStrategy = mParallelRenderEngine;
+        mTileCache = new TileCache();
+        mTiledRenderer = new TiledRenderer(mParallelRenderEngine, mRenderStrategy, mTileCache);
+        mIncrementalRenderer = new IncrementalRenderer(mParallelRenderEngine);
+        mPanRenderer = new PanRenderer(mParallelRenderEngine, mPerturbationRenderer);
+        mAntiAliasingRenderer = new AntiAliasingRenderer(mParallelRenderEngine);
+        mAnimationPipeline = new AnimationPipeline(mMandelbrotCalculator, AnimationPipeline.DEFAULT_CAPACITY);
+        mIterationSelector = new IterationSelector(mMandelbrotCalculator);
+        mRenderScheduler = new RenderScheduler(new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                EventQueue.invokeLater(runnable);
+            }
+        });
+        asynchronousRendering = true;
         this.x_resolution = X_RESOLUTION;
         this.y_resolution = Y_RESOLUTION;
         this.maximumIterations = MandelbrotCalculator.INITIAL_MAX_ITERATIONS;
@@ -64,13 +163,20 @@ public class MandelbrotModel extends Observable {
         this.minimumImaginary = MandelbrotCalculator.INITIAL_MIN_IMAGINARY;
         this.maximumImaginary = MandelbrotCalculator.INITIAL_MAX_IMAGINARY;
         this.defaultRadiusSquared = MandelbrotCalculator.DEFAULT_RADIUS_SQUARED;
+        setCentreFromBounds();
         this.color = Color.WHITE;
         stackUndo = new Stack<>();
         stackRedo = new Stack<>();
         animationFrames = new ArrayDeque<>();
+        mandelbrotInfo = new FrameBuffer(x_resolution, y_resolution);
+        backBuffer = new FrameBuffer(x_resolution, y_resolution);
 
-        this.mandelbrotInfo = mMandelbrotCalculator.calcMandelbrotSet(x_resolution,y_resolution,minumumReal,maximumReal,
-                minimumImaginary, maximumImaginary, maximumIterations, defaultRadiusSquared);
+        // the first frame is calculated straight away, so there is always a frame to display
+        FrameGeometry frameGeometry = getFrameGeometry();
+        RenderMetrics firstRenderMetrics = calculateMandelbrotInfo(backBuffer, frameGeometry, mRenderStrategy, false, false, 0, null,
+                null, null);
+        swapBuffers(frameGeometry);
+        publishRenderMetrics(firstRenderMetrics);
 
     }
 
@@ -83,12 +189,82 @@ public class MandelbrotModel extends Observable {
         return Y_RESOLUTION;
     }
 
-    public int[][] getMandelbrotInfo() {
+    public FrameBuffer getMandelbrotInfo() {
         return mandelbrotInfo;
     }
 
-    public void setMandelbrotInfo(int[][] mandelbrotInfo) {
+    public void setMandelbrotInfo(FrameBuffer mandelbrotInfo) {
         this.mandelbrotInfo = mandelbrotInfo;
+        this.mandelbrotInfoGeometry = null;
+    }
+
+    /**
+     * @return the geometry the current Mandelbrot data was calculated for, or null if it is not known.
+     */
+    public FrameGeometry getMandelbrotInfoGeometry() {
+        return mandelbrotInfoGeometry;
+    }
+
+    /**
+     * @return true if the Mandelbrot data is a complete frame, false if it is a preview of a frame being calculated.
+     */
+    public boolean isMandelbrotInfoComplete() {
+        return mandelbrotInfoPassSize == 1;
+    }
+
+    public ProgressiveRenderer getProgressiveRenderer() {
+        return mProgressiveRenderer;
+    }
+
+    public boolean isProgressiveRendering() {
+        return progressiveRendering;
+    }
+
+    /**
+     * @param progressiveRendering true to show coarse previews of the frames calculated in the background, false to
+     *                             only show complete frames calculated by the render strategy.
+     */
+    public void setProgressiveRendering(boolean progressiveRendering) {
+        this.progressiveRendering = progressiveRendering;
+    }
+
+    public boolean isAsynchronousRendering() {
+        return asynchronousRendering;
+    }
+
+    /**
+     * @param asynchronousRendering true to calculate frames in the background, false to calculate them on the thread
+     *                              calling updateMandelbrot.
+     */
+    public void setAsynchronousRendering(boolean asynchronousRendering) {
+        if (this.asynchronousRendering && !asynchronousRendering) {
+            // a cancelled frame may still be writing to the back buffer, so the synchronous renders get their own
+            mRenderScheduler.cancel();
+            pendingGeometry = null;
+            backBuffer = new FrameBuffer(x_resolution, y_resolution);
+        }
+        this.asynchronousRendering = asynchronousRendering;
+    }
+
+    /**
+     * @return true if a frame is being calculated in the background.
+     */
+    public boolean isRenderPending() {
+        return pendingGeometry != null;
+    }
+
+    public RenderScheduler getRenderScheduler() {
+        return mRenderScheduler;
+    }
+
+    /**
+     * @return the geometry of the current parameters, which the next update will calculate if it differs from the
+     * geometry of the current Mandelbrot data. It is aligned to the grid of the tile cache, so it may be up to half a
+     * pixel away from the parameters.
+     */
+    public FrameGeometry getFrameGeometry() {
+        return new FrameGeometry(x_resolution, y_resolution, minumumReal, maximumReal, minimumImaginary, maximumImaginary,
+                centreReal, centreImaginary, realRange, imaginaryRange, maximumIterations, defaultRadiusSquared).alignedToGrid();
     }
 
     public int getX_resolution() {
@@ -121,6 +297,7 @@ public class MandelbrotModel extends Observable {
 
     public void setMinumumReal(double minumumReal) {
         this.minumumReal = minumumReal;
+        setCentreFromBounds();
     }
 
     public double getMaximumReal() {
@@ -129,6 +306,7 @@ public class MandelbrotModel extends Observable {
 
     public void setMaximumReal(double maximumReal) {
         this.maximumReal = maximumReal;
+        setCentreFromBounds();
     }
 
     public double getMinimumImaginary() {
@@ -137,6 +315,7 @@ public class MandelbrotModel extends Observable {
 
     public void setMinimumImaginary(double minimumImaginary) {
         this.minimumImaginary = minimumImaginary;
+        setCentreFromBounds();
     }
 
     public double getMaximumImaginary() {
@@ -145,6 +324,23 @@ public class MandelbrotModel extends Observable {
 
     public void setMaximumImaginary(double maximumImaginary) {
         this.maximumImaginary = maximumImaginary;
+        setCentreFromBounds();
+    }
+
+    public BigDecimal getCentreReal() {
+        return centreReal;
+    }
+
+    public BigDecimal getCentreImaginary() {
+        return centreImaginary;
+    }
+
+    public double getRealRange() {
+        return realRange;
+    }
+
+    public double getImaginaryRange() {
+        return imaginaryRange;
     }
 
     public double getDefaultRadiusSquared() {
@@ -159,9 +355,220 @@ public class MandelbrotModel extends Observable {
         return color;
     }
 
+    /**
+     * Method to switch to one of the colour modes, which replaces any gradient palette.
+     *
+     * @param color the colour of the mode.
+     */
     public void setColor(Color color) {
         this.color = color;
+        this.gradientName = null;
+    }
+
+    public String getGradientName() {
+        return gradientName;
+    }
+
+    public void setGradientName(String gradientName) {
+        this.gradientName = gradientName;
+    }
+
+    public int getRenderThreadCount() {
+        return mParallelRenderEngine.getThreadCount();
+    }
+
+    public void setRenderThreadCount(int renderThreadCount) {
+        mParallelRenderEngine.setThreadCount(renderThreadCount);
+    }
+
+    public ParallelRenderEngine getParallelRenderEngine() {
+        return mParallelRenderEngine;
+    }
+
+    public MarianiSilverRenderer getMarianiSilverRenderer() {
+        return mMarianiSilverRenderer;
+    }
+
+    public VectorRenderer getVectorRenderer() {
+        return mVectorRenderer;
+    }
+
+    public RenderStrategy getRenderStrategy() {
+        return mRenderStrategy;
+    }
+
+    /**
+     * Method to choose how the following frames are calculated, e.g. getParallelRenderEngine(),
+     * getMarianiSilverRenderer() or getVectorRenderer(). The current frame is kept until the next update.
+     *
+     * @param mRenderStrategy the strategy used for the following frames.
+     */
+    public void setRenderStrategy(RenderStrategy mRenderStrategy) {
+        this.mRenderStrategy = mRenderStrategy;
+    }
+
+    /**
+     * @return the cache of recently calculated tiles, whose memory budget can be changed or set to 0 to disable it.
+     */
+    public TileCache getTileCache() {
+        return mTileCache;
+    }
+
+    public TiledRenderer getTiledRenderer() {
+        return mTiledRenderer;
+    }
+
+    public IncrementalRenderer getIncrementalRenderer() {
+        return mIncrementalRenderer;
+    }
+
+    public PanRenderer getPanRenderer() {
+        return mPanRenderer;
+    }
+
+    public AnimationPipeline getAnimationPipeline() {
+        return mAnimationPipeline;
+    }
+
+    /**
+     * @return the metrics of the last frame the model calculated and displayed. The view records the time it took to
+     * colour map and paint the frame into them. The frames of animations are not recorded.
+     */
+    public RenderMetrics getRenderMetrics() {
+        return renderMetrics;
+    }
+
+    /**
+     * @return the number of frames calculated and displayed since the model was created.
+     */
+    public long getRenderCount() {
+        return renderCount;
+    }
+
+    public IterationSelector getIterationSelector() {
+        return mIterationSelector;
+    }
+
+    public boolean isAutoIterations() {
+        return autoIterations;
+    }
+
+    /**
+     * Method to turn automatic iterations on or off. When on, every update of the view picks its maxIterations with
+     * the IterationSelector instead of using the one set, except for pans which keep the maxIterations of the frame
+     * they shift. The next update applies it to the current view.
+     *
+     * @param autoIterations true to pick the maxIterations of the views automatically.
+     */
+    public void setAutoIterations(boolean autoIterations) {
+        this.autoIterations = autoIterations;
+    }
+
+    public boolean isSmoothColouring() {
+        return smoothColouring;
+    }
+
+    /**
+     * Method to turn smooth colouring on or off. When on, the frames are calculated with the fraction of the
+     * iteration at which every pixel escaped, which the colour palettes use to blend the bands of the iteration
+     * values, so that a low maxIterations looks smooth. This costs two logarithms per escaped pixel and bypasses the
+     * tile cache, and the frames are calculated by the parallel engine whatever the render strategy, as the other
+     * strategies do not record the fractions. The frames of animations are played without them. The next update
+     * recalculates the current view if its frame has no fractions; turning it off only colours the frame in bands
+     * again, and the frames calculated from it afterwards do not keep its fractions.
+     *
+     * @param smoothColouring true to colour the frames smoothly.
+     */
+    public void setSmoothColouring(boolean smoothColouring) {
+        this.smoothColouring = smoothColouring;
+    }
+
+    public boolean isAntiAliasing() {
+        return antiAliasing;
+    }
+
+    /**
+     * Method to turn anti-aliasing on or off. When on, every frame is calculated at its own resolution first, and
+     * then the pixels whose iteration value differs from a neighbour are supersampled on a jittered grid of
+     * antiAliasingGridSize x antiAliasingGridSize points, whose colours are blended, see AntiAliasingRenderer. Deep
+     * zooms and the frames of animations are not anti-aliased. The next update recalculates the current view if its
+     * frame does not have the supersamples asked for.
+     *
+     * @param antiAliasing true to anti-alias the frames.
+     */
+    public void setAntiAliasing(boolean antiAliasing) {
+        this.antiAliasing = antiAliasing;
+    }
+
+    public int getAntiAliasingGridSize() {
+        return antiAliasingGridSize;
+    }
+
+    /**
+     * @param antiAliasingGridSize the number of samples of an edge pixel on each axis, from 2 to
+     *                             AntiAliasingRenderer.MAX_GRID_SIZE, used from the next update on.
+     */
+    public void setAntiAliasingGridSize(int antiAliasingGridSize) {
+        AntiAliasingRenderer.checkGridSize(antiAliasingGridSize);
+        this.antiAliasingGridSize = antiAliasingGridSize;
+    }
+
+    /**
+     * @return the number of pixels supersampled in the last anti-aliased frame.
+     */
+    public long getSupersampledPixels() {
+        return mAntiAliasingRenderer.getLastSupersampledPixels();
+    }
+
+    /**
+     * @param frameGeometry the geometry of a frame.
+     * @return the samples per pixel the frame should be supersampled with, 0 if it should not be anti-aliased.
+     */
+    private int getSamplesPerPixel(FrameGeometry frameGeometry){
+        return antiAliasing && !frameGeometry.isDeepZoom() ? antiAliasingGridSize * antiAliasingGridSize : 0;
+    }
+
+    public PerturbationRenderer getPerturbationRenderer() {
+        return mPerturbationRenderer;
+    }
+
+    /**
+     * @return true if the current view is deep enough to be calculated by perturbation instead of the render strategy.
+     */
+    public boolean isDeepZoom() {
+        return PerturbationRenderer.isDeepZoom(realRange, imaginaryRange);
     }
+
+    public boolean isInteriorCheck() {
+        return mMandelbrotCalculator.isInteriorCheck();
+    }
+
+    public void setInteriorCheck(boolean interiorCheck) {
+        mMandelbrotCalculator.setInteriorCheck(interiorCheck);
+    }
+
+    /**
+     * @return the number of pixels of the last render that the interior check returned without iterating.
+     */
+    public long getShortCircuitedPixels() {
+        return mMandelbrotCalculator.getShortCircuitedPixels();
+    }
+
+    public boolean isPeriodicityCheck() {
+        return mMandelbrotCalculator.isPeriodicityCheck();
+    }
+
+    public void setPeriodicityCheck(boolean periodicityCheck) {
+        mMandelbrotCalculator.setPeriodicityCheck(periodicityCheck);
+    }
+
+    /**
+     * @return the number of pixels of the last render that the periodicity check stopped early.
+     */
+    public long getPeriodicPixels() {
+        return mMandelbrotCalculator.getPeriodicPixels();
+    }
+
     public ArrayDeque<MandelbrotSetData> getAnimationFrames() {
         return animationFrames;
     }
@@ -170,12 +577,336 @@ public class MandelbrotModel extends Observable {
         this.animationFrames = animationFrames;
     }
 
+    /**
+     * Method to calculate the Mandelbrot data of a geometry into a back buffer, in the quickest way available:
+     * - frames whose tiles are all cached are copied from the tile cache
+     * - pans of the previous frame by whole pixels shift it and only calculate the exposed strips
+     * - deep zooms are calculated by the perturbation renderer
+     * - frames of the previous view with a higher maxIterations continue the previous frame
+     * - other frames are calculated progressively if asked to, or by the render strategy through the tile cache
+     *
+     * Smooth frames only reuse a previous frame that has fractions, and are calculated by the parallel engine
+     * without the tile cache. Anti-aliased frames then have their edge pixels supersampled, whatever the way they were
+     * calculated.
+     *
+     * Called on the render scheduler's thread, so it only uses its arguments and the renderers, not the parameters of
+     * the model. The back buffer is handed over as an argument, as the model may give itself a new one while a
+     * cancelled render is still writing to it.
+     *
+     * @param frameBuffer the back buffer to calculate the frame into, which holds the frame afterwards unless the
+     *                    frame was calculated progressively, the previews swapping it out.
+     * @param frameGeometry the geometry to calculate.
+     * @param renderStrategy the strategy used for the tiles which are not cached.
+     * @param progressive whether to publish previews while calculating the frame, only for background renders.
+     * @param smooth whether to calculate the fractions of the iteration values.
+     * @param antiAliasingGridSize the number of samples of an edge pixel on each axis, or 0 not to anti-alias the frame.
+     * @param previousFrame the complete frame displayed when the render was asked for, or null if there is none.
+     * @param previousGeometry the geometry of previousFrame, or null.
+     * @param cancellation the cancellation of the render job, or null for synchronous renders.
+     * @return the metrics of the calculation.
+     */
+    private RenderMetrics calculateMandelbrotInfo(FrameBuffer frameBuffer, FrameGeometry frameGeometry, RenderStrategy renderStrategy, boolean progressive,
+                                         boolean smooth, int antiAliasingGridSize, FrameBuffer previousFrame, FrameGeometry previousGeometry,
+                                         RenderCancellation cancellation){
+        mMandelbrotCalculator.resetShortCircuitedPixels();
+        mMandelbrotCalculator.resetPeriodicPixels();
+        RenderMetrics renderMetrics = new RenderMetrics(frameGeometry);
+        long allocatedBefore = RenderMetrics.getAllocatedBytesOfThreads();
+        long start = System.nanoTime();
+        frameBuffer.setFractional(smooth);
+        // so that raising maxIterations continues the frame, whichever way it was calculated
+        frameBuffer.setKeepingOrbits(true);
+        frameBuffer.resize(frameGeometry.getXResolution(), frameGeometry.getYResolution());
+        if (smooth) {
+            // the pixels kept from a frame without fractions would be coloured in bands
+            if (previousFrame != null && !previousFrame.isFractional()) {
+                previousGeometry = null;
+            }
+            renderStrategy = mParallelRenderEngine;
+        }
+        int cachedTiles = frameGeometry.isDeepZoom() || smooth ? 0 : mTiledRenderer.countCachedTiles(frameGeometry.getXResolution(),
+                frameGeometry.getYResolution(), frameGeometry.getMinReal(), frameGeometry.getMaxReal(),
+                frameGeometry.getMinImaginary(), frameGeometry.getMaxImaginary(), frameGeometry.getMaxIterations(),
+                frameGeometry.getRadiusSquared());
+        boolean allTilesCached = cachedTiles == TiledRenderer.countTiles(frameGeometry.getXResolution(), frameGeometry.getYResolution(),
+                frameGeometry.getMinReal(), frameGeometry.getMaxReal(), frameGeometry.getMinImaginary(), frameGeometry.getMaxImaginary());
+
+        String renderPath;
+        mParallelRenderEngine.setRenderMetrics(renderMetrics);
+        try {
+            if (!allTilesCached && PanRenderer.canPan(previousGeometry, frameGeometry)) {
+                // the kept pixels are those of the previous view, so the frame is not added to the tile cache
+                mPanRenderer.calcMandelbrotSet(previousFrame, previousGeometry, frameBuffer, frameGeometry);
+                frameBuffer.setExact(previousFrame.isExact() && !frameGeometry.isDeepZoom()
+                        && !mMandelbrotCalculator.isPeriodicityCheck());
+                renderPath = "pan";
+            } else if (frameGeometry.isDeepZoom()) {
+                mPerturbationRenderer.calcMandelbrotSet(frameBuffer,frameGeometry.getCentreReal(),frameGeometry.getCentreImaginary(),
+                        frameGeometry.getRealRange(),frameGeometry.getImaginaryRange(),frameGeometry.getMaxIterations(),
+                        frameGeometry.getRadiusSquared());
+                frameBuffer.setExact(false);
+                renderPath = "perturbation";
+            } else if (!allTilesCached && IncrementalRenderer.canResume(previousGeometry, frameGeometry)) {
+                mIncrementalRenderer.calcMandelbrotSet(previousFrame, previousGeometry, frameBuffer, frameGeometry);
+                // the pixels which had escaped are kept, so the frame is only as exact as the previous one
+                frameBuffer.setExact(previousFrame.isExact() && !mMandelbrotCalculator.isPeriodicityCheck());
+                storeTiles(frameBuffer, frameGeometry);
+                renderPath = "incremental";
+            } else if (progressive && cachedTiles == 0 && cancellation != null) {
+                frameBuffer = calculateMandelbrotInfoProgressively(frameBuffer, frameGeometry, cancellation);
+                renderPath = "progressive";
+            } else {
+                mTiledRenderer.setRenderStrategy(renderStrategy);
+                mTiledRenderer.calcMandelbrotSet(frameBuffer,frameGeometry.getMinReal(),frameGeometry.getMaxReal(),
+                        frameGeometry.getMinImaginary(),frameGeometry.getMaxImaginary(),frameGeometry.getMaxIterations(),
+                        frameGeometry.getRadiusSquared());
+                renderPath = allTilesCached ? "tile cache" : "tiled";
+            }
+            if (antiAliasingGridSize > 0) {
+                mAntiAliasingRenderer.calcSupersamples(frameBuffer, antiAliasingGridSize, frameGeometry.getMinReal(),
+                        frameGeometry.getMaxReal(), frameGeometry.getMinImaginary(), frameGeometry.getMaxImaginary(),
+                        frameGeometry.getMaxIterations(), frameGeometry.getRadiusSquared());
+                renderPath += ", anti-aliased";
+            }
+        } finally {
+            mParallelRenderEngine.setRenderMetrics(null);
+        }
+
+        long computeNanos = System.nanoTime() - start;
+        long allocatedAfter = RenderMetrics.getAllocatedBytesOfThreads();
+        renderMetrics.recordFrame(frameBuffer, renderPath, computeNanos, allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore,
+                mMandelbrotCalculator.getShortCircuitedPixels(), mMandelbrotCalculator.getPeriodicPixels());
+        return renderMetrics;
+    }
+
+    private void storeTiles(FrameBuffer frameBuffer, FrameGeometry frameGeometry){
+        mTiledRenderer.storeTiles(frameBuffer, frameGeometry.getMinReal(), frameGeometry.getMaxReal(),
+                frameGeometry.getMinImaginary(), frameGeometry.getMaxImaginary(), frameGeometry.getMaxIterations(),
+                frameGeometry.getRadiusSquared());
+    }
+
+    /**
+     * Method to display the frame calculated into the back buffer.
+     *
+     * @param frameGeometry the geometry the back buffer was calculated for.
+     */
+    private void swapBuffers(FrameGeometry frameGeometry){
+        swapBuffers(frameGeometry, 1);
+    }
+
+    /**
+     * Method to display the frame or preview calculated into the back buffer.
+     *
+     * @param frameGeometry the geometry the back buffer was calculated for.
+     * @param passSize the block size of the pass the back buffer holds, 1 for a complete frame.
+     */
+    private void swapBuffers(FrameGeometry frameGeometry, int passSize){
+        FrameBuffer frontBuffer = mandelbrotInfo;
+        mandelbrotInfo = backBuffer;
+        backBuffer = frontBuffer;
+        mandelbrotInfoGeometry = frameGeometry;
+        mandelbrotInfoPassSize = passSize;
+    }
+
+    /**
+     * Method to calculate a frame in progressive passes on the render scheduler's thread, publishing every pass but the
+     * last one as a preview. After a preview has been swapped in, the next pass continues from a copy of it in the
+     * back buffer the swap gave back.
+     *
+     * @param frameBuffer the back buffer to calculate the first pass into.
+     * @param frameGeometry the geometry to calculate.
+     * @param cancellation the cancellation of the render job.
+     * @return the back buffer holding the last pass.
+     */
+    private FrameBuffer calculateMandelbrotInfoProgressively(FrameBuffer frameBuffer, final FrameGeometry frameGeometry,
+                                                             RenderCancellation cancellation){
+        final FrameBuffer[] swappedBuffer = new FrameBuffer[1];
+        for (int passSize = ProgressiveRenderer.INITIAL_PASS_SIZE; passSize >= 1; passSize /= 2) {
+            mProgressiveRenderer.calcPass(frameBuffer, passSize, frameGeometry.getMinReal(), frameGeometry.getMaxReal(),
+                    frameGeometry.getMinImaginary(), frameGeometry.getMaxImaginary(), frameGeometry.getMaxIterations(),
+                    frameGeometry.getRadiusSquared());
+            if (passSize > 1) {
+                final int previewPassSize = passSize;
+                mRenderScheduler.publishProgress(cancellation, new Runnable() {
+                    @Override
+                    public void run() {
+                        swapBuffers(frameGeometry, previewPassSize);
+                        swappedBuffer[0] = backBuffer;
+                        notifyMandelbrotChange(ModelChange.PREVIEW);
+                    }
+                });
+                // the preview is only read while displayed, so the next pass can start from a copy of it
+                FrameBuffer preview = frameBuffer;
+                frameBuffer = swappedBuffer[0];
+                frameBuffer.copyFrom(preview);
+            }
+        }
+        frameBuffer.setExact(!mMandelbrotCalculator.isPeriodicityCheck());
+        storeTiles(frameBuffer, frameGeometry);
+        return frameBuffer;
+    }
+
+    /**
+     * Method to recalculate the Mandelbrot data if the geometry of the parameters differs from the geometry of the
+     * current data, and to notify the observers of the kind of change. When only presentation settings such as the
+     * colour changed, the data is kept and the observers only need to colour map it again.
+     */
+    private void updateMandelbrotInfo(){
+        stopAnimation();
+        final FrameGeometry frameGeometry = getFrameGeometry();
+        if (frameGeometry.equals(mandelbrotInfoGeometry) && isMandelbrotInfoComplete() && (iterationsSelected || !autoIterations)
+                && (mandelbrotInfo.isFractional() || !smoothColouring)
+                && mandelbrotInfo.getSamplesPerPixel() == getSamplesPerPixel(frameGeometry)) {
+            // e.g. an undo back to the displayed frame while a zoom was being calculated
+            if (pendingGeometry != null) {
+                // the cancelled frame may still be writing to the back buffer, so the next render gets its own
+                mRenderScheduler.cancel();
+                pendingGeometry = null;
+                backBuffer = new FrameBuffer(x_resolution, y_resolution);
+            }
+            notifyMandelbrotChange(ModelChange.PRESENTATION);
+        } else if (!asynchronousRendering) {
+            FrameGeometry renderGeometry = autoIterations ? selectIterations(frameGeometry, getCompleteGeometry(), null) : frameGeometry;
+            int gridSize = getSamplesPerPixel(renderGeometry) > 0 ? antiAliasingGridSize : 0;
+            RenderMetrics frameRenderMetrics = calculateMandelbrotInfo(backBuffer, renderGeometry, mRenderStrategy, false,
+                    smoothColouring, gridSize, mandelbrotInfo, getCompleteGeometry(), null);
+            maximumIterations = renderGeometry.getMaxIterations();
+            iterationsSelected = autoIterations;
+            swapBuffers(renderGeometry);
+            publishRenderMetrics(frameRenderMetrics);
+            notifyMandelbrotChange(ModelChange.GEOMETRY);
+        } else if (frameGeometry.equals(pendingGeometry) && pendingSmoothColouring == smoothColouring
+                && pendingSamplesPerPixel == getSamplesPerPixel(frameGeometry)) {
+            notifyMandelbrotChange(ModelChange.RENDERING);
+        } else {
+            pendingGeometry = frameGeometry;
+            pendingSmoothColouring = smoothColouring;
+            pendingSamplesPerPixel = getSamplesPerPixel(frameGeometry);
+            final RenderStrategy renderStrategy = mRenderStrategy;
+            final boolean progressive = progressiveRendering;
+            final boolean smooth = smoothColouring;
+            final int gridSize = pendingSamplesPerPixel > 0 ? antiAliasingGridSize : 0;
+            final FrameBuffer renderBuffer = backBuffer;
+            final FrameBuffer previousFrame = mandelbrotInfo;
+            final FrameGeometry previousGeometry = getCompleteGeometry();
+            final boolean selectIterations = autoIterations;
+            mRenderScheduler.submit(new RenderScheduler.RenderJob() {
+
+                private FrameGeometry renderGeometry;
+                private RenderMetrics frameRenderMetrics;
+
+                @Override
+                public void render(RenderCancellation cancellation) {
+                    renderGeometry = selectIterations ? selectIterations(frameGeometry, previousGeometry, cancellation) : frameGeometry;
+                    mParallelRenderEngine.setRenderCancellation(cancellation);
+                    try {
+                        frameRenderMetrics = calculateMandelbrotInfo(renderBuffer, renderGeometry, renderStrategy, progressive,
+                                smooth, gridSize, previousFrame, previousGeometry, cancellation);
+                    } finally {
+                        mParallelRenderEngine.setRenderCancellation(null);
+                    }
+                }
+
+                @Override
+                public void publish() {
+                    pendingGeometry = null;
+                    maximumIterations = renderGeometry.getMaxIterations();
+                    iterationsSelected = selectIterations;
+                    swapBuffers(renderGeometry);
+                    publishRenderMetrics(frameRenderMetrics);
+                    notifyMandelbrotChange(ModelChange.GEOMETRY);
+                }
+            });
+            notifyMandelbrotChange(ModelChange.RENDERING);
+        }
+    }
+
+    /**
+     * Method to pick the maxIterations of a frame with the IterationSelector, called on the thread calculating it.
+     * Pans keep the maxIterations of the frame they shift, so that only the exposed strips are calculated, and the
+     * maxIterations of a view already displayed is only ever raised, so that its frame is continued.
+     *
+     * @param frameGeometry the geometry asked for.
+     * @param previousGeometry the geometry of the complete frame displayed, or null.
+     * @param cancellation the cancellation of the render job, or null for synchronous renders.
+     * @return the geometry to calculate.
+     */
+    private FrameGeometry selectIterations(FrameGeometry frameGeometry, FrameGeometry previousGeometry, RenderCancellation cancellation){
+        boolean sameView = frameGeometry.hasSameView(previousGeometry);
+        if (!sameView && PanRenderer.canPan(previousGeometry, frameGeometry)) {
+            return frameGeometry;
+        }
+        int selectedIterations = mIterationSelector.selectMaxIterations(frameGeometry, cancellation);
+        if (sameView) {
+            selectedIterations = Math.max(selectedIterations, previousGeometry.getMaxIterations());
+        }
+        return frameGeometry.withMaxIterations(selectedIterations);
+    }
+
+    /**
+     * @return the geometry of the Mandelbrot data if it is a complete frame, otherwise null.
+     */
+    private FrameGeometry getCompleteGeometry(){
+        return isMandelbrotInfoComplete() ? mandelbrotInfoGeometry : null;
+    }
+
+    private void publishRenderMetrics(RenderMetrics frameRenderMetrics){
+        renderMetrics = frameRenderMetrics;
+        renderCount++;
+    }
+
+    private void notifyMandelbrotChange(ModelChange change){
+        setChanged();
+        notifyObservers(change);
+    }
+
+    /**
+     * Method to work out the arbitrary precision centre and the range of the view from its double bounds.
+     */
+    private void setCentreFromBounds(){
+        this.centreReal = new BigDecimal(minumumReal).add(new BigDecimal(maximumReal)).divide(BigDecimal.valueOf(2));
+        this.centreImaginary = new BigDecimal(minimumImaginary).add(new BigDecimal(maximumImaginary)).divide(BigDecimal.valueOf(2));
+        this.realRange = maximumReal - minumumReal;
+        this.imaginaryRange = maximumImaginary - minimumImaginary;
+    }
+
+    /**
+     * Method to pan the view by whole pixels, keeping its scale. Only the strips of the frame exposed by the pan are
+     * calculated; the rest of the frame is shifted.
+     *
+     * @param shiftX the number of pixels to move the view right, negative to move it left.
+     * @param shiftY the number of pixels to move the view down, negative to move it up.
+     */
+    public void panMandelbrot(int shiftX, int shiftY){
+        double realShift = shiftX * (realRange / x_resolution);
+        double imaginaryShift = shiftY * (imaginaryRange / y_resolution);
+        this.centreReal = PanRenderer.panCentre(centreReal, realRange, x_resolution, shiftX);
+        this.centreImaginary = PanRenderer.panCentre(centreImaginary, imaginaryRange, y_resolution, shiftY);
+        this.minumumReal += realShift;
+        this.maximumReal += realShift;
+        this.minimumImaginary += imaginaryShift;
+        this.maximumImaginary += imaginaryShift;
+
+        updateMandelbrotInfo();
+    }
+
     /**
      * Method to update the Mandelbrot Set by the other classes when the MandelbrotSetData object has to be passed in.
      *
      * @param mMandelbrotSetData Object of the MandelbrotSetData class.
      */
     public void updateMandelbrot(MandelbrotSetData mMandelbrotSetData){
+        setParameters(mMandelbrotSetData);
+
+        updateMandelbrotInfo();
+    }
+
+    /**
+     * Method to set every parameter of the Mandelbrot Set to those of the MandelbrotSetData object.
+     *
+     * @param mMandelbrotSetData Object of the MandelbrotSetData class.
+     */
+    private void setParameters(MandelbrotSetData mMandelbrotSetData){
         this.x_resolution = mMandelbrotSetData.getX_resolution();
         this.y_resolution = mMandelbrotSetData.getY_resolution();
         this.maximumIterations = mMandelbrotSetData.getMaximumIterations();
@@ -184,24 +915,110 @@ public class MandelbrotModel extends Observable {
         this.minimumImaginary = mMandelbrotSetData.getMinimumImaginary();
         this.maximumImaginary = mMandelbrotSetData.getMaximumImaginary();
         this.defaultRadiusSquared = mMandelbrotSetData.getDefaultRadiusSquared();
+        this.centreReal = mMandelbrotSetData.getCentreReal();
+        this.centreImaginary = mMandelbrotSetData.getCentreImaginary();
+        this.realRange = mMandelbrotSetData.getRealRange();
+        this.imaginaryRange = mMandelbrotSetData.getImaginaryRange();
         this.color = mMandelbrotSetData.getColor();
+        this.gradientName = mMandelbrotSetData.getGradientName();
+    }
 
-        this.mandelbrotInfo = mMandelbrotCalculator.calcMandelbrotSet(x_resolution,y_resolution,minumumReal,maximumReal,
-                minimumImaginary,maximumImaginary,maximumIterations,defaultRadiusSquared);
+    /**
+     * Method to start playing the animation frames queued in animationFrames, which are moved to an
+     * AnimationPipeline calculating them ahead of the playback. Any frame still being calculated in the background is
+     * cancelled.
+     */
+    public void startAnimation(){
+        stopAnimation();
+        if (pendingGeometry != null) {
+            // the cancelled frame may still be writing to the back buffer, which the playback needs
+            mRenderScheduler.cancel();
+            pendingGeometry = null;
+            backBuffer = new FrameBuffer(x_resolution, y_resolution);
+        }
+        playedAnimationFrames = new ArrayList<>(animationFrames);
+        animationFrames.clear();
+        List<FrameGeometry> frameGeometries = new ArrayList<>();
+        for (MandelbrotSetData mandelbrotSetData : playedAnimationFrames) {
+            frameGeometries.add(new FrameGeometry(mandelbrotSetData.getX_resolution(), mandelbrotSetData.getY_resolution(),
+                    mandelbrotSetData.getMinumumReal(), mandelbrotSetData.getMaximumReal(),
+                    mandelbrotSetData.getMinimumImaginary(), mandelbrotSetData.getMaximumImaginary(),
+                    mandelbrotSetData.getCentreReal(), mandelbrotSetData.getCentreImaginary(),
+                    mandelbrotSetData.getRealRange(), mandelbrotSetData.getImaginaryRange(),
+                    mandelbrotSetData.getMaximumIterations(), mandelbrotSetData.getDefaultRadiusSquared()).alignedToGrid());
+        }
+        resampledAnimationFrame = -1;
+        mAnimationPipeline.start(frameGeometries);
+    }
 
-        setChanged();
-        notifyObservers();
+    /**
+     * Method to show the next frame of the animation being played, meant to be called at the frame rate of the
+     * playback. If the frame has been calculated it is displayed and the parameters set to those of the frame, with a
+     * ModelChange.GEOMETRY. Otherwise the frame displayed is resampled to the view of the next frame and shown as a
+     * ModelChange.PREVIEW until the next frame is ready.
+     *
+     * @return true if the animation is still being played, false once its last frame has been displayed or if it was
+     * stopped.
+     */
+    public boolean advanceAnimation(){
+        if (playedAnimationFrames == null) {
+            return false;
+        }
+        int index = mAnimationPipeline.getNextFrameToPlay();
+        FrameGeometry frameGeometry = mAnimationPipeline.getFrameGeometry(index);
+        FrameBuffer frame = mAnimationPipeline.pollFrame();
+        if (frame != null) {
+            setParameters(playedAnimationFrames.get(index));
+            backBuffer.copyFrom(frame);
+            swapBuffers(frameGeometry);
+            iterationsSelected = false;
+            boolean lastFrame = index == playedAnimationFrames.size() - 1;
+            if (lastFrame) {
+                playedAnimationFrames = null;
+                if (!frameGeometry.isDeepZoom()) {
+                    storeTiles(mandelbrotInfo, frameGeometry);
+                }
+            }
+            notifyMandelbrotChange(ModelChange.GEOMETRY);
+            if (lastFrame && (autoIterations || smoothColouring || antiAliasing)) {
+                // the frames are played with the maxIterations they were asked for, without fractions and without
+                // supersamples, the last one then gets its own
+                updateMandelbrotInfo();
+            }
+            return !lastFrame;
+        }
+        if (index != resampledAnimationFrame && mandelbrotInfoGeometry != null) {
+            AnimationPipeline.resample(mandelbrotInfo, mandelbrotInfoGeometry, backBuffer, frameGeometry);
+            swapBuffers(frameGeometry, 0);
+            resampledAnimationFrame = index;
+            notifyMandelbrotChange(ModelChange.PREVIEW);
+        }
+        return true;
     }
 
     /**
-     * Method to simply update the Mandelbrot data set.
+     * @return true if an animation is being played.
      */
-    public void updateMandelbrot(){
-        this.mandelbrotInfo = mMandelbrotCalculator.calcMandelbrotSet(x_resolution,y_resolution,minumumReal,maximumReal,
-                minimumImaginary,maximumImaginary,maximumIterations,defaultRadiusSquared);
+    public boolean isAnimationPlaying() {
+        return playedAnimationFrames != null;
+    }
 
-        setChanged();
-        notifyObservers();
+    /**
+     * Method to stop the animation being played, if any, keeping the frame displayed.
+     */
+    private void stopAnimation(){
+        if (playedAnimationFrames != null) {
+            mAnimationPipeline.cancel();
+            playedAnimationFrames = null;
+        }
+    }
+
+    /**
+     * Method to simply update the Mandelbrot data set. The data is only recalculated if a parameter of its geometry
+     * changed, e.g. a colour change only notifies the observers of a ModelChange.PRESENTATION.
+     */
+    public void updateMandelbrot(){
+        updateMandelbrotInfo();
     }
 
     /**
@@ -217,15 +1034,13 @@ public class MandelbrotModel extends Observable {
         this.minimumImaginary = MandelbrotCalculator.INITIAL_MIN_IMAGINARY;
         this.maximumImaginary = MandelbrotCalculator.INITIAL_MAX_IMAGINARY;
         this.defaultRadiusSquared = MandelbrotCalculator.DEFAULT_RADIUS_SQUARED;
+        setCentreFromBounds();
         this.color = Color.WHITE;
+        this.gradientName = null;
         stackUndo.clear();
         stackRedo.clear();
         animationFrames.clear();
-        this.mandelbrotInfo = mMandelbrotCalculator.calcMandelbrotSet(x_resolution,y_resolution,minumumReal,maximumReal,
-                minimumImaginary, maximumImaginary, maximumIterations, defaultRadiusSquared);
-
-        setChanged();
-        notifyObservers();
+        updateMandelbrotInfo();
     }
 
 
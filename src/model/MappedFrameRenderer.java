@@ -0,0 +1,187 @@
+package model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.BitSet;
+
+/**
+ * The MappedFrameRenderer class calculates frames of any size straight into a file, e.g. posters of 100000 x 100000
+ * pixels whose iteration values would take 40 GB of memory.
+ *
+ * The file holds the iteration value of every pixel as a big-endian 32 bit int, row by row, like the raw images of
+ * the batch renderer. The frame is calculated band by band by a BandRenderer; each band is written into the part of
+ * the file it belongs to through a memory-mapped buffer (FileChannel.map) and forced to disk. The memory used is one
+ * band, whose number of rows is chosen so that it takes no more than a given number of bytes whatever the width.
+ *
+ * The bands written are recorded in a progress file next to the output, after the band itself is on disk. If the
+ * render is stopped, e.g. by a crash, rendering the same geometry to the same file again only calculates the bands
+ * which are not recorded. The progress file is deleted once the frame is complete.
+ *
+ * @author Student id: 170024238
+ */
+public class MappedFrameRenderer {
+
+    // Default maximum size of a band in memory
+    public static final long DEFAULT_BAND_BYTES = 16L << 20;
+    // Suffix of the progress file, added to the name of the output file
+    public static final String PROGRESS_SUFFIX = ".progress";
+
+    private BandRenderer mBandRenderer;
+    private long bandBytes = DEFAULT_BAND_BYTES;
+
+    // Number of bands of the last frame, and of those found already written
+    private int lastBands, lastResumedBands;
+
+    /**
+     * Constructs a new MappedFrameRenderer.
+     *
+     * @param mBandRenderer the renderer calculating the bands.
+     */
+    public MappedFrameRenderer(BandRenderer mBandRenderer){
+        this.mBandRenderer = mBandRenderer;
+    }
+
+    public long getBandBytes() {
+        return bandBytes;
+    }
+
+    /**
+     * @param bandBytes the maximum size of a band in memory; a band has at least one row whatever its size.
+     */
+    public void setBandBytes(long bandBytes) {
+        if (bandBytes < 1){
+            throw new IllegalArgumentException("Band bytes must be at least 1 but was " + bandBytes);
+        }
+        this.bandBytes = bandBytes;
+    }
+
+    public int getLastBands() {
+        return lastBands;
+    }
+
+    public int getLastResumedBands() {
+        return lastResumedBands;
+    }
+
+    /**
+     * @param width the number of pixels of a row.
+     * @param bandBytes the maximum size of a band in memory.
+     * @return the number of rows of the bands of a frame of that width.
+     */
+    public static int getBandRows(int width, long bandBytes){
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE / Math.max(1, width), bandBytes / (4L * width)));
+    }
+
+    /**
+     * @param outputFile an output file.
+     * @return the progress file of the output file.
+     */
+    public static File getProgressFile(File outputFile){
+        return new File(outputFile.getPath() + PROGRESS_SUFFIX);
+    }
+
+    /**
+     * Method to calculate a frame into a file, resuming a previous render of the same geometry into the same file if
+     * its progress file is found.
+     *
+     * @param frameGeometry the geometry of the frame.
+     * @param outputFile the file receiving the iteration values.
+     * @throws IOException if the file could not be written.
+     */
+    public void calcMandelbrotSet(FrameGeometry frameGeometry, File outputFile) throws IOException {
+        int width = frameGeometry.getXResolution();
+        int height = frameGeometry.getYResolution();
+        int bandRows = getBandRows(width, bandBytes);
+        int bands = (height + bandRows - 1) / bandRows;
+        long rowBytes = 4L * width;
+
+        File progressFile = getProgressFile(outputFile);
+        String header = progressHeader(frameGeometry, bandRows);
+        BitSet writtenBands = readProgress(progressFile, header, outputFile, rowBytes * height);
+        lastBands = bands;
+        lastResumedBands = writtenBands.cardinality();
+
+        try (RandomAccessFile file = new RandomAccessFile(outputFile, "rw");
+             FileOutputStream progressStream = new FileOutputStream(progressFile);
+             Writer progressWriter = new OutputStreamWriter(progressStream, StandardCharsets.UTF_8)) {
+            // the progress file is written again, without the line a stopped render may have cut short
+            progressWriter.write(header + "\n");
+            for (int bandIndex = writtenBands.nextSetBit(0); bandIndex >= 0; bandIndex = writtenBands.nextSetBit(bandIndex + 1)) {
+                progressWriter.write(bandIndex + "\n");
+            }
+            progressWriter.flush();
+            progressStream.getFD().sync();
+            // the file is extended without writing it, most file systems keeping it sparse until the bands are written
+            file.setLength(rowBytes * height);
+            FileChannel channel = file.getChannel();
+            FrameBuffer band = new FrameBuffer(0, 0);
+            for (int bandIndex = 0; bandIndex < bands; bandIndex++) {
+                if (writtenBands.get(bandIndex)) {
+                    continue;
+                }
+                int fromRow = bandIndex * bandRows;
+                int toRow = Math.min(fromRow + bandRows, height);
+                mBandRenderer.calcBand(frameGeometry, fromRow, toRow, band);
+
+                MappedByteBuffer mappedBand = channel.map(FileChannel.MapMode.READ_WRITE, fromRow * rowBytes, (toRow - fromRow) * rowBytes);
+                IntBuffer values = mappedBand.asIntBuffer();
+                for (int y = 0; y < band.getHeight(); y++) {
+                    values.put(band.getData(), band.getOffset(y), width);
+                }
+                // the band must be on disk before it is recorded as written
+                mappedBand.force();
+                progressWriter.write(bandIndex + "\n");
+                progressWriter.flush();
+                progressStream.getFD().sync();
+            }
+        }
+        if (!progressFile.delete()) {
+            throw new IOException("Could not delete the progress file " + progressFile);
+        }
+    }
+
+    /**
+     * @return the first line of the progress file, which identifies the frame and how it is split into bands.
+     */
+    private static String progressHeader(FrameGeometry frameGeometry, int bandRows){
+        return "frame " + frameGeometry.getXResolution() + "x" + frameGeometry.getYResolution()
+                + " centre " + frameGeometry.getCentreReal() + "," + frameGeometry.getCentreImaginary()
+                + " range " + frameGeometry.getRealRange() + "," + frameGeometry.getImaginaryRange()
+                + " bounds " + frameGeometry.getMinReal() + "," + frameGeometry.getMaxReal() + ","
+                + frameGeometry.getMinImaginary() + "," + frameGeometry.getMaxImaginary()
+                + " maxIterations " + frameGeometry.getMaxIterations()
+                + " radiusSquared " + frameGeometry.getRadiusSquared()
+                + " bandRows " + bandRows;
+    }
+
+    /**
+     * Method to read the bands recorded in a progress file.
+     *
+     * @return the bands already written, none if there is no progress file, it is for another frame or the output
+     * file is missing or of the wrong size.
+     */
+    private static BitSet readProgress(File progressFile, String header, File outputFile, long outputBytes) throws IOException {
+        BitSet writtenBands = new BitSet();
+        if (!progressFile.isFile() || !outputFile.isFile() || outputFile.length() != outputBytes) {
+            return writtenBands;
+        }
+        String[] lines = new String(Files.readAllBytes(progressFile.toPath()), StandardCharsets.UTF_8).split("\n", -1);
+        if (!lines[0].equals(header)) {
+            return writtenBands;
+        }
+        // the last line has no line break, being either empty or cut short by the stopped render
+        for (int i = 1; i < lines.length - 1; i++) {
+            writtenBands.set(Integer.parseInt(lines[i]));
+        }
+        return writtenBands;
+    }
+}
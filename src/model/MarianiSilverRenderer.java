@@ -0,0 +1,193 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The MarianiSilverRenderer class calculates the Mandelbrot set by boundary subdivision (the Mariani-Silver algorithm).
+ *
+ * Large parts of a frame are uniform blocks in which every pixel has the same iteration value. Because the Mandelbrot
+ * set is connected, a rectangle whose border pixels all have the same value is assumed to have that value everywhere
+ * inside, so it is filled without iterating. Rectangles with a mixed border are split in four and each quarter is
+ * checked the same way, down to a minimum size below which every pixel is calculated.
+ *
+ * The assumption can fail for features smaller than a pixel that do not touch the border, so a correctness check mode
+ * is available which calculates the frame again by brute force and counts the pixels that differ.
+ *
+ * @author Student id: 170024238
+ */
+public class MarianiSilverRenderer implements RenderStrategy {
+
+    // Rectangles with a side of this many pixels or fewer are calculated pixel by pixel
+    private static final int MIN_RECTANGLE_SIZE = 8;
+    // Marker for a pixel which has not been calculated yet
+    private static final int NOT_CALCULATED = -1;
+
+    private ParallelRenderEngine mParallelRenderEngine;
+    private MandelbrotCalculator mMandelbrotCalculator;
+
+    // Mode to diff every frame against the brute force result
+    private boolean correctnessCheck;
+    private long lastCalculatedPixels;
+    private long lastDifferentPixels;
+    // Buffer reused for the brute force frame of the correctness check
+    private FrameBuffer bruteForceBuffer;
+
+    /**
+     * Constructs a new MarianiSilverRenderer running on the pool and calculator of the given engine.
+     * The engine is also used for the brute force frame of the correctness check.
+     *
+     * @param mParallelRenderEngine the engine whose pool and calculator are used.
+     */
+    public MarianiSilverRenderer(ParallelRenderEngine mParallelRenderEngine){
+        this.mParallelRenderEngine = mParallelRenderEngine;
+        this.mMandelbrotCalculator = mParallelRenderEngine.getMandelbrotCalculator();
+    }
+
+    public boolean isCorrectnessCheck() {
+        return correctnessCheck;
+    }
+
+    public void setCorrectnessCheck(boolean correctnessCheck) {
+        this.correctnessCheck = correctnessCheck;
+    }
+
+    /**
+     * @return the number of pixels that were iterated (not filled) in the last frame.
+     */
+    public long getLastCalculatedPixels() {
+        return lastCalculatedPixels;
+    }
+
+    /**
+     * @return the number of pixels of the last frame that differ from the brute force result, or -1 if the
+     * correctness check was off.
+     */
+    public long getLastDifferentPixels() {
+        return lastDifferentPixels;
+    }
+
+    @Override
+    public void calcMandelbrotSet(FrameBuffer frameBuffer, double minReal, double maxReal, double minImaginary, double maxImaginary, int maxIterations, double radiusSquared){
+        int xResolution = frameBuffer.getWidth();
+        int yResolution = frameBuffer.getHeight();
+        frameBuffer.fill(NOT_CALCULATED);
+
+        double realStep = (maxReal - minReal)/xResolution;
+        double imaginaryStep = (maxImaginary - minImaginary)/yResolution;
+
+        LongAdder calculatedPixels = new LongAdder();
+        if (xResolution > 0 && yResolution > 0) {
+            mParallelRenderEngine.invoke(new RectangleTask(frameBuffer.getData(), frameBuffer.getStride(),
+                    calculatedPixels, 0, 0, xResolution - 1, yResolution - 1, minReal, realStep, minImaginary,
+                    imaginaryStep, maxIterations, radiusSquared));
+        }
+        lastCalculatedPixels = calculatedPixels.sum();
+
+        lastDifferentPixels = -1;
+        if (correctnessCheck) {
+            if (bruteForceBuffer == null) {
+                bruteForceBuffer = new FrameBuffer(xResolution, yResolution);
+            }
+            bruteForceBuffer.resize(xResolution, yResolution);
+            mParallelRenderEngine.calcMandelbrotSet(bruteForceBuffer, minReal, maxReal, minImaginary, maxImaginary,
+                    maxIterations, radiusSquared);
+            lastDifferentPixels = FrameBuffer.countDifferentPixels(bruteForceBuffer, frameBuffer);
+        }
+    }
+
+    /**
+     * Task working out the rectangle of pixels [x0, x1] x [y0, y1] (inclusive). Neighbouring rectangles share their
+     * border, so pixels are only calculated the first time they are needed.
+     */
+    private class RectangleTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] mandelbrotData;
+        private final LongAdder calculatedPixels;
+        private final int stride, x0, y0, x1, y1, maxIterations;
+        private final double minReal, realStep, minImaginary, imaginaryStep, radiusSquared;
+
+        RectangleTask(int[] mandelbrotData, int stride, LongAdder calculatedPixels, int x0, int y0, int x1, int y1,
+                      double minReal, double realStep, double minImaginary, double imaginaryStep,
+                      int maxIterations, double radiusSquared){
+            this.mandelbrotData = mandelbrotData;
+            this.stride = stride;
+            this.calculatedPixels = calculatedPixels;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.minReal = minReal;
+            this.realStep = realStep;
+            this.minImaginary = minImaginary;
+            this.imaginaryStep = imaginaryStep;
+            this.maxIterations = maxIterations;
+            this.radiusSquared = radiusSquared;
+        }
+
+        @Override
+        protected void compute() {
+            mParallelRenderEngine.checkCancelled();
+            if (x1 - x0 < MIN_RECTANGLE_SIZE || y1 - y0 < MIN_RECTANGLE_SIZE) {
+                for (int y = y0; y <= y1; y++) {
+                    for (int x = x0; x <= x1; x++) {
+                        pixel(x, y);
+                    }
+                }
+                return;
+            }
+
+            if (isBorderUniform()) {
+                int value = mandelbrotData[y0 * stride + x0];
+                for (int y = y0 + 1; y < y1; y++) {
+                    Arrays.fill(mandelbrotData, y * stride + x0 + 1, y * stride + x1, value);
+                }
+                return;
+            }
+
+            int midX = (x0 + x1) / 2;
+            int midY = (y0 + y1) / 2;
+            invokeAll(split(x0, y0, midX, midY), split(midX, y0, x1, midY),
+                    split(x0, midY, midX, y1), split(midX, midY, x1, y1));
+        }
+
+        /**
+         * Method to check whether every border pixel has the same value, stopping at the first one that differs.
+         */
+        private boolean isBorderUniform() {
+            int value = pixel(x0, y0);
+            for (int x = x0; x <= x1; x++) {
+                if (pixel(x, y0) != value || pixel(x, y1) != value)
+                    return false;
+            }
+            for (int y = y0 + 1; y < y1; y++) {
+                if (pixel(x0, y) != value || pixel(x1, y) != value)
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Method to get the value of a pixel, calculating it if it has not been calculated yet. Two tasks sharing a
+         * border may both calculate the same pixel, which is harmless as they write the same value.
+         */
+        private int pixel(int x, int y) {
+            int value = mandelbrotData[y * stride + x];
+            if (value == NOT_CALCULATED) {
+                value = mMandelbrotCalculator.calcMandel(minReal + x * realStep, minImaginary + y * imaginaryStep,
+                        maxIterations, radiusSquared, Math.min(realStep, imaginaryStep));
+                mandelbrotData[y * stride + x] = value;
+                calculatedPixels.increment();
+            }
+            return value;
+        }
+
+        private RectangleTask split(int fromX, int fromY, int toX, int toY) {
+            return new RectangleTask(mandelbrotData, stride, calculatedPixels, fromX, fromY, toX, toY, minReal, realStep,
+                    minImaginary, imaginaryStep, maxIterations, radiusSquared);
+        }
+    }
+}
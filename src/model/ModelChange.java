@@ -0,0 +1,29 @@
+package model;
+
+/**
+ * The kinds of change the MandelbrotModel passes to its observers through notifyObservers(Object).
+ *
+ * @author Student id: 170024238
+ */
+public enum ModelChange {
+
+    /**
+     * The iteration data has been recalculated, because a parameter of the frame geometry changed.
+     */
+    GEOMETRY,
+
+    /**
+     * The geometry changed and its frame is being calculated in the background; the data is still the previous frame.
+     */
+    RENDERING,
+
+    /**
+     * A coarse pass of the frame being calculated is shown while the finer passes are calculated.
+     */
+    PREVIEW,
+
+    /**
+     * Only presentation settings such as the colour or palette changed; the iteration data is the same.
+     */
+    PRESENTATION
+}
@@ -0,0 +1,169 @@
+package model;
+
+import java.math.BigDecimal;
+
+/**
+ * The PanRenderer class calculates a view which has been panned from the previous frame by whole pixels, keeping its
+ * scale. The previous frame is copied shifted by the pan into the new frame buffer and only the strips of pixels
+ * exposed by the pan are calculated, so a pan costs in proportion to the exposed area.
+ *
+ * Double precision views calculate the exposed pixels with MandelbrotCalculator.calcMandelbrotRow, deep zooms with
+ * PerturbationRenderer.calcExposedPixels, which also reuses the previous reference orbit.
+ *
+ * The kept pixels are those of the previous view, whose points differ from those of the new view by rounding errors
+ * of the bounds only. Their Z are shifted with them, so a double precision pan of a frame which recorded its Z (see
+ * FrameBuffer.setKeepingOrbits) records them too.
+ *
+ * @author Student id: 170024238
+ */
+public class PanRenderer {
+
+    // Largest distance from a whole number of pixels for a change of centre to be taken as a pan
+    private static final double PIXEL_TOLERANCE = 1e-3;
+
+    private ParallelRenderEngine mParallelRenderEngine;
+    private MandelbrotCalculator mMandelbrotCalculator;
+    private PerturbationRenderer mPerturbationRenderer;
+
+    // Number of pixels calculated for the last pan
+    private long lastExposedPixels;
+
+    /**
+     * Constructs a new PanRenderer.
+     *
+     * @param mParallelRenderEngine the engine used to calculate the exposed pixels of double precision views.
+     * @param mPerturbationRenderer the renderer used to calculate the exposed pixels of deep zooms.
+     */
+    public PanRenderer(ParallelRenderEngine mParallelRenderEngine, PerturbationRenderer mPerturbationRenderer){
+        this.mParallelRenderEngine = mParallelRenderEngine;
+        this.mMandelbrotCalculator = mParallelRenderEngine.getMandelbrotCalculator();
+        this.mPerturbationRenderer = mPerturbationRenderer;
+    }
+
+    public long getLastExposedPixels() {
+        return lastExposedPixels;
+    }
+
+    /**
+     * Method to work out by how many pixels the view moved right between two geometries.
+     *
+     * @return the shift in pixels, not necessarily a whole number.
+     */
+    public static double getShiftX(FrameGeometry previousGeometry, FrameGeometry frameGeometry){
+        double realStep = frameGeometry.getRealRange() / frameGeometry.getXResolution();
+        return frameGeometry.getCentreReal().subtract(previousGeometry.getCentreReal()).doubleValue() / realStep;
+    }
+
+    /**
+     * Method to work out by how many pixels the view moved down between two geometries.
+     *
+     * @return the shift in pixels, not necessarily a whole number.
+     */
+    public static double getShiftY(FrameGeometry previousGeometry, FrameGeometry frameGeometry){
+        double imaginaryStep = frameGeometry.getImaginaryRange() / frameGeometry.getYResolution();
+        return frameGeometry.getCentreImaginary().subtract(previousGeometry.getCentreImaginary()).doubleValue() / imaginaryStep;
+    }
+
+    /**
+     * Method to check whether a frame is a pan of the previous frame.
+     *
+     * @param previousGeometry the geometry of the previous frame, may be null.
+     * @param frameGeometry the geometry of the frame to calculate.
+     * @return true if both have the same resolution, scale, maxIterations and radius and the centre moved by a whole
+     * number of pixels, less than the size of the frame.
+     */
+    public static boolean canPan(FrameGeometry previousGeometry, FrameGeometry frameGeometry){
+        if (previousGeometry == null
+                || previousGeometry.getXResolution() != frameGeometry.getXResolution()
+                || previousGeometry.getYResolution() != frameGeometry.getYResolution()
+                || previousGeometry.getMaxIterations() != frameGeometry.getMaxIterations()
+                || Double.compare(previousGeometry.getRealRange(), frameGeometry.getRealRange()) != 0
+                || Double.compare(previousGeometry.getImaginaryRange(), frameGeometry.getImaginaryRange()) != 0
+                || Double.compare(previousGeometry.getRadiusSquared(), frameGeometry.getRadiusSquared()) != 0) {
+            return false;
+        }
+        double shiftX = getShiftX(previousGeometry, frameGeometry);
+        double shiftY = getShiftY(previousGeometry, frameGeometry);
+        return Math.abs(shiftX - Math.rint(shiftX)) < PIXEL_TOLERANCE
+                && Math.abs(shiftY - Math.rint(shiftY)) < PIXEL_TOLERANCE
+                && Math.abs(shiftX) < frameGeometry.getXResolution()
+                && Math.abs(shiftY) < frameGeometry.getYResolution();
+    }
+
+    /**
+     * Methods giving the pixels [exposedFromX, exposedToX) of row y which a pan by (shiftX, shiftY) exposes: the whole
+     * row if the row is new, otherwise the strip on the side the view moved to.
+     */
+    static int exposedFromX(int xResolution, int yResolution, int shiftX, int shiftY, int y){
+        if (y + shiftY < 0 || y + shiftY >= yResolution) {
+            return 0;
+        }
+        return shiftX > 0 ? Math.max(0, xResolution - shiftX) : 0;
+    }
+
+    static int exposedToX(int xResolution, int yResolution, int shiftX, int shiftY, int y){
+        if (y + shiftY < 0 || y + shiftY >= yResolution) {
+            return xResolution;
+        }
+        return shiftX < 0 ? Math.min(xResolution, -shiftX) : (shiftX > 0 ? xResolution : 0);
+    }
+
+    /**
+     * Method to calculate a frame which is a pan of the previous frame, see canPan.
+     *
+     * @param previousFrame the iteration values of the previous frame, which are only read.
+     * @param previousGeometry the geometry of the previous frame.
+     * @param frameBuffer the buffer receiving the iteration values of the new frame.
+     * @param frameGeometry the geometry of the new frame.
+     */
+    public void calcMandelbrotSet(FrameBuffer previousFrame, FrameGeometry previousGeometry, final FrameBuffer frameBuffer, FrameGeometry frameGeometry){
+        final int shiftX = (int) Math.rint(getShiftX(previousGeometry, frameGeometry));
+        final int shiftY = (int) Math.rint(getShiftY(previousGeometry, frameGeometry));
+        final int xResolution = frameGeometry.getXResolution();
+        final int yResolution = frameGeometry.getYResolution();
+        frameBuffer.copyShifted(previousFrame, shiftX, shiftY);
+        frameBuffer.copyOrbitsShifted(previousFrame, shiftX, shiftY);
+        lastExposedPixels = (long) xResolution * yResolution
+                - (long) (xResolution - Math.abs(shiftX)) * (yResolution - Math.abs(shiftY));
+
+        if (frameGeometry.isDeepZoom()) {
+            mPerturbationRenderer.calcExposedPixels(frameBuffer, frameGeometry.getCentreReal(), frameGeometry.getCentreImaginary(),
+                    frameGeometry.getRealRange(), frameGeometry.getImaginaryRange(), frameGeometry.getMaxIterations(),
+                    frameGeometry.getRadiusSquared(), shiftX, shiftY);
+            // perturbation does not give the Z of the exposed pixels
+            frameBuffer.clearOrbits();
+            return;
+        }
+
+        final double minReal = frameGeometry.getMinReal();
+        final double minImaginary = frameGeometry.getMinImaginary();
+        final double realStep = (frameGeometry.getMaxReal() - minReal)/xResolution;
+        final double imaginaryStep = (frameGeometry.getMaxImaginary() - minImaginary)/yResolution;
+        final int maxIterations = frameGeometry.getMaxIterations();
+        final double radiusSquared = frameGeometry.getRadiusSquared();
+        mParallelRenderEngine.calcRows(frameBuffer, new ParallelRenderEngine.RowKernel() {
+            @Override
+            public long calcRow(int[] rowData, int offset, int y) {
+                double cImaginary = minImaginary + y * imaginaryStep;
+                return mMandelbrotCalculator.calcMandelbrotRow(frameBuffer, y,
+                        exposedFromX(xResolution, yResolution, shiftX, shiftY, y),
+                        exposedToX(xResolution, yResolution, shiftX, shiftY, y),
+                        minReal, realStep, cImaginary, maxIterations, radiusSquared);
+            }
+        });
+    }
+
+    /**
+     * Method to work out the bounds and centre of a view panned by whole pixels, keeping the arbitrary precision of
+     * the centre.
+     *
+     * @param centre the centre of the view on one axis.
+     * @param range the size of the view on that axis.
+     * @param resolution the number of pixels on that axis.
+     * @param pixels the number of pixels to pan by.
+     * @return the new centre.
+     */
+    public static BigDecimal panCentre(BigDecimal centre, double range, int resolution, int pixels){
+        return centre.add(new BigDecimal(pixels * (range / resolution)));
+    }
+}
@@ -0,0 +1,304 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The ParallelRenderEngine class calculates the Mandelbrot set on all available cores.
+ *
+ * The frame is split into bands of rows which are computed as tasks on a work-stealing ForkJoinPool. Rows which cross
+ * the interior of the set cost up to maxIterations times more than rows outside it, so the bands are not split by row
+ * count but by the cost measured for each row in the previous frame. Consecutive frames (zoom animations, undo/redo,
+ * iteration updates) usually look alike, so the measured cost is a good estimate and work stealing absorbs the rest.
+ *
+ * Every row is calculated by MandelbrotCalculator.calcMandelbrotRow, so the result is exactly the same values that
+ * MandelbrotCalculator.calcMandelbrotSet returns for the same parameters.
+ *
+ * A render can be stopped by setting a RenderCancellation, which is checked before every row. Once it reports the
+ * render as cancelled the remaining rows are skipped and a CancellationException is thrown. Likewise the rows are timed
+ * into a RenderMetrics while one is set.
+ *
+ * Example usage -- To obtain the initial 800x800 Mandelbrot set on 4 threads
+ *
+ * ParallelRenderEngine engine = new ParallelRenderEngine(new MandelbrotCalculator(), 4);
+ * FrameBuffer mandelbrotData = new FrameBuffer(800, 800);
+ * engine.calcMandelbrotSet(mandelbrotData, MandelbrotCalculator.INITIAL_MIN_REAL, MandelbrotCalculator.INITIAL_MAX_REAL, MandelbrotCalculator.INITIAL_MIN_IMAGINARY, MandelbrotCalculator.INITIAL_MAX_IMAGINARY, MandelbrotCalculator.INITIAL_MAX_ITERATIONS, MandelbrotCalculator.DEFAULT_RADIUS_SQUARED);
+ *
+ * @author Student id: 170024238
+ */
+public class ParallelRenderEngine implements RenderStrategy {
+
+    // Default number of worker threads, one per available core
+    protected static final int DEFAULT_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+    // Number of bands handed to each thread, so work stealing has something to balance with
+    private static final int BANDS_PER_THREAD = 8;
+
+    private MandelbrotCalculator mMandelbrotCalculator;
+    // Pool running the tasks of new renders, the renders still running on each pool, and the pools replaced while
+    // renders were running on them, which are shut down once those are done
+    private ForkJoinPool forkJoinPool;
+    private final Map<ForkJoinPool, Integer> activeRenders = new HashMap<>();
+    private final Set<ForkJoinPool> replacedPools = new HashSet<>();
+    private int threadCount;
+
+    // Cost of each row (iterations plus one per pixel) measured while calculating the previous frame
+    private long[] measuredRowCosts;
+    // Check made before every row, null if renders cannot be cancelled
+    private volatile RenderCancellation renderCancellation;
+    // Metrics receiving the time of every row, null if the rows are not timed
+    private volatile RenderMetrics renderMetrics;
+
+    /**
+     * Constructs a new ParallelRenderEngine using one thread per available core.
+     *
+     * @param mMandelbrotCalculator the calculator used to work out the iteration value of every row.
+     */
+    public ParallelRenderEngine(MandelbrotCalculator mMandelbrotCalculator){
+        this(mMandelbrotCalculator, DEFAULT_THREAD_COUNT);
+    }
+
+    /**
+     * Constructs a new ParallelRenderEngine with the given number of threads.
+     *
+     * @param mMandelbrotCalculator the calculator used to work out the iteration value of every row.
+     * @param threadCount the number of worker threads of the ForkJoinPool.
+     */
+    public ParallelRenderEngine(MandelbrotCalculator mMandelbrotCalculator, int threadCount){
+        this.mMandelbrotCalculator = mMandelbrotCalculator;
+        setThreadCount(threadCount);
+    }
+
+    public MandelbrotCalculator getMandelbrotCalculator() {
+        return mMandelbrotCalculator;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Method to run a task on the engine's pool and wait for it, shared with other strategies built on top of the
+     * engine. The pool is kept running until the task is done, even if the thread count is changed meanwhile.
+     *
+     * @param task the task to run.
+     */
+    void invoke(ForkJoinTask<?> task) {
+        ForkJoinPool pool = acquireForkJoinPool();
+        try {
+            pool.invoke(task);
+        } finally {
+            releaseForkJoinPool(pool);
+        }
+    }
+
+    private synchronized ForkJoinPool acquireForkJoinPool() {
+        Integer renders = activeRenders.get(forkJoinPool);
+        activeRenders.put(forkJoinPool, renders == null ? 1 : renders + 1);
+        return forkJoinPool;
+    }
+
+    private synchronized void releaseForkJoinPool(ForkJoinPool pool) {
+        int renders = activeRenders.get(pool) - 1;
+        if (renders > 0) {
+            activeRenders.put(pool, renders);
+        } else {
+            activeRenders.remove(pool);
+            if (replacedPools.remove(pool)) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Method to change the number of worker threads. The renders started afterwards use a new pool, and the previous
+     * pool is shut down once the renders running on it are done.
+     *
+     * @param threadCount the number of worker threads, must be at least 1.
+     */
+    public synchronized void setThreadCount(int threadCount) {
+        if (threadCount < 1){
+            throw new IllegalArgumentException("Thread count must be at least 1 but was " + threadCount);
+        }
+        ForkJoinPool previousPool = forkJoinPool;
+        this.threadCount = threadCount;
+        this.forkJoinPool = new ForkJoinPool(threadCount);
+        if (previousPool != null){
+            if (activeRenders.containsKey(previousPool)) {
+                replacedPools.add(previousPool);
+            } else {
+                previousPool.shutdown();
+            }
+        }
+    }
+
+    public RenderCancellation getRenderCancellation() {
+        return renderCancellation;
+    }
+
+    /**
+     * Method to set the check made by this engine, and the strategies built on top of it, while calculating a frame.
+     *
+     * @param renderCancellation the check, or null for renders that cannot be cancelled.
+     */
+    public void setRenderCancellation(RenderCancellation renderCancellation) {
+        this.renderCancellation = renderCancellation;
+    }
+
+    public RenderMetrics getRenderMetrics() {
+        return renderMetrics;
+    }
+
+    /**
+     * Method to time the rows calculated by this engine, and the strategies built on top of it.
+     *
+     * @param renderMetrics the metrics receiving the time of every row, or null to stop timing the rows.
+     */
+    public void setRenderMetrics(RenderMetrics renderMetrics) {
+        this.renderMetrics = renderMetrics;
+    }
+
+    /**
+     * Method to stop the current render if it has been cancelled.
+     *
+     * @throws CancellationException if the render cancellation reports the render as cancelled.
+     */
+    void checkCancelled(){
+        RenderCancellation cancellation = renderCancellation;
+        if (cancellation != null && cancellation.isCancelled()){
+            throw new CancellationException("Render cancelled");
+        }
+    }
+
+    /**
+     * Method to calculate the Mandelbrot set for the given parameter settings in parallel.
+     * The parameters are the same as for MandelbrotCalculator.calcMandelbrotSet and so is the result.
+     *
+     * @param frameBuffer the buffer receiving the iteration value of every pixel, and their fractions if it is fractional.
+     * @param minReal the lower real bound for the complex constant C
+     * @param maxReal the upper real bound for the complex constant C
+     * @param minImaginary the lower imaginary bound for the complex constant C
+     * @param maxImaginary the upper imaginary bound for the complex constant C
+     * @param maxIterations the maximum number of iterations to iterate the complex formula
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     */
+    @Override
+    public void calcMandelbrotSet(final FrameBuffer frameBuffer, final double minReal, double maxReal, final double minImaginary, double maxImaginary, final int maxIterations, final double radiusSquared){
+        final int xResolution = frameBuffer.getWidth();
+        final double realStep = (maxReal - minReal)/xResolution;
+        final double imaginaryStep = (maxImaginary - minImaginary)/frameBuffer.getHeight();
+
+        calcRows(frameBuffer, new RowKernel() {
+            @Override
+            public long calcRow(int[] rowData, int offset, int y) {
+                double cImaginary = minImaginary + y * imaginaryStep;
+                return mMandelbrotCalculator.calcMandelbrotRow(frameBuffer, y, 0, xResolution, minReal, realStep,
+                        cImaginary, maxIterations, radiusSquared);
+            }
+        });
+    }
+
+    /**
+     * Method to calculate every row of a frame in parallel with the given kernel, balancing the bands by the row costs
+     * measured in the previous frame. This is shared by every strategy that works row by row.
+     *
+     * @param frameBuffer the buffer whose rows are filled in by the kernel.
+     * @param rowKernel the kernel calculating a single row.
+     * @throws CancellationException if the render was cancelled before all rows were calculated.
+     */
+    void calcRows(FrameBuffer frameBuffer, RowKernel rowKernel){
+        int yResolution = frameBuffer.getHeight();
+
+        // cumulative estimated cost, estimatedCost[y] being the cost of all rows before y
+        long[] estimatedCost = new long[yResolution + 1];
+        long[] previousRowCosts = measuredRowCosts;
+        for (int y = 0; y < yResolution; y++) {
+            long rowCost = (previousRowCosts != null && previousRowCosts.length == yResolution) ? previousRowCosts[y] : 1;
+            estimatedCost[y + 1] = estimatedCost[y] + Math.max(1, rowCost);
+        }
+        long bandCost = Math.max(1, estimatedCost[yResolution] / ((long) threadCount * BANDS_PER_THREAD));
+
+        long[] rowCosts = new long[yResolution];
+        invoke(new RowBandTask(frameBuffer, rowCosts, estimatedCost, bandCost, 0, yResolution, rowKernel));
+
+        measuredRowCosts = rowCosts;
+    }
+
+    /**
+     * A kernel calculating one row of a frame, used by calcRows.
+     */
+    interface RowKernel {
+
+        /**
+         * Method to calculate the iteration value of every pixel of a row.
+         *
+         * @param rowData the array receiving the iteration value for each x pixel of the row.
+         * @param offset the index in rowData of the first pixel of the row.
+         * @param y the index of the row.
+         * @return the total number of iterations performed for the row.
+         */
+        long calcRow(int[] rowData, int offset, int y);
+    }
+
+    /**
+     * Task calculating the rows [fromRow, toRow) of the frame. A band whose estimated cost is above the band cost is
+     * split in two halves of equal estimated cost, and both halves are forked.
+     */
+    private class RowBandTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FrameBuffer frameBuffer;
+        private final long[] rowCosts, estimatedCost;
+        private final long bandCost;
+        private final int fromRow, toRow;
+        private final RowKernel rowKernel;
+
+        RowBandTask(FrameBuffer frameBuffer, long[] rowCosts, long[] estimatedCost, long bandCost, int fromRow, int toRow,
+                    RowKernel rowKernel){
+            this.frameBuffer = frameBuffer;
+            this.rowCosts = rowCosts;
+            this.estimatedCost = estimatedCost;
+            this.bandCost = bandCost;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.rowKernel = rowKernel;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow > 1 && estimatedCost[toRow] - estimatedCost[fromRow] > bandCost){
+                // find the row where half of the band's estimated cost has been spent
+                long halfCost = estimatedCost[fromRow] + (estimatedCost[toRow] - estimatedCost[fromRow]) / 2;
+                int splitRow = Arrays.binarySearch(estimatedCost, fromRow, toRow + 1, halfCost);
+                if (splitRow < 0){
+                    splitRow = -splitRow - 1;
+                }
+                splitRow = Math.max(fromRow + 1, Math.min(toRow - 1, splitRow));
+
+                invokeAll(split(fromRow, splitRow), split(splitRow, toRow));
+                return;
+            }
+            RenderMetrics metrics = renderMetrics;
+            for (int y = fromRow; y < toRow; y++) {
+                checkCancelled();
+                long rowStart = metrics != null ? System.nanoTime() : 0;
+                rowCosts[y] = frameBuffer.getWidth() + rowKernel.calcRow(frameBuffer.getData(), frameBuffer.getOffset(y), y);
+                if (metrics != null) {
+                    metrics.recordRow(System.nanoTime() - rowStart);
+                }
+            }
+        }
+
+        private RowBandTask split(int from, int to){
+            return new RowBandTask(frameBuffer, rowCosts, estimatedCost, bandCost, from, to, rowKernel);
+        }
+    }
+}
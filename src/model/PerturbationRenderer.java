@@ -0,0 +1,459 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * The PerturbationRenderer class calculates deep zooms of the Mandelbrot set, where the view is too small for the
+ * pixel coordinates to be told apart as doubles (a view width below about 1e-13).
+ *
+ * A single reference orbit Z_n is calculated in arbitrary precision (BigDecimal) at the centre C of the view. Every
+ * pixel c = C + dc is then iterated in double precision as the difference dz_n = z_n - Z_n from the reference orbit:
+ *
+ *    dz_n+1 = 2 * Z_n * dz_n + dz_n^2 + dc
+ *
+ * The difference dz stays small, so doubles are precise enough even when dc is 1e-200. When the full value z_n gets
+ * smaller than dz_n, or the reference orbit escapes before the pixel does, the difference has lost precision (a
+ * "glitch"). The pixel is then rebased onto the start of the reference orbit (dz = z_n, Z = Z_0 = 0), which keeps
+ * the result correct without needing a second reference orbit.
+ *
+ * At deep zooms every pixel repeats thousands of near-identical early iterations. With series approximation on, dz_n
+ * is approximated for the whole frame at once by a truncated polynomial in dc,
+ *
+ *    dz_n ~ A_n * dc + B_n * dc^2 + C_n * dc^3
+ *
+ * whose coefficients follow the reference orbit. Every pixel then starts iterating at the last n where the cubic term
+ * is still negligible, skipping the first n iterations.
+ *
+ * The offsets dc are doubles, so views are supported down to a width of about 1e-290, where doubles underflow.
+ *
+ * @author Student id: 170024238
+ */
+public class PerturbationRenderer implements RenderStrategy {
+
+    // View width below which the doubles of the other strategies can no longer resolve the pixels
+    protected static final double DEEP_ZOOM_RANGE = 1e-13;
+    // Decimal digits kept in the reference orbit on top of those needed to tell pixels apart
+    private static final int EXTRA_PRECISION_DIGITS = 20;
+    // Largest size of the cubic term of the series, relative to the linear term, for the series to be used
+    private static final double SERIES_TOLERANCE = 1e-12;
+    // Largest distance, in view sizes, from the reference orbit of the last frame for a panned view to reuse it
+    private static final double REFERENCE_REUSE_RANGES = 2;
+
+    private ParallelRenderEngine mParallelRenderEngine;
+
+    // Mode to skip the first iterations of every pixel with the series approximation
+    private boolean seriesApproximation = true;
+
+    private int lastReferenceIterations;
+    // Reference orbit of the last frame, kept to be reused when the view is panned
+    private ReferenceOrbit lastReferenceOrbit;
+    private BigDecimal lastReferenceReal, lastReferenceImaginary;
+    private double lastReferencePixelSize, lastReferenceRadiusSquared;
+    private int lastReferenceMaxIterations;
+    private long lastRebasedPixels;
+    private int lastSeriesIterations;
+    private long lastSkippedIterations;
+
+    /**
+     * Constructs a new PerturbationRenderer running on the pool of the given engine.
+     *
+     * @param mParallelRenderEngine the engine used to calculate the rows of the frame in parallel.
+     */
+    public PerturbationRenderer(ParallelRenderEngine mParallelRenderEngine){
+        this.mParallelRenderEngine = mParallelRenderEngine;
+    }
+
+    /**
+     * @return the length of the reference orbit of the last frame.
+     */
+    public int getLastReferenceIterations() {
+        return lastReferenceIterations;
+    }
+
+    /**
+     * @return the number of times a pixel was rebased onto the reference orbit in the last frame.
+     */
+    public long getLastRebasedPixels() {
+        return lastRebasedPixels;
+    }
+
+    public boolean isSeriesApproximation() {
+        return seriesApproximation;
+    }
+
+    public void setSeriesApproximation(boolean seriesApproximation) {
+        this.seriesApproximation = seriesApproximation;
+    }
+
+    /**
+     * @return the number of iterations the series approximation let every pixel of the last frame skip.
+     */
+    public int getLastSeriesIterations() {
+        return lastSeriesIterations;
+    }
+
+    /**
+     * @return the total number of iterations skipped over all pixels of the last frame.
+     */
+    public long getLastSkippedIterations() {
+        return lastSkippedIterations;
+    }
+
+    /**
+     * Method to check whether a view is too deep for the double precision strategies.
+     *
+     * @param realRange the width of the view on the real axis.
+     * @param imaginaryRange the height of the view on the imaginary axis.
+     * @return true if the view should be calculated by perturbation.
+     */
+    public static boolean isDeepZoom(double realRange, double imaginaryRange){
+        return realRange < DEEP_ZOOM_RANGE || imaginaryRange < DEEP_ZOOM_RANGE;
+    }
+
+    @Override
+    public void calcMandelbrotSet(FrameBuffer frameBuffer, double minReal, double maxReal, double minImaginary, double maxImaginary, int maxIterations, double radiusSquared){
+        BigDecimal centreReal = new BigDecimal(minReal).add(new BigDecimal(maxReal)).divide(BigDecimal.valueOf(2));
+        BigDecimal centreImaginary = new BigDecimal(minImaginary).add(new BigDecimal(maxImaginary)).divide(BigDecimal.valueOf(2));
+        calcMandelbrotSet(frameBuffer, centreReal, centreImaginary, maxReal - minReal,
+                maxImaginary - minImaginary, maxIterations, radiusSquared);
+    }
+
+    /**
+     * Method to calculate the Mandelbrot set for a view given by its centre in arbitrary precision.
+     * Pixel (x, y) is the point centre + (x * realStep - realRange / 2, y * imaginaryStep - imaginaryRange / 2),
+     * the same mapping as the other strategies use from the view's lower bounds.
+     *
+     * @param frameBuffer the buffer receiving the iteration value of every pixel.
+     * @param centreReal the real component of the centre of the view.
+     * @param centreImaginary the imaginary component of the centre of the view.
+     * @param realRange the width of the view on the real axis.
+     * @param imaginaryRange the height of the view on the imaginary axis.
+     * @param maxIterations the maximum number of iterations to iterate the complex formula
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     */
+    public void calcMandelbrotSet(FrameBuffer frameBuffer, BigDecimal centreReal, BigDecimal centreImaginary,
+                                     double realRange, double imaginaryRange, int maxIterations, double radiusSquared){
+        // a shift by the full height exposes every row
+        calcExposedPixels(frameBuffer, centreReal, centreImaginary, realRange, imaginaryRange, maxIterations,
+                radiusSquared, 0, frameBuffer.getHeight());
+    }
+
+    /**
+     * Method to calculate the pixels of a panned view which were not in the previous view. The frame buffer holds the
+     * previous frame shifted by (shiftX, shiftY) pixels, pixel (x, y) having the value of pixel (x + shiftX,
+     * y + shiftY) of the previous frame, and only the pixels outside the previous frame are calculated; see
+     * PanRenderer.
+     *
+     * The reference orbit of the previous frame is reused when it has the same maxIterations and pixel size and its
+     * centre is within REFERENCE_REUSE_RANGES view sizes, the offsets dc then being taken from that centre. This makes
+     * the cost of a pan proportional to the exposed area, not to the arbitrary precision orbit.
+     *
+     * @param frameBuffer the buffer holding the shifted previous frame, receiving the exposed pixels.
+     * @param centreReal the real component of the centre of the new view.
+     * @param centreImaginary the imaginary component of the centre of the new view.
+     * @param realRange the width of the view on the real axis.
+     * @param imaginaryRange the height of the view on the imaginary axis.
+     * @param maxIterations the maximum number of iterations to iterate the complex formula
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     * @param shiftX the number of pixels the view moved right.
+     * @param shiftY the number of pixels the view moved down.
+     */
+    public void calcExposedPixels(FrameBuffer frameBuffer, BigDecimal centreReal, BigDecimal centreImaginary,
+                                  final double realRange, final double imaginaryRange, final int maxIterations, final double radiusSquared,
+                                  final int shiftX, final int shiftY){
+        final int xResolution = frameBuffer.getWidth();
+        final int yResolution = frameBuffer.getHeight();
+        final double realStep = realRange / xResolution;
+        final double imaginaryStep = imaginaryRange / yResolution;
+        double pixelSize = Math.min(realStep, imaginaryStep);
+
+        boolean fullFrame = shiftY >= yResolution;
+        if (fullFrame || !canReuseReference(centreReal, centreImaginary, realRange, imaginaryRange, pixelSize, maxIterations, radiusSquared)) {
+            lastReferenceOrbit = calcReferenceOrbit(centreReal, centreImaginary, pixelSize, maxIterations, radiusSquared);
+            lastReferenceReal = centreReal;
+            lastReferenceImaginary = centreImaginary;
+            lastReferencePixelSize = pixelSize;
+            lastReferenceMaxIterations = maxIterations;
+            lastReferenceRadiusSquared = radiusSquared;
+        }
+        final ReferenceOrbit referenceOrbit = lastReferenceOrbit;
+        // offset of the centre of the view from the reference, 0 unless the reference is reused
+        final double offsetReal = centreReal.subtract(lastReferenceReal).doubleValue();
+        final double offsetImaginary = centreImaginary.subtract(lastReferenceImaginary).doubleValue();
+
+        // every offset dc is scaled by the distance from the reference to the farthest corner, so that |dc / seriesScale| <= 1
+        final double seriesScale = Math.hypot(Math.abs(offsetReal) + realRange / 2, Math.abs(offsetImaginary) + imaginaryRange / 2);
+        final SeriesApproximation series = seriesApproximation
+                ? calcSeriesApproximation(referenceOrbit, seriesScale, maxIterations, radiusSquared)
+                : new SeriesApproximation();
+        final long[] rebasedPixels = new long[yResolution];
+        final long[] skippedIterations = new long[yResolution];
+        final char[] fractions = frameBuffer.getFractions();
+
+        mParallelRenderEngine.calcRows(frameBuffer, new ParallelRenderEngine.RowKernel() {
+            @Override
+            public long calcRow(int[] rowData, int offset, int y) {
+                double dcImaginary = y * imaginaryStep - imaginaryRange / 2 + offsetImaginary;
+                long rowIterations = 0;
+                int toX = PanRenderer.exposedToX(xResolution, yResolution, shiftX, shiftY, y);
+                for (int x = PanRenderer.exposedFromX(xResolution, yResolution, shiftX, shiftY, y); x < toX; x++) {
+                    double dcReal = x * realStep - realRange / 2 + offsetReal;
+                    int iterations = calcPerturbed(referenceOrbit, series, dcReal / seriesScale, dcImaginary / seriesScale,
+                            dcReal, dcImaginary, maxIterations, radiusSquared, rebasedPixels, skippedIterations, y,
+                            fractions, offset + x);
+                    rowData[offset + x] = iterations;
+                    rowIterations += iterations;
+                }
+                return rowIterations;
+            }
+        });
+
+        long rebased = 0;
+        long skipped = 0;
+        for (int y = 0; y < yResolution; y++) {
+            rebased += rebasedPixels[y];
+            skipped += skippedIterations[y];
+        }
+        lastRebasedPixels = rebased;
+        lastSkippedIterations = skipped;
+        lastSeriesIterations = series.iterations;
+        lastReferenceIterations = referenceOrbit.length;
+    }
+
+    /**
+     * @return true if the reference orbit of the last frame can be reused for the given view, see calcExposedPixels.
+     */
+    private boolean canReuseReference(BigDecimal centreReal, BigDecimal centreImaginary, double realRange, double imaginaryRange,
+                                      double pixelSize, int maxIterations, double radiusSquared){
+        return lastReferenceOrbit != null
+                && lastReferenceMaxIterations == maxIterations
+                && lastReferencePixelSize == pixelSize
+                && lastReferenceRadiusSquared == radiusSquared
+                && Math.abs(centreReal.subtract(lastReferenceReal).doubleValue()) <= REFERENCE_REUSE_RANGES * realRange
+                && Math.abs(centreImaginary.subtract(lastReferenceImaginary).doubleValue()) <= REFERENCE_REUSE_RANGES * imaginaryRange;
+    }
+
+    /**
+     * Method to work out the coefficients of the series approximation along the reference orbit. With every offset
+     * written as dc = u * scale, the scaled coefficients a_n = A_n * scale, b_n = B_n * scale^2, c_n = C_n * scale^3
+     * follow
+     *
+     *    a_n+1 = 2 * Z_n * a_n + scale
+     *    b_n+1 = 2 * Z_n * b_n + a_n^2
+     *    c_n+1 = 2 * Z_n * c_n + 2 * a_n * b_n
+     *
+     * and stay in double range however small the scale is. As |u| <= 1, the error of the series is bounded by the
+     * size of the dropped terms, so the series is used up to the last n where |c_n| is below SERIES_TOLERANCE * |a_n|.
+     * It also stops before any corner of the frame escapes or would be rebased, as those pixels need every iteration.
+     *
+     * @param orbit the reference orbit at the centre of the frame.
+     * @param scale the distance from the centre to the corners of the frame.
+     * @param maxIterations the maximum number of iterations.
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     * @return the coefficients at the number of iterations every pixel can skip.
+     */
+    protected static SeriesApproximation calcSeriesApproximation(ReferenceOrbit orbit, double scale, int maxIterations, double radiusSquared){
+        SeriesApproximation series = new SeriesApproximation();
+        double ar = 0, ai = 0, br = 0, bi = 0, cr = 0, ci = 0;
+        double[][] corners = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+        double cornerScale = Math.sqrt(0.5);
+
+        for (int n = 0; n < maxIterations - 1 && n < orbit.length - 1; n++) {
+            double zr = orbit.zr[n];
+            double zi = orbit.zi[n];
+            double nar = 2 * (zr * ar - zi * ai) + scale;
+            double nai = 2 * (zr * ai + zi * ar);
+            double nbr = 2 * (zr * br - zi * bi) + ar * ar - ai * ai;
+            double nbi = 2 * (zr * bi + zi * br) + 2 * ar * ai;
+            double ncr = 2 * (zr * cr - zi * ci) + 2 * (ar * br - ai * bi);
+            double nci = 2 * (zr * ci + zi * cr) + 2 * (ar * bi + ai * br);
+            ar = nar; ai = nai; br = nbr; bi = nbi; cr = ncr; ci = nci;
+
+            if (Math.hypot(cr, ci) > SERIES_TOLERANCE * Math.hypot(ar, ai) || Double.isNaN(ar + br + cr))
+                break;
+
+            boolean cornersValid = true;
+            for (double[] corner : corners) {
+                double ur = corner[0] * cornerScale;
+                double ui = corner[1] * cornerScale;
+                double dzr = evaluateReal(ar, ai, br, bi, cr, ci, ur, ui);
+                double dzi = evaluateImaginary(ar, ai, br, bi, cr, ci, ur, ui);
+                double fullZr = orbit.zr[n + 1] + dzr;
+                double fullZi = orbit.zi[n + 1] + dzi;
+                double magnitude = fullZr * fullZr + fullZi * fullZi;
+                if (magnitude > radiusSquared || magnitude < dzr * dzr + dzi * dzi) {
+                    cornersValid = false;
+                    break;
+                }
+            }
+            if (!cornersValid)
+                break;
+
+            series.iterations = n + 1;
+            series.ar = ar; series.ai = ai;
+            series.br = br; series.bi = bi;
+            series.cr = cr; series.ci = ci;
+        }
+        return series;
+    }
+
+    /**
+     * Methods to evaluate the real and imaginary parts of a * u + b * u^2 + c * u^3 for complex a, b, c and u.
+     */
+    private static double evaluateReal(double ar, double ai, double br, double bi, double cr, double ci, double ur, double ui){
+        double u2r = ur * ur - ui * ui;
+        double u2i = 2 * ur * ui;
+        double u3r = u2r * ur - u2i * ui;
+        double u3i = u2r * ui + u2i * ur;
+        return (ar * ur - ai * ui) + (br * u2r - bi * u2i) + (cr * u3r - ci * u3i);
+    }
+
+    private static double evaluateImaginary(double ar, double ai, double br, double bi, double cr, double ci, double ur, double ui){
+        double u2r = ur * ur - ui * ui;
+        double u2i = 2 * ur * ui;
+        double u3r = u2r * ur - u2i * ui;
+        double u3i = u2r * ui + u2i * ur;
+        return (ar * ui + ai * ur) + (br * u2i + bi * u2r) + (cr * u3i + ci * u3r);
+    }
+
+    /**
+     * Method to calculate the reference orbit Z_n+1 = Z_n^2 + C for Z_0 = 0 in arbitrary precision, storing every Z_n
+     * rounded to double. The orbit stops after maxIterations or as soon as it escapes the radius.
+     *
+     * @param centreReal the real component of C.
+     * @param centreImaginary the imaginary component of C.
+     * @param pixelSize the distance between neighbouring pixels, which decides the precision needed.
+     * @param maxIterations the maximum length of the orbit.
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     * @return the reference orbit.
+     */
+    protected ReferenceOrbit calcReferenceOrbit(BigDecimal centreReal, BigDecimal centreImaginary, double pixelSize,
+                                                int maxIterations, double radiusSquared){
+        int digits = EXTRA_PRECISION_DIGITS + Math.max(0, (int) Math.ceil(-Math.log10(pixelSize)));
+        MathContext mathContext = new MathContext(digits);
+        BigDecimal two = BigDecimal.valueOf(2);
+
+        ReferenceOrbit orbit = new ReferenceOrbit(maxIterations + 1);
+        BigDecimal zr = BigDecimal.ZERO;
+        BigDecimal zi = BigDecimal.ZERO;
+        for (int n = 0; n <= maxIterations; n++) {
+            // the arbitrary precision orbit of a deep zoom can take seconds on its own
+            if ((n & 0xff) == 0) {
+                mParallelRenderEngine.checkCancelled();
+            }
+            double zrDouble = zr.doubleValue();
+            double ziDouble = zi.doubleValue();
+            orbit.zr[n] = zrDouble;
+            orbit.zi[n] = ziDouble;
+            orbit.length = n + 1;
+            if (zrDouble * zrDouble + ziDouble * ziDouble > radiusSquared)
+                break;
+            BigDecimal nzr = zr.multiply(zr, mathContext).subtract(zi.multiply(zi, mathContext), mathContext).add(centreReal, mathContext);
+            BigDecimal nzi = two.multiply(zr, mathContext).multiply(zi, mathContext).add(centreImaginary, mathContext);
+            zr = nzr;
+            zi = nzi;
+        }
+        return orbit;
+    }
+
+    /**
+     * Method which calculates the iteration value of the pixel C + dc from the reference orbit at C. The value is the
+     * same as calcMandel returns: the number of iterations until the square of the length of z_n exceeded the radius,
+     * counting the one in which it did, or maxIterations if it never escaped.
+     *
+     * @param orbit the reference orbit at C.
+     * @param series the series approximation for the frame, used to start at iteration series.iterations.
+     * @param ur the real component of the pixel's scaled offset dc / scale, used to evaluate the series.
+     * @param ui the imaginary component of the pixel's scaled offset dc / scale.
+     * @param dcReal the real component of the pixel's offset from C.
+     * @param dcImaginary the imaginary component of the pixel's offset from C.
+     * @param maxIterations the maximum number of iterations.
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     * @param rebasedPixels per-row count of rebases, incremented at index y.
+     * @param skippedIterations per-row count of iterations skipped by the series, incremented at index y.
+     * @param y the row of the pixel.
+     * @param fractions the array receiving the fraction of the iteration at which the pixel escaped, or null.
+     * @param index the index of the pixel in the fractions array.
+     * @return the number of iterations for the value of z to grow outside of the bounding radius, or maxIterations.
+     */
+    private static int calcPerturbed(ReferenceOrbit orbit, SeriesApproximation series, double ur, double ui,
+                                     double dcReal, double dcImaginary, int maxIterations, double radiusSquared,
+                                     long[] rebasedPixels, long[] skippedIterations, int y, char[] fractions, int index){
+        double dzr = 0;
+        double dzi = 0;
+        int referenceIteration = 0;
+        int iterations = 0;
+        if (series.iterations > 0) {
+            double seriesDzr = evaluateReal(series.ar, series.ai, series.br, series.bi, series.cr, series.ci, ur, ui);
+            double seriesDzi = evaluateImaginary(series.ar, series.ai, series.br, series.bi, series.cr, series.ci, ur, ui);
+            double zr = orbit.zr[series.iterations] + seriesDzr;
+            double zi = orbit.zi[series.iterations] + seriesDzi;
+            // pixels escaping inside the skipped iterations are iterated from the start instead
+            if (zr * zr + zi * zi <= radiusSquared) {
+                dzr = seriesDzr;
+                dzi = seriesDzi;
+                referenceIteration = series.iterations;
+                iterations = series.iterations;
+                skippedIterations[y] += series.iterations;
+            }
+        }
+        while (iterations < maxIterations) {
+            double zr = orbit.zr[referenceIteration] + dzr;
+            double zi = orbit.zi[referenceIteration] + dzi;
+            double zMagnitude = zr * zr + zi * zi;
+            if (zMagnitude > radiusSquared) {
+                if (fractions != null) {
+                    // Z_1 of the reference is its C, to which dc is added; the rounding only affects how Z grows on
+                    double cReal = orbit.zr[1] + dcReal;
+                    double cImaginary = orbit.zi[1] + dcImaginary;
+                    fractions[index] = MandelbrotCalculator.escapeFraction(zr * zr - zi * zi + cReal, 2 * zr * zi + cImaginary,
+                            cReal, cImaginary, radiusSquared);
+                }
+                return iterations + 1;
+            }
+
+            // glitch: the difference is bigger than the value itself, or the reference orbit ran out
+            if (zMagnitude < dzr * dzr + dzi * dzi || referenceIteration == orbit.length - 1) {
+                dzr = zr;
+                dzi = zi;
+                referenceIteration = 0;
+                rebasedPixels[y]++;
+            }
+
+            // dz_n+1 = 2 * Z_n * dz_n + dz_n^2 + dc
+            double referenceZr = orbit.zr[referenceIteration];
+            double referenceZi = orbit.zi[referenceIteration];
+            double ndzr = 2 * (referenceZr * dzr - referenceZi * dzi) + dzr * dzr - dzi * dzi + dcReal;
+            double ndzi = 2 * (referenceZr * dzi + referenceZi * dzr) + 2 * dzr * dzi + dcImaginary;
+            dzr = ndzr;
+            dzi = ndzi;
+            referenceIteration++;
+            iterations++;
+        }
+        return iterations;
+    }
+
+    /**
+     * The scaled coefficients of the series approximation after the given number of iterations. With no
+     * iterations, the series is not used.
+     */
+    protected static class SeriesApproximation {
+        int iterations;
+        double ar, ai, br, bi, cr, ci;
+    }
+
+    /**
+     * The reference orbit Z_0 .. Z_length-1 rounded to doubles.
+     */
+    protected static class ReferenceOrbit {
+        final double[] zr;
+        final double[] zi;
+        int length;
+
+        ReferenceOrbit(int capacity){
+            zr = new double[capacity];
+            zi = new double[capacity];
+        }
+    }
+}
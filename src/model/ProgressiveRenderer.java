@@ -0,0 +1,116 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The ProgressiveRenderer class calculates a frame in passes of decreasing block size, so that a coarse preview of the
+ * frame is available long before the frame is complete.
+ *
+ * The first pass calculates every pixel whose x and y are multiples of INITIAL_PASS_SIZE and fills the block of
+ * pixels to its right and below with its value. Every following pass halves the block size and only calculates the
+ * pixels which are not samples of a previous pass, as those are still in the frame buffer; each block of the previous
+ * pass is split in four, one of which already holds the right value. The last pass has a block size of 1, after
+ * which every pixel has been calculated exactly once, with the same value MandelbrotCalculator.calcMandelbrotRow
+ * gives it. Likewise every pass records the Z of the pixels it calculates if the frame keeps them (see
+ * FrameBuffer.setKeepingOrbits), and the last pass marks every row as recorded.
+ *
+ * The passes run row by row on the ParallelRenderEngine, so they can be cancelled like any other render.
+ *
+ * @author Student id: 170024238
+ */
+public class ProgressiveRenderer implements RenderStrategy {
+
+    // Block size of the first pass, a power of 2
+    public static final int INITIAL_PASS_SIZE = 8;
+
+    private ParallelRenderEngine mParallelRenderEngine;
+    private MandelbrotCalculator mMandelbrotCalculator;
+
+    /**
+     * Constructs a new ProgressiveRenderer running its passes on the given engine.
+     *
+     * @param mParallelRenderEngine the engine used to calculate the rows of every pass in parallel.
+     */
+    public ProgressiveRenderer(ParallelRenderEngine mParallelRenderEngine){
+        this.mParallelRenderEngine = mParallelRenderEngine;
+        this.mMandelbrotCalculator = mParallelRenderEngine.getMandelbrotCalculator();
+    }
+
+    /**
+     * Method to calculate the whole frame, running every pass one after the other.
+     */
+    @Override
+    public void calcMandelbrotSet(FrameBuffer frameBuffer, double minReal, double maxReal, double minImaginary, double maxImaginary, int maxIterations, double radiusSquared){
+        for (int passSize = INITIAL_PASS_SIZE; passSize >= 1; passSize /= 2) {
+            calcPass(frameBuffer, passSize, minReal, maxReal, minImaginary, maxImaginary, maxIterations, radiusSquared);
+        }
+    }
+
+    /**
+     * Method to calculate one pass of the frame. Every pass but the first one expects the frame buffer to hold the
+     * result of the pass before, with twice its block size, and its Z if the frame keeps them.
+     *
+     * @param frameBuffer the buffer receiving the iteration values.
+     * @param passSize the block size of the pass, INITIAL_PASS_SIZE for the first pass and 1 for the last one.
+     * @param minReal the lower real bound for the complex constant C
+     * @param maxReal the upper real bound for the complex constant C
+     * @param minImaginary the lower imaginary bound for the complex constant C
+     * @param maxImaginary the upper imaginary bound for the complex constant C
+     * @param maxIterations the maximum number of iterations to iterate the complex formula
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     */
+    public void calcPass(final FrameBuffer frameBuffer, final int passSize, final double minReal, double maxReal, final double minImaginary, double maxImaginary, final int maxIterations, final double radiusSquared){
+        final int xResolution = frameBuffer.getWidth();
+        final int yResolution = frameBuffer.getHeight();
+        final double realStep = (maxReal - minReal)/xResolution;
+        final double imaginaryStep = (maxImaginary - minImaginary)/yResolution;
+        final boolean firstPass = passSize == INITIAL_PASS_SIZE;
+        final char[] fractions = frameBuffer.getFractions();
+        final boolean keepingOrbits = frameBuffer.isKeepingOrbits();
+
+        mParallelRenderEngine.calcRows(frameBuffer, new ParallelRenderEngine.RowKernel() {
+            @Override
+            public long calcRow(int[] rowData, int offset, int y) {
+                // each row of samples fills the rows of its blocks, so the other rows have nothing to do
+                if (y % passSize != 0) {
+                    return 0;
+                }
+                // rows of samples of the previous pass only have new samples between the previous ones
+                boolean previousSampleRow = !firstPass && y % (2 * passSize) == 0;
+                int firstX = previousSampleRow ? passSize : 0;
+                int xStep = previousSampleRow ? 2 * passSize : passSize;
+                int blockHeight = Math.min(passSize, yResolution - y);
+                double cImaginary = minImaginary + y * imaginaryStep;
+                double[] z = keepingOrbits ? new double[2] : null;
+
+                long rowIterations = 0;
+                for (int x = firstX; x < xResolution; x += xStep) {
+                    int iterations = mMandelbrotCalculator.calcMandel(minReal + x * realStep, cImaginary, maxIterations,
+                            radiusSquared, realStep, fractions, offset + x, z, 0);
+                    if (keepingOrbits && iterations >= maxIterations) {
+                        double[] rowOrbit = frameBuffer.getRowOrbitForWriting(y);
+                        rowOrbit[2 * x] = z[0];
+                        rowOrbit[2 * x + 1] = z[1];
+                    }
+                    int blockWidth = Math.min(passSize, xResolution - x);
+                    for (int blockY = 0; blockY < blockHeight; blockY++) {
+                        int blockOffset = frameBuffer.getOffset(y + blockY) + x;
+                        for (int blockX = 0; blockX < blockWidth; blockX++) {
+                            rowData[blockOffset + blockX] = iterations;
+                        }
+                        if (fractions != null && passSize > 1) {
+                            Arrays.fill(fractions, blockOffset, blockOffset + blockWidth, fractions[offset + x]);
+                        }
+                    }
+                    rowIterations += iterations;
+                }
+                return rowIterations;
+            }
+        });
+        if (passSize == 1) {
+            for (int y = 0; y < yResolution; y++) {
+                frameBuffer.setOrbitRecorded(y, true);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package model;
+
+/**
+ * A check the render strategies make while calculating a frame, so that a render which is no longer wanted can stop
+ * early. When it returns true the strategy abandons the frame by throwing a java.util.concurrent.CancellationException,
+ * leaving the frame buffer partly calculated.
+ *
+ * @author Student id: 170024238
+ */
+public interface RenderCancellation {
+
+    /**
+     * @return true if the render has been cancelled and its result would be thrown away.
+     */
+    boolean isCancelled();
+}
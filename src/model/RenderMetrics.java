@@ -0,0 +1,235 @@
+package model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The RenderMetrics class records where the time of a render went, so that slow views and poor maxIterations settings
+ * can be spotted: the wall time of each stage (calculating the iteration values, colour mapping them, painting the
+ * image), the iteration values of the frame, the heap allocated while calculating it, and how long the rows took on
+ * each thread of the parallel engine.
+ *
+ * The model records the calculation of every frame it displays, and the view the colour mapping and painting of the
+ * frame displayed, see MandelbrotModel.getRenderMetrics. The rows are timed by the ParallelRenderEngine, so a render
+ * which did not go through it (e.g. a frame copied from the tile cache) has no row times.
+ *
+ * The total iterations are the sum of the iteration values of the pixels, i.e. the iterations the plain escape time
+ * loop would have done; the pixels the interior and periodicity checks stopped early are counted separately.
+ *
+ * @author Student id: 170024238
+ */
+public class RenderMetrics {
+
+    // Number of buckets of the row time histogram, bucket i > 0 counting the rows which took 2^(i-1) to 2^i
+    // microseconds, and the last one every slower row
+    public static final int ROW_TIME_BUCKETS = 24;
+
+    private final FrameGeometry frameGeometry;
+    private volatile String renderPath;
+    private volatile long computeNanos, colorMapNanos, paintNanos, allocatedBytes;
+    private volatile long totalIterations, escapedPixels, interiorPixels, shortCircuitedPixels, periodicPixels;
+
+    private final AtomicLongArray rowTimeHistogram = new AtomicLongArray(ROW_TIME_BUCKETS);
+    private final ConcurrentHashMap<String, LongAdder> threadNanos = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new RenderMetrics.
+     *
+     * @param frameGeometry the geometry of the frame being calculated.
+     */
+    public RenderMetrics(FrameGeometry frameGeometry){
+        this.frameGeometry = frameGeometry;
+    }
+
+    /**
+     * Method to record the time taken by a row, called by the thread which calculated it.
+     *
+     * @param nanos the time taken by the row.
+     */
+    void recordRow(long nanos){
+        long micros = nanos / 1000;
+        int bucket = Math.min(ROW_TIME_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        rowTimeHistogram.incrementAndGet(bucket);
+        LongAdder threadTime = threadNanos.get(Thread.currentThread().getName());
+        if (threadTime == null) {
+            LongAdder newThreadTime = new LongAdder();
+            threadTime = threadNanos.putIfAbsent(Thread.currentThread().getName(), newThreadTime);
+            if (threadTime == null) {
+                threadTime = newThreadTime;
+            }
+        }
+        threadTime.add(nanos);
+    }
+
+    /**
+     * Method to record the calculation of the frame, once it is complete.
+     *
+     * @param frameBuffer the iteration values of the frame.
+     * @param renderPath the way the frame was calculated, e.g. "tiled" or "perturbation".
+     * @param computeNanos the wall time of the calculation.
+     * @param allocatedBytes the bytes allocated by every thread during the calculation, or -1 if not measured.
+     * @param shortCircuitedPixels the pixels the interior check returned without iterating.
+     * @param periodicPixels the pixels the periodicity check stopped early.
+     */
+    void recordFrame(FrameBuffer frameBuffer, String renderPath, long computeNanos, long allocatedBytes,
+                     long shortCircuitedPixels, long periodicPixels){
+        int maxIterations = frameGeometry.getMaxIterations();
+        int[] data = frameBuffer.getData();
+        long iterations = 0, interior = 0;
+        for (int y = 0; y < frameBuffer.getHeight(); y++) {
+            int offset = frameBuffer.getOffset(y);
+            for (int x = 0; x < frameBuffer.getWidth(); x++) {
+                int value = data[offset + x];
+                iterations += value;
+                if (value >= maxIterations) {
+                    interior++;
+                }
+            }
+        }
+        this.renderPath = renderPath;
+        this.computeNanos = computeNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.totalIterations = iterations;
+        this.interiorPixels = interior;
+        this.escapedPixels = (long) frameBuffer.getWidth() * frameBuffer.getHeight() - interior;
+        this.shortCircuitedPixels = shortCircuitedPixels;
+        this.periodicPixels = periodicPixels;
+    }
+
+    /**
+     * @param colorMapNanos the wall time of the last colour mapping of the frame.
+     */
+    public void recordColorMap(long colorMapNanos){
+        this.colorMapNanos = colorMapNanos;
+    }
+
+    /**
+     * @param paintNanos the wall time of the last painting of the frame's image.
+     */
+    public void recordPaint(long paintNanos){
+        this.paintNanos = paintNanos;
+    }
+
+    public FrameGeometry getFrameGeometry() {
+        return frameGeometry;
+    }
+
+    /**
+     * @return the way the frame was calculated, or null if its calculation has not been recorded.
+     */
+    public String getRenderPath() {
+        return renderPath;
+    }
+
+    public long getComputeNanos() {
+        return computeNanos;
+    }
+
+    public long getColorMapNanos() {
+        return colorMapNanos;
+    }
+
+    public long getPaintNanos() {
+        return paintNanos;
+    }
+
+    /**
+     * @return the bytes allocated by every thread while the frame was calculated, or -1 if the JVM cannot tell.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getTotalIterations() {
+        return totalIterations;
+    }
+
+    /**
+     * @return the mean iteration value of the pixels.
+     */
+    public double getMeanIterations() {
+        long pixels = escapedPixels + interiorPixels;
+        return pixels == 0 ? 0 : (double) totalIterations / pixels;
+    }
+
+    public long getEscapedPixels() {
+        return escapedPixels;
+    }
+
+    /**
+     * @return the pixels which reached maxIterations.
+     */
+    public long getInteriorPixels() {
+        return interiorPixels;
+    }
+
+    public long getShortCircuitedPixels() {
+        return shortCircuitedPixels;
+    }
+
+    public long getPeriodicPixels() {
+        return periodicPixels;
+    }
+
+    /**
+     * @return the number of rows in each bucket of the row time histogram, see ROW_TIME_BUCKETS.
+     */
+    public long[] getRowTimeHistogram() {
+        long[] histogram = new long[ROW_TIME_BUCKETS];
+        for (int i = 0; i < ROW_TIME_BUCKETS; i++) {
+            histogram[i] = rowTimeHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * @param bucket a bucket of the row time histogram.
+     * @return the time in microseconds the rows of the bucket took less than, Long.MAX_VALUE for the last bucket.
+     */
+    public static long getRowTimeBucketLimit(int bucket) {
+        return bucket == ROW_TIME_BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * @return the time spent calculating rows by each thread, by thread name.
+     */
+    public Map<String, Long> getThreadNanos() {
+        Map<String, Long> nanos = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : threadNanos.entrySet()) {
+            nanos.put(entry.getKey(), entry.getValue().sum());
+        }
+        return nanos;
+    }
+
+    /**
+     * @return true if the JVM counts the bytes allocated by each thread.
+     */
+    public static boolean isAllocationMeasured() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        return threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * @return the bytes allocated so far by the threads alive, or -1 if the JVM cannot tell. The bytes allocated by
+     * threads which have ended are not included, which does not matter for the long lived render threads.
+     */
+    public static long getAllocatedBytesOfThreads() {
+        if (!isAllocationMeasured()) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = 0;
+        for (long threadAllocated : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            // threads which ended in between are reported as -1
+            allocated += Math.max(0, threadAllocated);
+        }
+        return allocated;
+    }
+}
@@ -0,0 +1,54 @@
+package model;
+
+import java.util.Map;
+
+/**
+ * The management interface of the RenderMetricsMonitor, giving JMX clients such as JConsole or VisualVM the metrics of
+ * the last frame of a MandelbrotModel, see RenderMetrics.
+ *
+ * @author Student id: 170024238
+ */
+public interface RenderMetricsMXBean {
+
+    long getRenderCount();
+
+    String getRenderPath();
+
+    int getXResolution();
+
+    int getYResolution();
+
+    int getMaxIterations();
+
+    double getRealRange();
+
+    double getComputeMillis();
+
+    double getColorMapMillis();
+
+    double getPaintMillis();
+
+    long getTotalIterations();
+
+    double getMeanIterations();
+
+    long getEscapedPixels();
+
+    long getInteriorPixels();
+
+    long getShortCircuitedPixels();
+
+    long getPeriodicPixels();
+
+    long getAllocatedBytes();
+
+    /**
+     * @return the number of rows in each bucket of the row time histogram, see RenderMetrics.ROW_TIME_BUCKETS.
+     */
+    long[] getRowTimeHistogram();
+
+    /**
+     * @return the time in milliseconds spent calculating rows by each thread, by thread name.
+     */
+    Map<String, Double> getThreadMillis();
+}
@@ -0,0 +1,146 @@
+package model;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The RenderMetricsMonitor class publishes the metrics of the last frame of a MandelbrotModel as an MXBean on the
+ * platform MBean server, under OBJECT_NAME, so they can be watched with JConsole or VisualVM while exploring.
+ *
+ * Example usage -- To monitor the model of the GUI
+ *
+ * MandelbrotModel mandelbrotModel = new MandelbrotModel();
+ * RenderMetricsMonitor.register(mandelbrotModel);
+ *
+ * @author Student id: 170024238
+ */
+public class RenderMetricsMonitor implements RenderMetricsMXBean {
+
+    // Name the monitor is registered under
+    public static final String OBJECT_NAME = "model:type=RenderMetrics";
+
+    private MandelbrotModel mMandelbrotModel;
+
+    /**
+     * Constructs a new RenderMetricsMonitor.
+     *
+     * @param mMandelbrotModel the model whose metrics are published.
+     */
+    public RenderMetricsMonitor(MandelbrotModel mMandelbrotModel){
+        this.mMandelbrotModel = mMandelbrotModel;
+    }
+
+    /**
+     * Method to register a monitor of a model on the platform MBean server.
+     *
+     * @param mMandelbrotModel the model whose metrics are published.
+     * @return the monitor registered.
+     * @throws JMException if a monitor is already registered or the monitor could not be registered.
+     */
+    public static RenderMetricsMonitor register(MandelbrotModel mMandelbrotModel) throws JMException {
+        RenderMetricsMonitor renderMetricsMonitor = new RenderMetricsMonitor(mMandelbrotModel);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(renderMetricsMonitor, new ObjectName(OBJECT_NAME));
+        return renderMetricsMonitor;
+    }
+
+    private RenderMetrics metrics(){
+        return mMandelbrotModel.getRenderMetrics();
+    }
+
+    @Override
+    public long getRenderCount() {
+        return mMandelbrotModel.getRenderCount();
+    }
+
+    @Override
+    public String getRenderPath() {
+        return metrics().getRenderPath();
+    }
+
+    @Override
+    public int getXResolution() {
+        return metrics().getFrameGeometry().getXResolution();
+    }
+
+    @Override
+    public int getYResolution() {
+        return metrics().getFrameGeometry().getYResolution();
+    }
+
+    @Override
+    public int getMaxIterations() {
+        return metrics().getFrameGeometry().getMaxIterations();
+    }
+
+    @Override
+    public double getRealRange() {
+        return metrics().getFrameGeometry().getRealRange();
+    }
+
+    @Override
+    public double getComputeMillis() {
+        return metrics().getComputeNanos() / 1e6;
+    }
+
+    @Override
+    public double getColorMapMillis() {
+        return metrics().getColorMapNanos() / 1e6;
+    }
+
+    @Override
+    public double getPaintMillis() {
+        return metrics().getPaintNanos() / 1e6;
+    }
+
+    @Override
+    public long getTotalIterations() {
+        return metrics().getTotalIterations();
+    }
+
+    @Override
+    public double getMeanIterations() {
+        return metrics().getMeanIterations();
+    }
+
+    @Override
+    public long getEscapedPixels() {
+        return metrics().getEscapedPixels();
+    }
+
+    @Override
+    public long getInteriorPixels() {
+        return metrics().getInteriorPixels();
+    }
+
+    @Override
+    public long getShortCircuitedPixels() {
+        return metrics().getShortCircuitedPixels();
+    }
+
+    @Override
+    public long getPeriodicPixels() {
+        return metrics().getPeriodicPixels();
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return metrics().getAllocatedBytes();
+    }
+
+    @Override
+    public long[] getRowTimeHistogram() {
+        return metrics().getRowTimeHistogram();
+    }
+
+    @Override
+    public Map<String, Double> getThreadMillis() {
+        Map<String, Double> threadMillis = new TreeMap<>();
+        for (Map.Entry<String, Long> entry : metrics().getThreadNanos().entrySet()) {
+            threadMillis.put(entry.getKey(), entry.getValue() / 1e6);
+        }
+        return threadMillis;
+    }
+}
@@ -0,0 +1,175 @@
+package model;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The RenderScheduler class runs render jobs on a background worker thread, so that the thread asking for a frame (the
+ * Swing Event Dispatch Thread for the GUI) is never blocked by a calculation.
+ *
+ * Every job is given a generation ID when it is submitted. Submitting a job makes every older one outdated: an outdated
+ * job that has not started yet is skipped, one that is running is stopped through its RenderCancellation, and one that
+ * has finished is not published. The result of the latest job is published through the publisher executor, e.g.
+ * EventQueue::invokeLater to publish on the Event Dispatch Thread.
+ *
+ * A job can also publish intermediate results with publishProgress, e.g. the passes of a progressive render.
+ *
+ * The jobs themselves run one after another on a single worker; each of them is free to use the parallel engine.
+ *
+ * @author Student id: 170024238
+ */
+public class RenderScheduler {
+
+    private final ExecutorService worker;
+    private final Executor publisher;
+    // Generation of the latest submitted job, every job with a smaller generation is outdated
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Constructs a new RenderScheduler.
+     *
+     * @param publisher the executor running the publish step of the jobs that are still current when done.
+     */
+    public RenderScheduler(Executor publisher){
+        this.publisher = publisher;
+        this.worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Mandelbrot render scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return the generation of the latest submitted job, 0 if there has been none.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Method to check whether a job is outdated.
+     *
+     * @param jobGeneration the generation of the job.
+     * @return true if a job has been submitted or cancel() has been called since the job was submitted.
+     */
+    public boolean isOutdated(long jobGeneration) {
+        return generation.get() != jobGeneration;
+    }
+
+    /**
+     * Method to submit a job, making every previously submitted job outdated.
+     *
+     * @param renderJob the job to run.
+     * @return the generation ID of the job.
+     */
+    public long submit(final RenderJob renderJob){
+        final long jobGeneration = generation.incrementAndGet();
+        final RenderCancellation cancellation = new RenderCancellation() {
+            @Override
+            public boolean isCancelled() {
+                return isOutdated(jobGeneration);
+            }
+        };
+
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (cancellation.isCancelled()) {
+                    return;
+                }
+                try {
+                    renderJob.render(cancellation);
+                } catch (CancellationException e) {
+                    return;
+                }
+                publisher.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // checked again, a newer job may have been submitted while this one was waiting to be published
+                        if (!cancellation.isCancelled()) {
+                            renderJob.publish();
+                        }
+                    }
+                });
+            }
+        });
+        return jobGeneration;
+    }
+
+    /**
+     * Method for a running job to publish an intermediate result. It waits until the result has been published, so
+     * that the publish step can safely hand the job's buffers over, and the job can carry on afterwards.
+     *
+     * @param cancellation the cancellation the job was given.
+     * @param progress the publish step, run through the publisher only if the job is still current.
+     * @throws CancellationException if the job became outdated before its result was published.
+     */
+    public void publishProgress(final RenderCancellation cancellation, final Runnable progress){
+        final CountDownLatch published = new CountDownLatch(1);
+        final boolean[] current = new boolean[1];
+        publisher.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!cancellation.isCancelled()) {
+                        progress.run();
+                        current[0] = true;
+                    }
+                } finally {
+                    published.countDown();
+                }
+            }
+        });
+        try {
+            published.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Render interrupted");
+        }
+        if (!current[0]) {
+            throw new CancellationException("Render cancelled");
+        }
+    }
+
+    /**
+     * Method to make every submitted job outdated without submitting a new one.
+     */
+    public void cancel(){
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Method to stop the worker thread. Jobs that are still waiting are not run.
+     */
+    public void shutdown(){
+        cancel();
+        worker.shutdownNow();
+    }
+
+    /**
+     * A job run by the scheduler.
+     */
+    public interface RenderJob {
+
+        /**
+         * Method calculating the result on the worker thread.
+         *
+         * @param cancellation the check telling whether the job has become outdated and should stop.
+         * @throws CancellationException if the job stopped because it became outdated.
+         */
+        void render(RenderCancellation cancellation);
+
+        /**
+         * Method publishing the result through the scheduler's publisher, only called if the job is still current.
+         */
+        void publish();
+    }
+}
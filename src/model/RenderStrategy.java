@@ -0,0 +1,26 @@
+package model;
+
+/**
+ * The RenderStrategy interface is implemented by every class able to calculate a frame of the Mandelbrot set.
+ * Every strategy writes into a FrameBuffer supplied by the caller, so one buffer can be reused from frame to frame.
+ * The MandelbrotModel renders through the strategy it is set to, so the different ways of working out the same
+ * iteration values (brute force on one thread, in parallel, by boundary subdivision, ...) can be swapped freely.
+ *
+ * @author Student id: 170024238
+ */
+public interface RenderStrategy {
+
+    /**
+     * Method to calculate the Mandelbrot set for the given parameter settings into a frame buffer, whose width and
+     * height are the number of pixels on the x-axis and y-axis.
+     *
+     * @param frameBuffer the buffer receiving the iteration value of every pixel.
+     * @param minReal the lower real bound for the complex constant C
+     * @param maxReal the upper real bound for the complex constant C
+     * @param minImaginary the lower imaginary bound for the complex constant C
+     * @param maxImaginary the upper imaginary bound for the complex constant C
+     * @param maxIterations the maximum number of iterations to iterate the complex formula
+     * @param radiusSquared the squared of the radius to use when determining whether Z escaped.
+     */
+    void calcMandelbrotSet(FrameBuffer frameBuffer, double minReal, double maxReal, double minImaginary, double maxImaginary, int maxIterations, double radiusSquared);
+}
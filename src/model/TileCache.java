@@ -0,0 +1,317 @@
+package model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The TileCache class keeps the iteration values of recently calculated tiles of TILE_SIZE x TILE_SIZE pixels, so
+ * that views which are visited again (undo, redo, reset, zooming back out) or overlap a recent view (pans, zooming
+ * back to a scale seen before) do not have to be calculated again.
+ *
+ * The tiles lie on a global grid over the complex plane rather than in the frame of a view. At a pixel step (scale)
+ * of step, pixel column g of the grid is the point C = g * step, and tile column c holds the pixel columns c * TILE_SIZE
+ * to (c + 1) * TILE_SIZE - 1, likewise for the rows. A view is only on the grid if its origin is a whole number of
+ * pixel steps, so views are aligned to it before they are calculated, see FrameGeometry.alignedToGrid: the pixel step
+ * is quantised to GRID_STEP_BITS significant bits, and the origin moved to the nearest multiple of the pixel step.
+ * With so few significant bits, minReal + x * step is exactly (g + x) * step in double precision, so every view
+ * calculates a pixel of the grid with exactly the same C, whichever its origin, and gets exactly the same value.
+ *
+ * A tile is identified by the pixel steps of its scale, its column and row on the grid, and the iteration limit and
+ * radius, see TileKey. The tiles on the edges of a view are only partly inside it, so a tile holds the values of a
+ * rectangle of its pixels, see Tile, which grows when a later view adds a neighbouring part of the tile. Only exact
+ * iteration values are cached (see FrameBuffer.setExact), never those of approximate strategies such as boundary
+ * subdivision or the periodicity check. The tiles are kept in access order and the least recently used
+ * ones are evicted once their total size exceeds the memory budget.
+ *
+ * @author Student id: 170024238
+ */
+public class TileCache {
+
+    // Width and height in pixels of every tile
+    public static final int TILE_SIZE = 64;
+
+    // Significant bits kept of the pixel steps of the grid, and the largest pixel column or row of the grid, so that
+    // (g + x) * step is exact for every pixel of a view
+    public static final int GRID_STEP_BITS = 20;
+    private static final double GRID_LIMIT = 1L << (53 - GRID_STEP_BITS);
+
+    // Default memory budget, a quarter of the maximum heap but no more than 128 MB
+    public static final long DEFAULT_MEMORY_BUDGET = Math.min(128L << 20, Runtime.getRuntime().maxMemory() / 4);
+
+    // Approximate memory taken by a tile besides its pixels (array header, key, map entry)
+    private static final int TILE_OVERHEAD = 128;
+
+    private final LinkedHashMap<TileKey, Tile> tiles = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBudget;
+    private long usedMemory;
+    private long hits, misses;
+
+    /**
+     * Constructs a new TileCache with the default memory budget.
+     */
+    public TileCache(){
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Constructs a new TileCache.
+     *
+     * @param memoryBudget the maximum number of bytes taken by the cached tiles.
+     */
+    public TileCache(long memoryBudget){
+        setMemoryBudget(memoryBudget);
+    }
+
+    public synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Method to change the memory budget, evicting the least recently used tiles if the cache no longer fits.
+     *
+     * @param memoryBudget the maximum number of bytes taken by the cached tiles, 0 to disable the cache.
+     */
+    public synchronized void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 0){
+            throw new IllegalArgumentException("Memory budget must not be negative but was " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+        evict();
+    }
+
+    /**
+     * @return the approximate number of bytes taken by the cached tiles.
+     */
+    public synchronized long getUsedMemory() {
+        return usedMemory;
+    }
+
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Method to look up the pixels of a tile, from (fromX, fromY) up to (toX, toY) exclusive in the tile.
+     *
+     * @param tileKey the tile to look up.
+     * @return the tile, or null if it is not cached or does not hold all of the pixels. It must not be changed.
+     */
+    public synchronized Tile get(TileKey tileKey, int fromX, int fromY, int toX, int toY){
+        Tile tile = tiles.get(tileKey);
+        if (tile != null && tile.covers(fromX, fromY, toX, toY)) {
+            hits++;
+            return tile;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * @param tileKey the tile to look up.
+     * @return true if the tile is cached with the pixels from (fromX, fromY) up to (toX, toY) exclusive, without counting
+     * a hit or miss. The tile counts as used for the eviction order, as it is about to be looked up.
+     */
+    public synchronized boolean contains(TileKey tileKey, int fromX, int fromY, int toX, int toY){
+        Tile tile = tiles.get(tileKey);
+        return tile != null && tile.covers(fromX, fromY, toX, toY);
+    }
+
+    /**
+     * Method to add the pixels from (fromX, fromY) up to (toX, toY) exclusive of a tile, evicting the least recently
+     * used tiles if the cache is over its budget afterwards. When the tile is cached with other pixels, they are kept
+     * too if both form a rectangle, otherwise they are replaced, the latest view being the likeliest to be visited again.
+     *
+     * @param tileKey the tile.
+     * @param data the iteration values of the tile row by row, TILE_SIZE x TILE_SIZE, of which only the given pixels
+     *             are defined, which the cache keeps.
+     */
+    public synchronized void put(TileKey tileKey, int[] data, int fromX, int fromY, int toX, int toY){
+        Tile tile = new Tile(data, fromX, fromY, toX, toY);
+        Tile previous = tiles.get(tileKey);
+        if (previous != null) {
+            if (previous.covers(fromX, fromY, toX, toY)) {
+                return;
+            }
+            if (!tile.covers(previous.fromX, previous.fromY, previous.toX, previous.toY)) {
+                Tile merged = tile.mergedWith(previous);
+                if (merged != null) {
+                    tile = merged;
+                }
+            }
+            usedMemory -= tileMemory(previous.data);
+        }
+        tiles.put(tileKey, tile);
+        usedMemory += tileMemory(data);
+        evict();
+    }
+
+    /**
+     * Method to remove every tile.
+     */
+    public synchronized void clear(){
+        tiles.clear();
+        usedMemory = 0;
+    }
+
+    private void evict(){
+        Iterator<Map.Entry<TileKey, Tile>> iterator = tiles.entrySet().iterator();
+        while (usedMemory > memoryBudget && iterator.hasNext()) {
+            usedMemory -= tileMemory(iterator.next().getValue().data);
+            iterator.remove();
+        }
+    }
+
+    private static long tileMemory(int[] tile){
+        return 4L * tile.length + TILE_OVERHEAD;
+    }
+
+    /**
+     * @param step a pixel step.
+     * @return the pixel step with only its GRID_STEP_BITS most significant bits kept.
+     */
+    public static double quantiseStep(double step){
+        return Double.longBitsToDouble(Double.doubleToLongBits(step) & (-1L << (53 - GRID_STEP_BITS)));
+    }
+
+    /**
+     * Method to check whether the pixels of a view along one axis lie on the grid, i.e. whether min + i * step is
+     * exactly the grid point (g + i) * step for every pixel i.
+     *
+     * @param min the lower bound of the view on the axis.
+     * @param step the pixel step on the axis.
+     * @param resolution the number of pixels on the axis.
+     * @return true if the pixels lie on the grid.
+     */
+    public static boolean isOnGrid(double min, double step, int resolution){
+        double origin = min / step;
+        return step > 0 && step == quantiseStep(step) && origin == Math.rint(origin) && origin * step == min
+                && Math.abs(origin) + resolution < GRID_LIMIT;
+    }
+
+    /**
+     * @param min the lower bound of a view on the grid along one axis.
+     * @param step the pixel step on the axis.
+     * @return the pixel column (or row) of the grid of the first pixel of the view.
+     */
+    public static long gridOrigin(double min, double step){
+        return (long) Math.rint(min / step);
+    }
+
+    /**
+     * The cached pixels of a tile: the iteration values of the rectangle from (fromX, fromY) up to (toX, toY)
+     * exclusive, in an array of TILE_SIZE x TILE_SIZE values row by row.
+     */
+    public static final class Tile {
+
+        private final int[] data;
+        private final int fromX, fromY, toX, toY;
+
+        private Tile(int[] data, int fromX, int fromY, int toX, int toY){
+            this.data = data;
+            this.fromX = fromX;
+            this.fromY = fromY;
+            this.toX = toX;
+            this.toY = toY;
+        }
+
+        /**
+         * @return the iteration values of the tile row by row, of which only the cached rectangle is defined.
+         */
+        public int[] getData() {
+            return data;
+        }
+
+        /**
+         * @return true if the tile holds every pixel from (fromX, fromY) up to (toX, toY) exclusive.
+         */
+        public boolean covers(int fromX, int fromY, int toX, int toY){
+            return this.fromX <= fromX && this.fromY <= fromY && toX <= this.toX && toY <= this.toY;
+        }
+
+        /**
+         * Method to merge the pixels of another tile of the same key into the array of this one, if both rectangles
+         * together form a rectangle.
+         *
+         * @return the merged tile, or null if the rectangles do not form a rectangle.
+         */
+        private Tile mergedWith(Tile other){
+            boolean sameColumns = fromX == other.fromX && toX == other.toX && fromY <= other.toY && other.fromY <= toY;
+            boolean sameRows = fromY == other.fromY && toY == other.toY && fromX <= other.toX && other.fromX <= toX;
+            if (!sameColumns && !sameRows) {
+                return null;
+            }
+            for (int y = other.fromY; y < other.toY; y++) {
+                System.arraycopy(other.data, y * TILE_SIZE + other.fromX, data, y * TILE_SIZE + other.fromX, other.toX - other.fromX);
+            }
+            return new Tile(data, Math.min(fromX, other.fromX), Math.min(fromY, other.fromY),
+                    Math.max(toX, other.toX), Math.max(toY, other.toY));
+        }
+    }
+
+    /**
+     * The key of a tile of the grid. Pixel column g of the grid is C = g * realStep at every view of the scale, so the
+     * tile has the same values in every view that covers it.
+     */
+    public static final class TileKey {
+
+        private final double realStep, imaginaryStep, radiusSquared;
+        private final long column, row;
+        private final int maxIterations;
+
+        /**
+         * Constructs a new TileKey.
+         *
+         * @param realStep the distance on the real axis between two neighbouring pixels.
+         * @param imaginaryStep the distance on the imaginary axis between two neighbouring pixels.
+         * @param column the column of the tile on the grid, its first pixel column being column * TILE_SIZE.
+         * @param row the row of the tile on the grid, its first pixel row being row * TILE_SIZE.
+         * @param maxIterations the maximum number of iterations.
+         * @param radiusSquared the squared escape radius.
+         */
+        public TileKey(double realStep, double imaginaryStep, long column, long row, int maxIterations, double radiusSquared){
+            this.realStep = realStep;
+            this.imaginaryStep = imaginaryStep;
+            this.column = column;
+            this.row = row;
+            this.maxIterations = maxIterations;
+            this.radiusSquared = radiusSquared;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) o;
+            return column == other.column
+                    && row == other.row
+                    && maxIterations == other.maxIterations
+                    && Double.compare(realStep, other.realStep) == 0
+                    && Double.compare(imaginaryStep, other.imaginaryStep) == 0
+                    && Double.compare(radiusSquared, other.radiusSquared) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Long.hashCode(column);
+            result = 31 * result + Long.hashCode(row);
+            result = 31 * result + maxIterations;
+            result = 31 * result + Double.hashCode(realStep);
+            result = 31 * result + Double.hashCode(imaginaryStep);
+            result = 31 * result + Double.hashCode(radiusSquared);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The TilePyramidRenderer class calculates a pyramid of TILE_SIZE x TILE_SIZE tiles of a square view, as served by
+ * zoomable web maps: level z splits the view into 2^z x 2^z tiles, tile (x, y) of level z covering the same area as
+ * tiles (2x, 2y) to (2x + 1, 2y + 1) of level z + 1. Tile y = 0 is at the lower imaginary bound, like the top row of the
+ * GUI's frames.
+ *
+ * The pixel steps of the levels are the size of the view divided by powers of 2, and pixel (i, j) of a tile is
+ * calculated from the view's origin as origin + (x * TILE_SIZE + i) * step. Every second pixel of every second row
+ * of a child tile is therefore exactly a pixel of its parent tile, and its value is copied from the parent instead
+ * of being calculated: a quarter of the pixels of every level but the first are free. Pixels whose value in the parent
+ * was its maxIterations are calculated again when the child has a higher maxIterations.
+ *
+ * Each tile is calculated by a single thread; the tiles are spread over the cores by a ForkJoinPool, every tile
+ * forking its four children once it is done. Tiles already in the TileStore are not calculated again, so an
+ * interrupted run picks up where it stopped (the children of such tiles are calculated without their parent).
+ *
+ * @author Student id: 170024238
+ */
+public class TilePyramidRenderer {
+
+    // Width and height in pixels of the tiles
+    public static final int TILE_SIZE = 256;
+    // Deepest level, whose pixel steps are still far above what double precision can tell apart for usual views
+    public static final int MAX_LEVEL = 30;
+
+    private MandelbrotCalculator mMandelbrotCalculator;
+    private int threadCount;
+
+    // Number of tiles calculated and skipped by the last pyramid, and of pixels copied from parent tiles
+    private final LongAdder calculatedTiles = new LongAdder();
+    private final LongAdder skippedTiles = new LongAdder();
+    private final LongAdder reusedPixels = new LongAdder();
+
+    /**
+     * Keeps the tiles of a pyramid, and tells which ones it already has.
+     */
+    public interface TileStore {
+
+        /**
+         * @return true if the tile is already stored, in which case it is not calculated again.
+         */
+        boolean containsTile(int level, int x, int y) throws IOException;
+
+        /**
+         * Method to store a tile. It is called from several threads at the same time, and the tile is only valid until
+         * the method returns.
+         *
+         * @param level the level of the tile.
+         * @param x the column of the tile in its level.
+         * @param y the row of the tile in its level.
+         * @param tile the iteration values of the tile.
+         * @param maxIterations the maximum number of iterations the tile was calculated with.
+         * @throws IOException if the tile could not be stored.
+         */
+        void storeTile(int level, int x, int y, FrameBuffer tile, int maxIterations) throws IOException;
+    }
+
+    /**
+     * Constructs a new TilePyramidRenderer.
+     *
+     * @param mMandelbrotCalculator the calculator used to work out the iteration values.
+     * @param threadCount the number of tiles calculated at the same time.
+     */
+    public TilePyramidRenderer(MandelbrotCalculator mMandelbrotCalculator, int threadCount){
+        if (threadCount < 1){
+            throw new IllegalArgumentException("Thread count must be at least 1 but was " + threadCount);
+        }
+        this.mMandelbrotCalculator = mMandelbrotCalculator;
+        this.threadCount = threadCount;
+    }
+
+    public long getCalculatedTiles() {
+        return calculatedTiles.sum();
+    }
+
+    public long getSkippedTiles() {
+        return skippedTiles.sum();
+    }
+
+    public long getReusedPixels() {
+        return reusedPixels.sum();
+    }
+
+    /**
+     * Method to calculate every tile of the levels 0 to maxLevel of a pyramid which is not in the store yet.
+     *
+     * @param minReal the lower real bound of the view.
+     * @param minImaginary the lower imaginary bound of the view.
+     * @param size the width and height of the view.
+     * @param maxLevel the deepest level to calculate, at most MAX_LEVEL.
+     * @param maxIterations the maximum number of iterations of level 0.
+     * @param levelIterations the number of iterations added to maxIterations at every level.
+     * @param radiusSquared the squared escape radius.
+     * @param tileStore the store receiving the tiles.
+     * @throws IOException if the store failed.
+     */
+    public void calcPyramid(double minReal, double minImaginary, double size, int maxLevel, int maxIterations,
+                            int levelIterations, double radiusSquared, TileStore tileStore) throws IOException {
+        if (maxLevel < 0 || maxLevel > MAX_LEVEL){
+            throw new IllegalArgumentException("Level must be between 0 and " + MAX_LEVEL + " but was " + maxLevel);
+        }
+        calculatedTiles.reset();
+        skippedTiles.reset();
+        reusedPixels.reset();
+        Pyramid pyramid = new Pyramid(minReal, minImaginary, size, maxLevel, maxIterations, levelIterations, radiusSquared, tileStore);
+        ForkJoinPool forkJoinPool = new ForkJoinPool(threadCount);
+        try {
+            forkJoinPool.invoke(new TileTask(pyramid, 0, 0, 0, null, 0));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    /**
+     * @return the maximum number of iterations of a level.
+     */
+    public static int getMaxIterations(int level, int maxIterations, int levelIterations){
+        return maxIterations + level * levelIterations;
+    }
+
+    /**
+     * The parameters shared by every tile of a pyramid.
+     */
+    private static class Pyramid {
+
+        final double minReal, minImaginary, size, radiusSquared;
+        final int maxLevel, maxIterations, levelIterations;
+        final TileStore tileStore;
+
+        Pyramid(double minReal, double minImaginary, double size, int maxLevel, int maxIterations, int levelIterations,
+                double radiusSquared, TileStore tileStore){
+            this.minReal = minReal;
+            this.minImaginary = minImaginary;
+            this.size = size;
+            this.maxLevel = maxLevel;
+            this.maxIterations = maxIterations;
+            this.levelIterations = levelIterations;
+            this.radiusSquared = radiusSquared;
+            this.tileStore = tileStore;
+        }
+    }
+
+    /**
+     * Task calculating a tile, then forking the tasks of its four children.
+     */
+    private class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Pyramid pyramid;
+        private final int level, x, y;
+        // Iteration values of the parent tile and its maxIterations, or null if the parent was not calculated
+        private final FrameBuffer parentTile;
+        private final int parentMaxIterations;
+
+        TileTask(Pyramid pyramid, int level, int x, int y, FrameBuffer parentTile, int parentMaxIterations){
+            this.pyramid = pyramid;
+            this.level = level;
+            this.x = x;
+            this.y = y;
+            this.parentTile = parentTile;
+            this.parentMaxIterations = parentMaxIterations;
+        }
+
+        @Override
+        protected void compute() {
+            int maxIterations = getMaxIterations(level, pyramid.maxIterations, pyramid.levelIterations);
+            FrameBuffer tile = null;
+            try {
+                if (pyramid.tileStore.containsTile(level, x, y)) {
+                    skippedTiles.increment();
+                } else {
+                    tile = calcTile(maxIterations);
+                    pyramid.tileStore.storeTile(level, x, y, tile, maxIterations);
+                    calculatedTiles.increment();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (level < pyramid.maxLevel) {
+                invokeAll(new TileTask(pyramid, level + 1, 2 * x, 2 * y, tile, maxIterations),
+                        new TileTask(pyramid, level + 1, 2 * x + 1, 2 * y, tile, maxIterations),
+                        new TileTask(pyramid, level + 1, 2 * x, 2 * y + 1, tile, maxIterations),
+                        new TileTask(pyramid, level + 1, 2 * x + 1, 2 * y + 1, tile, maxIterations));
+            }
+        }
+
+        private FrameBuffer calcTile(int maxIterations){
+            FrameBuffer tile = new FrameBuffer(TILE_SIZE, TILE_SIZE);
+            int[] data = tile.getData();
+            // dividing by a power of 2 is exact, so the step of a level is exactly half the step of the level above
+            double step = pyramid.size / (double) ((long) TILE_SIZE << level);
+            long firstColumn = (long) x * TILE_SIZE;
+            long firstRow = (long) y * TILE_SIZE;
+            // the pixels shared with the parent are those of the quarter of the parent this tile covers
+            int parentX = (x % 2) * TILE_SIZE / 2;
+            int parentY = (y % 2) * TILE_SIZE / 2;
+            long reused = 0;
+
+            for (int j = 0; j < TILE_SIZE; j++) {
+                double cImaginary = pyramid.minImaginary + (firstRow + j) * step;
+                int offset = tile.getOffset(j);
+                for (int i = 0; i < TILE_SIZE; i++) {
+                    if (parentTile != null && (i & 1) == 0 && (j & 1) == 0) {
+                        int parentValue = parentTile.get(parentX + i / 2, parentY + j / 2);
+                        if (parentValue < parentMaxIterations || maxIterations == parentMaxIterations) {
+                            data[offset + i] = parentValue;
+                            reused++;
+                            continue;
+                        }
+                    }
+                    data[offset + i] = mMandelbrotCalculator.calcMandel(pyramid.minReal + (firstColumn + i) * step, cImaginary,
+                            maxIterations, pyramid.radiusSquared, step);
+                }
+            }
+            reusedPixels.add(reused);
+            return tile;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package model;
+
+/**
+ * The TiledRenderer class calculates frames through a TileCache, only calculating the pixels that are not cached.
+ *
+ * The tiles lie on the global grid of the TileCache, so a frame only uses the cache if it is on the grid (see
+ * FrameGeometry.alignedToGrid). A frame which was panned or zoomed back to a scale seen before thus finds the tiles it
+ * shares with the earlier frames, whatever its origin. The tiles on the edges of a frame are cached with the pixels
+ * inside it, so a frame visited again (undo, redo) is found in the cache in full.
+ *
+ * When none of the tiles of a frame are cached the whole frame is calculated by the wrapped strategy. Otherwise the
+ * cached tiles are copied into the frame and the other tiles are calculated row by row on the ParallelRenderEngine,
+ * with the same values calcMandelbrotRow gives them. The frame records whether its values are exact (see
+ * FrameBuffer.setExact): not when the wrapped strategy approximates them (boundary subdivision), nor when the
+ * periodicity check of the calculator is on. Only the new tiles of exact frames are added to the cache. The tiles do
+ * not hold fractions, so fractional frames are always calculated in full by the wrapped strategy. Nor do they hold
+ * the Z of their pixels (see FrameBuffer.setKeepingOrbits), so only the rows without cached tiles record theirs.
+ *
+ * @author Student id: 170024238
+ */
+public class TiledRenderer implements RenderStrategy {
+
+    private ParallelRenderEngine mParallelRenderEngine;
+    private MandelbrotCalculator mMandelbrotCalculator;
+    private RenderStrategy mRenderStrategy;
+    private TileCache mTileCache;
+
+    // Number of tiles of the last frame found in the cache, and of tiles it had
+    private int lastCachedTiles, lastTiles;
+
+    /**
+     * Constructs a new TiledRenderer.
+     *
+     * @param mParallelRenderEngine the engine used to calculate the missing tiles.
+     * @param mRenderStrategy the strategy used to calculate frames of which no tile is cached.
+     * @param mTileCache the cache of tiles.
+     */
+    public TiledRenderer(ParallelRenderEngine mParallelRenderEngine, RenderStrategy mRenderStrategy, TileCache mTileCache){
+        this.mParallelRenderEngine = mParallelRenderEngine;
+        this.mMandelbrotCalculator = mParallelRenderEngine.getMandelbrotCalculator();
+        this.mRenderStrategy = mRenderStrategy;
+        this.mTileCache = mTileCache;
+    }
+
+    public RenderStrategy getRenderStrategy() {
+        return mRenderStrategy;
+    }
+
+    public void setRenderStrategy(RenderStrategy mRenderStrategy) {
+        this.mRenderStrategy = mRenderStrategy;
+    }
+
+    public TileCache getTileCache() {
+        return mTileCache;
+    }
+
+    public int getLastCachedTiles() {
+        return lastCachedTiles;
+    }
+
+    public int getLastTiles() {
+        return lastTiles;
+    }
+
+    @Override
+    public void calcMandelbrotSet(final FrameBuffer frameBuffer, final double minReal, double maxReal, final double minImaginary, double maxImaginary, final int maxIterations, final double radiusSquared){
+        final int xResolution = frameBuffer.getWidth();
+        final int yResolution = frameBuffer.getHeight();
+        final double realStep = (maxReal - minReal)/xResolution;
+        final double imaginaryStep = (maxImaginary - minImaginary)/yResolution;
+        // the tiles only hold the iteration values, so a fractional frame is calculated in full, as is a frame off the grid
+        if (frameBuffer.isFractional() || !isOnGrid(xResolution, yResolution, minReal, realStep, minImaginary, imaginaryStep)) {
+            lastCachedTiles = 0;
+            lastTiles = 0;
+            mRenderStrategy.calcMandelbrotSet(frameBuffer, minReal, maxReal, minImaginary, maxImaginary, maxIterations, radiusSquared);
+            frameBuffer.setExact(isExact(mRenderStrategy));
+            return;
+        }
+
+        final TileGrid tileGrid = new TileGrid(xResolution, yResolution, minReal, realStep, minImaginary, imaginaryStep);
+        final boolean[] missingTiles = new boolean[tileGrid.columns * tileGrid.rows];
+        int cachedTiles = 0;
+        for (int row = 0; row < tileGrid.rows; row++) {
+            for (int column = 0; column < tileGrid.columns; column++) {
+                TileCache.Tile tile = mTileCache.get(tileGrid.tileKey(column, row, maxIterations, radiusSquared),
+                        tileGrid.fromX(column), tileGrid.fromY(row), tileGrid.toX(column), tileGrid.toY(row));
+                if (tile != null) {
+                    copyFromTile(frameBuffer, tileGrid, column, row, tile.getData());
+                    cachedTiles++;
+                } else {
+                    missingTiles[row * tileGrid.columns + column] = true;
+                }
+            }
+        }
+        lastCachedTiles = cachedTiles;
+        lastTiles = tileGrid.columns * tileGrid.rows;
+
+        // without cached tiles the frame is calculated by the wrapped strategy, whose values may only be approximate
+        boolean exact = isExact(cachedTiles > 0 ? mParallelRenderEngine : mRenderStrategy);
+        if (cachedTiles == 0) {
+            mRenderStrategy.calcMandelbrotSet(frameBuffer, minReal, maxReal, minImaginary, maxImaginary, maxIterations, radiusSquared);
+        } else if (cachedTiles < lastTiles) {
+            mParallelRenderEngine.calcRows(frameBuffer, new ParallelRenderEngine.RowKernel() {
+                @Override
+                public long calcRow(int[] rowData, int offset, int y) {
+                    double cImaginary = minImaginary + y * imaginaryStep;
+                    int row = tileGrid.rowOf(y);
+                    long rowIterations = 0;
+                    // the neighbouring missing tiles of the row are calculated in one go
+                    int column = 0;
+                    while (column < tileGrid.columns) {
+                        if (!missingTiles[row * tileGrid.columns + column]) {
+                            column++;
+                            continue;
+                        }
+                        int fromX = tileGrid.tileX(column) + tileGrid.fromX(column);
+                        while (column < tileGrid.columns && missingTiles[row * tileGrid.columns + column]) {
+                            column++;
+                        }
+                        int toX = tileGrid.tileX(column - 1) + tileGrid.toX(column - 1);
+                        rowIterations += mMandelbrotCalculator.calcMandelbrotRow(frameBuffer, y, fromX, toX, minReal,
+                                realStep, cImaginary, maxIterations, radiusSquared);
+                    }
+                    return rowIterations;
+                }
+            });
+        }
+        frameBuffer.setExact(exact);
+
+        if (exact) {
+            for (int row = 0; row < tileGrid.rows; row++) {
+                for (int column = 0; column < tileGrid.columns; column++) {
+                    if (missingTiles[row * tileGrid.columns + column]) {
+                        putTile(frameBuffer, tileGrid, column, row, maxIterations, radiusSquared);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to count the tiles of the grid a frame overlaps, in full or in part.
+     *
+     * @return the number of tiles of the frame, or 1 if it is off the grid.
+     */
+    public static int countTiles(int xResolution, int yResolution, double minReal, double maxReal, double minImaginary, double maxImaginary){
+        double realStep = (maxReal - minReal)/xResolution;
+        double imaginaryStep = (maxImaginary - minImaginary)/yResolution;
+        if (!isOnGrid(xResolution, yResolution, minReal, realStep, minImaginary, imaginaryStep)) {
+            return 1;
+        }
+        TileGrid tileGrid = new TileGrid(xResolution, yResolution, minReal, realStep, minImaginary, imaginaryStep);
+        return tileGrid.columns * tileGrid.rows;
+    }
+
+    /**
+     * Method to count the tiles of a frame whose pixels inside the frame are all cached, without changing the cache.
+     *
+     * @return the number of cached tiles of the frame, 0 if it is off the grid.
+     */
+    public int countCachedTiles(int xResolution, int yResolution, double minReal, double maxReal, double minImaginary, double maxImaginary, int maxIterations, double radiusSquared){
+        double realStep = (maxReal - minReal)/xResolution;
+        double imaginaryStep = (maxImaginary - minImaginary)/yResolution;
+        if (!isOnGrid(xResolution, yResolution, minReal, realStep, minImaginary, imaginaryStep)) {
+            return 0;
+        }
+        TileGrid tileGrid = new TileGrid(xResolution, yResolution, minReal, realStep, minImaginary, imaginaryStep);
+        int cachedTiles = 0;
+        for (int row = 0; row < tileGrid.rows; row++) {
+            for (int column = 0; column < tileGrid.columns; column++) {
+                if (mTileCache.contains(tileGrid.tileKey(column, row, maxIterations, radiusSquared),
+                        tileGrid.fromX(column), tileGrid.fromY(row), tileGrid.toX(column), tileGrid.toY(row))) {
+                    cachedTiles++;
+                }
+            }
+        }
+        return cachedTiles;
+    }
+
+    /**
+     * Method to add the tiles of a frame calculated by other means to the cache. Nothing is added if the frame is not
+     * exact (see FrameBuffer.setExact) or off the grid.
+     *
+     * @param frameBuffer the calculated frame.
+     */
+    public void storeTiles(FrameBuffer frameBuffer, double minReal, double maxReal, double minImaginary, double maxImaginary, int maxIterations, double radiusSquared){
+        double realStep = (maxReal - minReal)/frameBuffer.getWidth();
+        double imaginaryStep = (maxImaginary - minImaginary)/frameBuffer.getHeight();
+        if (!frameBuffer.isExact()
+                || !isOnGrid(frameBuffer.getWidth(), frameBuffer.getHeight(), minReal, realStep, minImaginary, imaginaryStep)) {
+            return;
+        }
+        TileGrid tileGrid = new TileGrid(frameBuffer.getWidth(), frameBuffer.getHeight(), minReal, realStep, minImaginary, imaginaryStep);
+        for (int row = 0; row < tileGrid.rows; row++) {
+            for (int column = 0; column < tileGrid.columns; column++) {
+                putTile(frameBuffer, tileGrid, column, row, maxIterations, radiusSquared);
+            }
+        }
+    }
+
+    /**
+     * @param renderStrategy the strategy which calculated a frame.
+     * @return true if the strategy gives exact iteration values with the current settings of the calculator.
+     */
+    public boolean isExact(RenderStrategy renderStrategy){
+        boolean exactStrategy = renderStrategy instanceof ParallelRenderEngine || renderStrategy instanceof VectorRenderer
+                || renderStrategy instanceof MandelbrotCalculator;
+        return exactStrategy && !mMandelbrotCalculator.isPeriodicityCheck();
+    }
+
+    private static boolean isOnGrid(int xResolution, int yResolution, double minReal, double realStep, double minImaginary, double imaginaryStep){
+        return TileCache.isOnGrid(minReal, realStep, xResolution) && TileCache.isOnGrid(minImaginary, imaginaryStep, yResolution);
+    }
+
+    private void putTile(FrameBuffer frameBuffer, TileGrid tileGrid, int column, int row, int maxIterations, double radiusSquared){
+        int[] tile = new int[TileCache.TILE_SIZE * TileCache.TILE_SIZE];
+        int fromX = tileGrid.fromX(column);
+        int toX = tileGrid.toX(column);
+        for (int y = tileGrid.fromY(row); y < tileGrid.toY(row); y++) {
+            System.arraycopy(frameBuffer.getData(), frameBuffer.getOffset(tileGrid.tileY(row) + y) + tileGrid.tileX(column) + fromX,
+                    tile, y * TileCache.TILE_SIZE + fromX, toX - fromX);
+        }
+        mTileCache.put(tileGrid.tileKey(column, row, maxIterations, radiusSquared), tile, fromX, tileGrid.fromY(row), toX, tileGrid.toY(row));
+    }
+
+    private static void copyFromTile(FrameBuffer frameBuffer, TileGrid tileGrid, int column, int row, int[] tile){
+        int fromX = tileGrid.fromX(column);
+        int toX = tileGrid.toX(column);
+        for (int y = tileGrid.fromY(row); y < tileGrid.toY(row); y++) {
+            System.arraycopy(tile, y * TileCache.TILE_SIZE + fromX, frameBuffer.getData(),
+                    frameBuffer.getOffset(tileGrid.tileY(row) + y) + tileGrid.tileX(column) + fromX, toX - fromX);
+        }
+    }
+
+    /**
+     * The tiles of the grid a frame on the grid overlaps, numbered from 0 in the frame. The tiles on the edges of the
+     * frame are only partly inside it, from (fromX, fromY) up to (toX, toY) exclusive in the tile.
+     */
+    private static final class TileGrid {
+
+        private final double realStep, imaginaryStep;
+        // Pixel column and row of the grid of the first pixel of the frame, and tile column and row of the first tile
+        private final long originColumn, originRow, firstColumn, firstRow;
+        private final int xResolution, yResolution, columns, rows;
+
+        private TileGrid(int xResolution, int yResolution, double minReal, double realStep, double minImaginary, double imaginaryStep){
+            this.realStep = realStep;
+            this.imaginaryStep = imaginaryStep;
+            this.xResolution = xResolution;
+            this.yResolution = yResolution;
+            this.originColumn = TileCache.gridOrigin(minReal, realStep);
+            this.originRow = TileCache.gridOrigin(minImaginary, imaginaryStep);
+            this.firstColumn = Math.floorDiv(originColumn, TileCache.TILE_SIZE);
+            this.firstRow = Math.floorDiv(originRow, TileCache.TILE_SIZE);
+            this.columns = (int) (Math.floorDiv(originColumn + xResolution - 1, TileCache.TILE_SIZE) - firstColumn + 1);
+            this.rows = (int) (Math.floorDiv(originRow + yResolution - 1, TileCache.TILE_SIZE) - firstRow + 1);
+        }
+
+        /**
+         * @return the x pixel of the frame where the tile starts, negative if it starts left of the frame.
+         */
+        private int tileX(int column){
+            return (int) ((firstColumn + column) * TileCache.TILE_SIZE - originColumn);
+        }
+
+        /**
+         * @return the y pixel of the frame where the tile starts, negative if it starts above the frame.
+         */
+        private int tileY(int row){
+            return (int) ((firstRow + row) * TileCache.TILE_SIZE - originRow);
+        }
+
+        private int fromX(int column){
+            return Math.max(0, -tileX(column));
+        }
+
+        private int toX(int column){
+            return Math.min(TileCache.TILE_SIZE, xResolution - tileX(column));
+        }
+
+        private int fromY(int row){
+            return Math.max(0, -tileY(row));
+        }
+
+        private int toY(int row){
+            return Math.min(TileCache.TILE_SIZE, yResolution - tileY(row));
+        }
+
+        /**
+         * @return the row of the tiles holding the y pixel of the frame.
+         */
+        private int rowOf(int y){
+            return (int) (Math.floorDiv(originRow + y, TileCache.TILE_SIZE) - firstRow);
+        }
+
+        private TileCache.TileKey tileKey(int column, int row, int maxIterations, double radiusSquared){
+            return new TileCache.TileKey(realStep, imaginaryStep, firstColumn + column, firstRow + row, maxIterations, radiusSquared);
+        }
+    }
+}
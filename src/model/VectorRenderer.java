@@ -0,0 +1,109 @@
+package model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The VectorRenderer class calculates the Mandelbrot set with a SIMD kernel that iterates several pixels of a row at
+ * once in the lanes of a vector register, using the Vector API (jdk.incubator.vector).
+ *
+ * The Vector API only exists from JDK 16 and must be enabled with --add-modules jdk.incubator.vector, while this
+ * project targets Java 8. The kernel (VectorKernel) is therefore kept in the separate vector/ source folder and
+ * loaded by name. When it is missing, or the module is not available at runtime, the renderer falls back to the
+ * scalar MandelbrotCalculator.calcMandelbrotRow, so it can always be used as a render strategy.
+ *
+ * Both kernels perform the same floating point operations in the same order, so the results are identical.
+ * The interior check is applied when it is on in the calculator, and the pixels it returns are counted by the
+ * calculator whichever kernel is used; the periodicity check is only done by the scalar kernel.
+ *
+ * @author Student id: 170024238
+ */
+public class VectorRenderer implements RenderStrategy {
+
+    private static final String VECTOR_KERNEL_CLASS = "model.VectorKernel";
+
+    private ParallelRenderEngine mParallelRenderEngine;
+    private MandelbrotCalculator mMandelbrotCalculator;
+    private RowIterator rowIterator;
+    private boolean vectorised;
+
+    /**
+     * Constructs a new VectorRenderer running its rows on the given engine, using the Vector API kernel if available.
+     *
+     * @param mParallelRenderEngine the engine used to calculate the rows of the frame in parallel.
+     */
+    public VectorRenderer(ParallelRenderEngine mParallelRenderEngine){
+        this.mParallelRenderEngine = mParallelRenderEngine;
+        this.mMandelbrotCalculator = mParallelRenderEngine.getMandelbrotCalculator();
+        this.rowIterator = loadVectorKernel();
+        this.vectorised = rowIterator != null;
+        if (!vectorised) {
+            rowIterator = new RowIterator() {
+                @Override
+                public long calcRow(int[] rowData, int offset, int xResolution, double minReal, double realStep, double cImaginary, int maxIterations, double radiusSquared,
+                                    boolean interiorCheck, LongAdder shortCircuitedPixels) {
+                    return mMandelbrotCalculator.calcMandelbrotRow(rowData, offset, xResolution, minReal, realStep, cImaginary, maxIterations, radiusSquared);
+                }
+            };
+        }
+    }
+
+    /**
+     * @return true if the Vector API kernel is used, false if the renderer fell back to the scalar kernel.
+     */
+    public boolean isVectorised() {
+        return vectorised;
+    }
+
+    /**
+     * Method to load the Vector API kernel by name.
+     *
+     * @return the kernel, or null if it is not on the class path or the jdk.incubator.vector module is unavailable.
+     */
+    private static RowIterator loadVectorKernel(){
+        try {
+            return (RowIterator) Class.forName(VECTOR_KERNEL_CLASS).newInstance();
+        } catch (ClassNotFoundException | LinkageError | InstantiationException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void calcMandelbrotSet(FrameBuffer frameBuffer, final double minReal, double maxReal, final double minImaginary, double maxImaginary, final int maxIterations, final double radiusSquared){
+        final int xResolution = frameBuffer.getWidth();
+        final double realStep = (maxReal - minReal)/xResolution;
+        final double imaginaryStep = (maxImaginary - minImaginary)/frameBuffer.getHeight();
+        final boolean interiorCheck = mMandelbrotCalculator.isInteriorCheck();
+        final LongAdder shortCircuitedPixels = mMandelbrotCalculator.getShortCircuitedPixelCounter();
+
+        mParallelRenderEngine.calcRows(frameBuffer, new ParallelRenderEngine.RowKernel() {
+            @Override
+            public long calcRow(int[] rowData, int offset, int y) {
+                double cImaginary = minImaginary + y * imaginaryStep;
+                return rowIterator.calcRow(rowData, offset, xResolution, minReal, realStep, cImaginary, maxIterations, radiusSquared, interiorCheck,
+                        shortCircuitedPixels);
+            }
+        });
+    }
+
+    /**
+     * A kernel calculating one row of the frame, with the same parameters as MandelbrotCalculator.calcMandelbrotRow.
+     */
+    interface RowIterator {
+
+        /**
+         * @param rowData the array receiving the iteration value for each x pixel of the row.
+         * @param offset the index in rowData of the first pixel of the row.
+         * @param xResolution the number of pixels on the x-axis.
+         * @param minReal the lower real bound for the complex constant C.
+         * @param realStep the distance on the real axis between two neighbouring pixels.
+         * @param cImaginary the imaginary component of the constant C shared by every pixel in the row.
+         * @param maxIterations the maximum number of iterations to iterate the complex formula
+         * @param radiusSquared the squared of the radius used to determine whether Z escaped.
+         * @param interiorCheck whether points inside the main cardioid or period-2 bulb return maxIterations straight away.
+         * @param shortCircuitedPixels the counter receiving the number of pixels the interior check returned.
+         * @return the total number of iterations performed for the row.
+         */
+        long calcRow(int[] rowData, int offset, int xResolution, double minReal, double realStep, double cImaginary, int maxIterations, double radiusSquared,
+                     boolean interiorCheck, LongAdder shortCircuitedPixels);
+    }
+}
@@ -0,0 +1,83 @@
+package model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The VectorKernel class iterates a row of the Mandelbrot set several pixels at a time, one pixel per lane of a
+ * DoubleVector (4 lanes with AVX2, 8 with AVX-512).
+ *
+ * Each lane performs exactly the operations of MandelbrotCalculator.calcMandel in the same order, so the iteration
+ * values are identical to the scalar kernel. A mask keeps track of the lanes still iterating: escaped lanes keep
+ * their value and stop counting, and the loop ends as soon as no lane is left.
+ *
+ * This class needs JDK 16 or later and the incubator module, e.g.
+ *
+ * javac --add-modules jdk.incubator.vector -cp out/production/CS5001-p4-graphics -d out/production/CS5001-p4-graphics vector/model/VectorKernel.java
+ * java --add-modules jdk.incubator.vector -cp out/production/CS5001-p4-graphics main.MandelbrotMain
+ *
+ * It is loaded by name from VectorRenderer, which falls back to the scalar kernel when it is not available.
+ *
+ * @author Student id: 170024238
+ */
+class VectorKernel implements VectorRenderer.RowIterator {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public long calcRow(int[] rowData, int offset, int xResolution, double minReal, double realStep, double cImaginary, int maxIterations, double radiusSquared,
+                        boolean interiorCheck, LongAdder shortCircuitedPixels) {
+        int lanes = SPECIES.length();
+        double[] cReals = new double[lanes];
+        double[] initialCounts = new double[lanes];
+        boolean[] iterating = new boolean[lanes];
+        double[] counts = new double[lanes];
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector ci = DoubleVector.broadcast(SPECIES, cImaginary);
+        long rowIterations = 0;
+        int interiorPixels = 0;
+
+        for (int x = 0; x < xResolution; x += lanes) {
+            for (int lane = 0; lane < lanes; lane++) {
+                double cReal = minReal + (x + lane) * realStep;
+                cReals[lane] = cReal;
+                boolean interior = interiorCheck && MandelbrotCalculator.isInMainCardioidOrBulb(cReal, cImaginary);
+                iterating[lane] = x + lane < xResolution && !interior;
+                initialCounts[lane] = interior ? maxIterations : 0;
+                if (interior && x + lane < xResolution) {
+                    interiorPixels++;
+                }
+            }
+            DoubleVector cr = DoubleVector.fromArray(SPECIES, cReals, 0);
+            DoubleVector count = DoubleVector.fromArray(SPECIES, initialCounts, 0);
+            VectorMask<Double> active = VectorMask.fromArray(SPECIES, iterating, 0);
+            DoubleVector zr = zero;
+            DoubleVector zi = zero;
+
+            for (int iterations = 0; iterations < maxIterations && active.anyTrue(); iterations++) {
+                DoubleVector zr2 = zr.mul(zr);
+                DoubleVector zi2 = zi.mul(zi);
+                DoubleVector nzr = zr2.sub(zi2).add(cr);
+                DoubleVector nzi = zr.mul(2.0).mul(zi).add(ci);
+                count = count.add(1.0, active);
+                VectorMask<Double> outside = zr2.add(zi2).compare(VectorOperators.GT, radiusSquared);
+                zr = zr.blend(nzr, active);
+                zi = zi.blend(nzi, active);
+                active = active.andNot(outside);
+            }
+
+            count.intoArray(counts, 0);
+            for (int lane = 0; lane < lanes && x + lane < xResolution; lane++) {
+                rowData[offset + x + lane] = (int) counts[lane];
+                rowIterations += (int) counts[lane];
+            }
+        }
+        // counted once per row, like the scalar kernel counts every pixel
+        shortCircuitedPixels.add(interiorPixels);
+        return rowIterations;
+    }
+}